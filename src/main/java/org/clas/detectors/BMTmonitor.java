@@ -9,6 +9,11 @@ import org.clas.structures.Event;
 import org.clas.structures.Hit;
 import org.clas.viewer.DetectorMonitor;
 import org.clas.viewer.EventViewer;
+import org.clas.viewer.HistogramFamily;
+import org.clas.viewer.ProfileH1;
+import org.clas.viewer.CountH1F;
+import org.clas.viewer.CountH2F;
+import org.clas.viewer.TimeSeriesH1;
 import org.jlab.detector.calib.utils.ConstantsManager;
 import org.jlab.detector.calib.utils.DatabaseConstantProvider;
 import org.jlab.groot.data.H1F;
@@ -51,15 +56,52 @@ public class BMTmonitor extends DetectorMonitor {
 	
 	/* ===== DATA STORAGE & DISPLAY ===== */
 	
-	int numberOfHitsPerStrip[][][];
-	int numberOfCentroidsPerStrip[][][];
 	int numberOfCentroidsMatchedPerStrip[][][];
-	int numberOfHitsPerDream[];
 	
-	int ratePlotScale=10;
+	int ratePlotScale=10; /* initial bin width of the rate plots, doubled as the run goes on */
+	TimeSeriesH1.Axis rateAxis = TimeSeriesH1.Axis.EVENTS; /* or UNIXTIME to use the RUN::config time */
 	
 	MVTpulseViewer pulseViewer;
 	
+	int skimMultiplicity = 1000; /* events with more BMT::adc hits, beyond the hitMultiplicity range, are written to the skim */
+	
+	/* ===== HISTOGRAM HANDLES ===== */
+	
+	CountH1F hitMultiplicityHisto;
+	CountH2F occupanciesHisto;
+	ProfileH1 timeOfMaxPerDreamHisto;
+	CountH1F[][] hitmapHistos;
+	HistogramFamily<H1F> occupancyStripHistos;
+	TimeSeriesH1[][] nbHitsVsTimeHistos;
+	CountH1F[][] adcMaxHistos;
+	ProfileH1[][] adcMaxVsStripHistos;
+	CountH1F[][] integralPulseHistos;
+	ProfileH1[][] integralPulseVsStripHistos;
+	CountH1F[][] timeOfMaxCutHistos;
+	CountH1F[][] timeOfMaxHistos;
+	CountH1F[][] timeOfMaxNoFitHistos;
+	ProfileH1[][] timeOfMaxVsStripHistos;
+	CountH1F[][] ftotHistos;
+	ProfileH1[][] ftotPerStripHistos;
+	CountH1F[][] totHistos;
+	ProfileH1[][] totPerStripHistos;
+	CountH1F[][] multiplicityHistos;
+	CountH1F[][] tileOccupancyHistos;
+	CountH1F[][] clusterMultiplicityHistos;
+	CountH1F[][] hitmapClustersHistos;
+	TimeSeriesH1[][] nbClustersVsTimeHistos;
+	CountH1F[][] clusterChargeHistos;
+	ProfileH1[][] clusterChargePerStripHistos;
+	CountH1F[][] clusterSizeHistos;
+	ProfileH1[][] clusterSizePerStripHistos;
+	CountH1F[][] occupancyRecoHistos;
+	CountH1F[][] maxAdcOfCentroidHistos;
+	ProfileH1[][] maxAdcOfCentroidPerStripHistos;
+	CountH1F[][] timeOfCentroidHistos;
+	ProfileH1[][] timeOfCentroidPerStripHistos;
+	HistogramFamily<H1F> clusterSizeVsAngleHistos;
+	HistogramFamily<H1F> occupancyVsAngleHistos;
+	
 	/* ===== RECONSTRUCTION ===== */
 	
 	private CVTReconstruction recoCo;
@@ -76,6 +118,7 @@ public class BMTmonitor extends DetectorMonitor {
 	public BMTmonitor(String name, /* MVT PULSE DISPLAY */ MVTpulseViewer pulseViewer) {
 		
 		super(name);
+		this.subscribeBanks("BMT::adc", "BMTRec::Clusters", "CVTRec::Tracks");
 		
 		this.pulseViewer=pulseViewer;
 		
@@ -132,10 +175,7 @@ public class BMTmonitor extends DetectorMonitor {
 		
 		/* ===== INITIALIZE DATA STORAGE ===== */
 		
-		numberOfHitsPerStrip             = new int[numberOfSectors + 1][numberOfLayers + 1][maxNumberOfStrips+1];
-		numberOfCentroidsPerStrip        = new int[numberOfSectors + 1][numberOfLayers + 1][maxNumberOfStrips+1];
 		numberOfCentroidsMatchedPerStrip = new int[numberOfSectors + 1][numberOfLayers + 1][maxNumberOfStrips+1];
-		numberOfHitsPerDream             = new int[maxNumberOfChips + 1];
 		
 		/* ===== RECONSTRUCTION ===== */
 		
@@ -163,9 +203,52 @@ public class BMTmonitor extends DetectorMonitor {
 		/* ===== DECLARE TABS ===== */
 		
 		this.setDetectorTabNames("Occupancies", "Occupancy", "Occupancy C", "Occupancy Z", "NbHits vs Time", "Tile Multiplicity", "Tile Occupancy", "MaxADC", "MaxADC vs Strip", "IntegralPulse", "IntegralPulse vs Strip", "TimeMax", "TimeMaxCut","TimeMaxNoFit", "TimeMax vs Strip", "TimeMax per Dream", "ToT", "ToT per strip","FToT","FToT per strip", "OccupancyStrip", "OccupancyClusters", "NbClusters vs Time", "Cluster Multiplicity", "ClusterCharge", "ClusterCharge per strip", "ClusterSize", "ClusterSize per strip", "ClusterSize vs angle", "Occupancy vs angle", "OccupancyReco", "Residuals", "MaxAdcOfCentroid", "MaxAdcOfCentroid per strip", "TimeOfCentroid", "TimeOfCentroid per strip","hitMultiplicity");
+		this.registerHandles();
+		this.setInPlaceReset(true);
 		this.init(false);
 	}
 
+	/**
+	 * Resolve the histograms filled per hit once, they are bound again on every reset.
+	 * Plain count histograms go through count handles, which follow the decay mode.
+	 */
+	private void registerHandles() {
+		hitMultiplicityHisto = this.registerCountH1F("hitMultiplicity");
+		occupanciesHisto = this.registerCountH2F("Occupancies");
+		timeOfMaxPerDreamHisto = this.registerProfile("TimeOfMax");
+		hitmapHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "Hitmap : Layer " + layer + " Sector " + sector);
+		occupancyStripHistos = this.registerHistograms(H1F.class, numberOfSectors, numberOfLayers, (sector, layer) -> "OccupancyStrip : Layer " + layer + " Sector " + sector);
+		nbHitsVsTimeHistos = this.registerTimeSeries(numberOfSectors, numberOfLayers, (sector, layer) -> "NbHits vs Time : Layer " + layer + " Sector " + sector, rateAxis, ratePlotScale);
+		adcMaxHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ADCMax : Layer " + layer + " Sector " + sector);
+		adcMaxVsStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ADCMax vs Strip : Layer " + layer + " Sector " + sector);
+		integralPulseHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "IntegralPulse : Layer " + layer + " Sector " + sector);
+		integralPulseVsStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "IntegralPulse vs Strip : Layer " + layer + " Sector " + sector);
+		timeOfMaxCutHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfMax cut : Layer " + layer + " Sector " + sector);
+		timeOfMaxHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfMax : Layer " + layer + " Sector " + sector);
+		timeOfMaxNoFitHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfMax no fit : Layer " + layer + " Sector " + sector);
+		timeOfMaxVsStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfMax vs Strip : Layer " + layer + " Sector " + sector);
+		ftotHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "FToT : Layer " + layer + " Sector " + sector);
+		ftotPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "FToT per strip : Layer " + layer + " Sector " + sector);
+		totHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ToT : Layer " + layer + " Sector " + sector);
+		totPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ToT per strip : Layer " + layer + " Sector " + sector);
+		multiplicityHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "Multiplicity : Layer " + layer + " Sector " + sector);
+		tileOccupancyHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TileOccupancy : Layer " + layer + " Sector " + sector);
+		clusterMultiplicityHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "Cluster Multiplicity : Layer " + layer + " Sector " + sector);
+		hitmapClustersHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "HitmapClusters : Layer " + layer + " Sector " + sector);
+		nbClustersVsTimeHistos = this.registerTimeSeries(numberOfSectors, numberOfLayers, (sector, layer) -> "NbClusters vs Time : Layer " + layer + " Sector " + sector, rateAxis, ratePlotScale);
+		clusterChargeHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterCharge : Layer " + layer + " Sector " + sector);
+		clusterChargePerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterCharge per strip : Layer " + layer + " Sector " + sector);
+		clusterSizeHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterSize : Layer " + layer + " Sector " + sector);
+		clusterSizePerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterSize per strip : Layer " + layer + " Sector " + sector);
+		occupancyRecoHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "OccupancyReco : Layer " + layer + " Sector " + sector);
+		maxAdcOfCentroidHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "MaxAdcOfCentroid : Layer " + layer + " Sector " + sector);
+		maxAdcOfCentroidPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "MaxAdcOfCentroid per strip : Layer " + layer + " Sector " + sector);
+		timeOfCentroidHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfCentroid : Layer " + layer + " Sector " + sector);
+		timeOfCentroidPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfCentroid per strip : Layer " + layer + " Sector " + sector);
+		clusterSizeVsAngleHistos = this.registerHistograms(H1F.class, numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterSize vs angle : Layer " + layer + " Sector " + sector);
+		occupancyVsAngleHistos = this.registerHistograms(H1F.class, numberOfSectors, numberOfLayers, (sector, layer) -> "Occupancy vs angle : Layer " + layer + " Sector " + sector);
+	}
+	
 	/**
 	 * Create histograms, define legends, fill colors
 	 */
@@ -301,6 +384,7 @@ public class BMTmonitor extends DetectorMonitor {
 		timeOfMaxHisto.setTitleY("Time of max adc");
 		timeOfMaxHisto.setFillColor(4);
 		timeGroup.addDataSet(timeOfMaxHisto, 0);
+		
 	
 		for (int sector = 1; sector <= numberOfSectors; sector++) {
 			for (int layer = 1; layer <= numberOfLayers; layer++) {
@@ -613,6 +697,21 @@ public class BMTmonitor extends DetectorMonitor {
 		
 		//pulseHistoBMT = new H1F("Pulse","Pulse", numberOfSamples, 1., numberOfSamples+1);
 		
+		registerAverages();
+
+	}
+	
+	/**
+	 * Running averages that are not profiles, with the histogram counting their entries
+	 */
+	private void registerAverages() {
+		for (int sector = 1; sector <= numberOfSectors; sector++) {
+			for (int layer = 1; layer <= numberOfLayers; layer++) {
+				String tile = " : Layer " + layer + " Sector " + sector;
+				this.registerAverage("ClusterSize vs angle" + tile, "Occupancy vs angle" + tile);
+				this.registerAverage("OccupancyStrip" + tile, null);
+			}
+		}
 	}
 	
 	/**
@@ -1066,169 +1165,48 @@ public class BMTmonitor extends DetectorMonitor {
 		}
 	}
 	
-	public void updateHistoChanges() {
-		for (int sector = 1; sector <= numberOfSectors; sector++) {
-			for (int layer = 1; layer <= numberOfLayers; layer++) {
-				int column=numberOfSectors - sector;
-				int row;
-				int numberOfColumns=numberOfSectors;
-				
-				switch (layer) {
-				case 1: row=2; break;
-				case 2: row=2; break;
-				case 3: row=1; break;
-				case 4: row=1; break;
-				case 5: row=0; break;
-				case 6: row=0; break;
-				default:row=-1;break;
-				}
-//				if (isZ[layer]==1){
-//					this.getDetectorCanvas().getCanvas("Occupancy Z").cd(column + numberOfColumns * row);
-//					this.getDetectorCanvas().getCanvas("Occupancy Z").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-//				}else{
-//					this.getDetectorCanvas().getCanvas("Occupancy C").cd(column + numberOfColumns * row);
-//					this.getDetectorCanvas().getCanvas("Occupancy C").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-//				}
-				
-				switch (layer) {
-				case 1: row=5; break;
-				case 2: row=2; break;
-				case 3: row=1; break;
-				case 4: row=4; break;
-				case 5: row=0; break;
-				case 6: row=3; break;
-				default:row=-1;break;
+	/**
+	 * Strip occupancy normalised to the number of events passing the trigger mask, including the ones without BMT banks.
+	 * The others are rejected, so the processed events are the ones counted here, summed when merging
+	 * and weighted like the hitmaps in window or decay mode.
+	 */
+	@Override
+	public void timerUpdate() {
+		double events = this.getEffectiveNumberOfEvents();
+		if (events <= 0) return;
+		for (int layer = 1; layer <= numberOfLayers; layer++) {
+			for (int sector = 1; sector <= numberOfSectors; sector++) {
+				if ( (sector == 3 && layer == 5) || (sector == 1 && layer == 5) ) continue;
+				H1F hitmap = hitmapHistos[sector][layer].getHistogram();
+				H1F occupancy = occupancyStripHistos.get(sector, layer);
+				for (int component = 1; component <= numberOfStrips[layer]; component++){
+					occupancy.setBinContent(component, 100*hitmap.getBinContent(component)/events);
 				}
-////				this.getDetectorCanvas().getCanvas("Occupancies").cd(column + numberOfColumns * row);
-////				this.getDetectorCanvas().getCanvas("Occupancies").draw(
-////						this.getDataGroup().getItem(sector, layer, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-////				
-//				this.getDetectorCanvas().getCanvas("Occupancy").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("Occupancy").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-//
-				this.getDetectorCanvas().getCanvas("NbHits vs Time").cd(column + numberOfColumns * row);
-				this.getDetectorCanvas().getCanvas("NbHits vs Time").draw(
-						this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("MaxADC").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxADC").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("MaxADC vs Strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxADC vs Strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax vs Strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("IntegralPulse").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("IntegralPulse").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("IntegralPulse vs Strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("IntegralPulse vs Strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse vs Strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("TimeMax").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeMax").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("TimeMax vs Strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeMax vs Strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax vs Strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ToT").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ToT").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ToT per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ToT per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT per strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("FToT").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("FToT").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("FToT per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("FToT per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT per strip : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("OccupancyClusters").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("OccupancyClusters").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("HitmapClusters : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("NbClusters vs Time").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("NbClusters vs Time").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("NbClusters vs Time : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ClusterCharge").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterCharge").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("ClusterCharge per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterCharge per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge per strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ClusterSize").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterSize").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("ClusterSize per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterSize per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize per strip : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("Residuals").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("Residuals").draw(
-//						this.getDataGroup().getItem(0, 0, 3).getH1F("Residuals : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid per strip : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid per strip : Layer " + layer + " Sector " + sector));
-//				
 			}
+		}
 	}
-//		this.getDetectorCanvas().getCanvas("Occupancies").update();
-//		this.getDetectorCanvas().getCanvas("Occupancy").update();
-//		this.getDetectorCanvas().getCanvas("Occupancy C").update();
-//		this.getDetectorCanvas().getCanvas("Occupancy Z").update();
-//		this.getDetectorCanvas().getCanvas("NbHits vs Time").update();
-//
-//		this.getDetectorCanvas().getCanvas("MaxADC").update();
-//		this.getDetectorCanvas().getCanvas("MaxADC vs Strip").update();
-//		this.getDetectorCanvas().getCanvas("IntegralPulse").update();
-//		this.getDetectorCanvas().getCanvas("IntegralPulse vs Strip").update();
-//
-//		this.getDetectorCanvas().getCanvas("TimeMax").update();
-//		this.getDetectorCanvas().getCanvas("TimeMax vs Strip").update();
-//		this.getDetectorCanvas().getCanvas("ToT").update();
-//		this.getDetectorCanvas().getCanvas("ToT per strip").update();
-//		this.getDetectorCanvas().getCanvas("FToT").update();
-//		this.getDetectorCanvas().getCanvas("FToT per strip").update();
-//
-//		this.getDetectorCanvas().getCanvas("OccupancyClusters").update();
-//		this.getDetectorCanvas().getCanvas("NbClusters vs Time").update();
-//		this.getDetectorCanvas().getCanvas("ClusterCharge").update();
-//		this.getDetectorCanvas().getCanvas("ClusterCharge per strip").update();
-//		this.getDetectorCanvas().getCanvas("ClusterSize").update();
-//		this.getDetectorCanvas().getCanvas("ClusterSize per strip").update();
-//		this.getDetectorCanvas().getCanvas("Residuals").update();
-//		this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid").update();
-//		this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid per strip").update();
-//		this.getDetectorCanvas().getCanvas("TimeOfCentroid").update();
-//		this.getDetectorCanvas().getCanvas("TimeOfCentroid per strip").update();
-		
+	
+	/**
+	 * Counters kept next to the histograms, cleared with them on an in-place reset
+	 */
+	@Override
+	public void resetCounters() {
+		count = 0;
+		for (int sector = 0; sector <= numberOfSectors; sector++) {
+			for (int layer = 0; layer <= numberOfLayers; layer++) {
+				Arrays.fill(numberOfCentroidsMatchedPerStrip[sector][layer], 0);
+				efficiencyTrackTile[sector][layer] = 0;
+				efficiencyTrackTileNb[sector][layer] = 0;
+			}
+		}
+		Arrays.fill(efficiencyTrackLayer, 0);
+		Arrays.fill(efficiencyTrackLayerNb, 0);
+	}
+	
+	@Override
+	public void eventSkipped(DataEvent event) {
+		if (testTriggerMask()) count++;
+		else this.rejectEvent();
 	}
 	
 	/**
@@ -1241,7 +1219,10 @@ public class BMTmonitor extends DetectorMonitor {
 				resetEventListener();
 			}
 			//System.out.println("Mask: "+getTriggerMask());
-			if (!testTriggerMask()) return;
+			if (!testTriggerMask()) {
+				this.rejectEvent();
+				return;
+			}
 			
 			count ++;
 			if (this.getNumberOfEvents()%1000==0){
@@ -1274,7 +1255,8 @@ public class BMTmonitor extends DetectorMonitor {
 			if (event.hasBank("BMT::adc") == true) {
 				DataBank bank = event.getBank("BMT::adc");
 				//bank.show();
-				this.getDataGroup().getItem(0, 0, 0).getH1F("hitMultiplicity").fill(bank.rows(),1);
+				hitMultiplicityHisto.fill(bank.rows(),1);
+				if (bank.rows() > skimMultiplicity) this.flagEvent("hitMultiplicity " + bank.rows());
 
 				//if (bank.rows()>4){ //CUT
 
@@ -1314,7 +1296,6 @@ public class BMTmonitor extends DetectorMonitor {
 					/* ===== COMPUTE GENERAL QUANTITIES ===== */
 
 					multiplicity[sector][layer]++;
-					numberOfHitsPerStrip[sector][layer][component]++;
 					//				offset[layer][sector][component]=256;
 					//				threshold[layer][sector][component]=5*8.5;
 					int dream=0;
@@ -1325,49 +1306,21 @@ public class BMTmonitor extends DetectorMonitor {
 					int dreamSector = (sector-1) * numberOfChips[layer] ;
 					int dreamTile = (component - 1) / numberOfStripsPerChip + 1;
 					dream = dreamLayer + dreamSector + dreamTile;
-					numberOfHitsPerDream[dream]++;
 
 					/* ===== FILL OCCUPANCY PLOTS ===== */
 
-					this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector).fill(component, 1);
-					this.getDataGroup().getItem(0, 0, 0).getH2F("Occupancies").fill(component,3*(layer-1)+(sector-1),1);
+					hitmapHistos[sector][layer].fill(component, 1);
+					occupanciesHisto.fill(component,3*(layer-1)+(sector-1),1);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component);
 					
-					int eventBin = this.getNumberOfEvents()/ratePlotScale;
-					this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layer + " Sector " + sector).fill(eventBin);
-					int numberOfBins=100;
-					int rescaleFactor=2;
-					if (eventBin > (numberOfBins-numberOfBins*10/100)){
-						ratePlotScale*=rescaleFactor;
-						double hitNbVSEvents[][][] = new double[numberOfSectors + 1][numberOfLayers + 1][numberOfBins];
-						for (int sectorCounter = 1; sectorCounter <= numberOfSectors; sectorCounter++) {
-							for (int layerCounter = 1; layerCounter <= numberOfLayers; layerCounter++) {
-								for (int eventBinCounter=0; eventBinCounter<numberOfBins; eventBinCounter++){
-									hitNbVSEvents[sectorCounter][layerCounter][eventBinCounter]=this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).getBinContent(eventBinCounter);					
-									this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).setBinContent(eventBinCounter,0);
-								}
-								this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).setTitleX("Events (Each bin is "+ratePlotScale+" events)");
-								updateHistoChanges();
-
-								for (int eventBinCounter=0; eventBinCounter<numberOfBins/rescaleFactor; eventBinCounter++){
-									for (int binAdding=0; binAdding<rescaleFactor; binAdding++){
-										this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).fill(eventBinCounter,hitNbVSEvents[sectorCounter][layerCounter][rescaleFactor*eventBinCounter+binAdding]);
-									}
-								}
-							}
-						}
-					}
-					
 					/* ===== FILL ADC PLOTS ===== */
 
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax : Layer " + layer + " Sector " + sector).fill(adcOfMax);
-					double adcMaxOldAvg = this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax vs Strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax vs Strip : Layer " + layer + " Sector " + sector).setBinContent(component, adcMaxOldAvg + (adcOfMax-adcMaxOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+					adcMaxHistos[sector][layer].fill(adcOfMax);
+					adcMaxVsStripHistos[sector][layer].fill(component, adcOfMax);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Max: "+ adcOfMax);
 
-					this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse : Layer " + layer + " Sector " + sector).fill(integralOverPulse);
-					double integralOldAvg = this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse vs Strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse vs Strip : Layer " + layer + " Sector " + sector).setBinContent(component, integralOldAvg + (integralOverPulse-integralOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+					integralPulseHistos[sector][layer].fill(integralOverPulse);
+					integralPulseVsStripHistos[sector][layer].fill(component, integralOverPulse);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Integral: "+integralOverPulse);
 
 					/* ===== FILL TIME PLOTS ===== */
@@ -1387,17 +1340,15 @@ public class BMTmonitor extends DetectorMonitor {
 					if (timeOfMax < samplingTime || timeOfMax > samplingTime*(numberOfSamples*(1+sparseReading)-1-1)){
 						
 					}else{
-						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax cut : Layer " + layer + " Sector " + sector).fill(timeOfMax);		
+						timeOfMaxCutHistos[sector][layer].fill(timeOfMax);		
 					}
-					this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax : Layer " + layer + " Sector " + sector).fill(timeOfMax);
-					this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax no fit : Layer " + layer + " Sector " + sector).fill(Math.round( timeOfMax/samplingTime )*samplingTime);		
+					timeOfMaxHistos[sector][layer].fill(timeOfMax);
+					timeOfMaxNoFitHistos[sector][layer].fill(Math.round( timeOfMax/samplingTime )*samplingTime);		
 					
-					double timeOldAvg = this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax vs Strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-					this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax vs Strip : Layer " + layer + " Sector " + sector).setBinContent(component, timeOldAvg + (timeOfMax-timeOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+					timeOfMaxVsStripHistos[sector][layer].fill(component, timeOfMax);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+ "TimeOfMax: "+timeOfMax);
 
-					double timeMaxDreamOldAvg = this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax").getBinContent(dream);
-					this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax").setBinContent(dream,timeMaxDreamOldAvg + (timeOfMax-timeMaxDreamOldAvg)/numberOfHitsPerDream[dream]);
+					timeOfMaxPerDreamHisto.fill(dream, timeOfMax);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+ "Dream: "+dream+"TimeOfMax:"+timeOfMax);
 
 					int ftot=-1; /*First time over threshold */
@@ -1412,14 +1363,12 @@ public class BMTmonitor extends DetectorMonitor {
 						}
 					}
 					if (ftot>=0){
-						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT : Layer " + layer + " Sector " + sector).fill(ftot);
-						double ftotOldAvg = this.getDataGroup().getItem(0,0,2).getH1F("FToT per strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT per strip : Layer " + layer + " Sector " + sector).setBinContent(component, ftotOldAvg + (ftot-ftotOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+						ftotHistos[sector][layer].fill(ftot);
+						ftotPerStripHistos[sector][layer].fill(component, ftot);
 					}
 					if (tot>=0){
-						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT : Layer " + layer + " Sector " + sector).fill(tot);
-						double totOldAvg = this.getDataGroup().getItem(0,0,2).getH1F("ToT per strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT per strip : Layer " + layer + " Sector " + sector).setBinContent(component, totOldAvg + (tot-totOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+						totHistos[sector][layer].fill(tot);
+						totPerStripHistos[sector][layer].fill(component, tot);
 					}
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+"Time Max: "+timeOfMax+" ftot: "+ftot+" tot: "+tot);
 
@@ -1444,9 +1393,10 @@ public class BMTmonitor extends DetectorMonitor {
 				for (int sector = 1; sector <= numberOfSectors; sector++) {
 					for (int layer = 1; layer <= numberOfLayers; layer++) {
 						if (multiplicity[sector][layer]>0){
-							this.getDataGroup().getItem(0, 0, 0).getH1F("Multiplicity : Layer " + layer + " Sector " + sector).fill(multiplicity[sector][layer]);
+							nbHitsVsTimeHistos[sector][layer].fill(this.getEventContext(), this.getNumberOfEvents(), multiplicity[sector][layer]);
+							multiplicityHistos[sector][layer].fill(multiplicity[sector][layer]);
 							double occupancy = (100*multiplicity[sector][layer]/(numberOfStrips[layer]+0.0));
-							this.getDataGroup().getItem(0, 0, 0).getH1F("TileOccupancy : Layer " + layer + " Sector " + sector).fill(occupancy);
+							tileOccupancyHistos[sector][layer].fill(occupancy);
 						}
 					}
 				}
@@ -1459,7 +1409,7 @@ public class BMTmonitor extends DetectorMonitor {
 			
 			for (int sector = 1; sector <= numberOfSectors; sector++) {
 				for (int layer = 1; layer <= numberOfLayers; layer++) {
-					this.getDataGroup().getItem(0, 0, 0).getH1F("Cluster Multiplicity : Layer " + layer + " Sector " + sector).fill(currentEvent.getClusterNumber(sector, layer));
+					clusterMultiplicityHistos[sector][layer].fill(currentEvent.getClusterNumber(sector, layer));
 				}
 			}
 //			if (this.getNumberOfEvents()%5000==1 && this.getNumberOfEvents()>1000){
@@ -1477,53 +1427,6 @@ public class BMTmonitor extends DetectorMonitor {
 //				}
 //			}
 //			System.out.println("Count: "+count);
-			if (this.getNumberOfEvents()%100 == 1){
-//				System.out.println("*** BMT");
-				double mean=0; int numberOfPoints=0; double occupancySumTot=0;
-				for (int layer = 1; layer <= numberOfLayers; layer++) {
-					double meanLayer=0; int numberOfPointsLayer=0; double occupancySum=0;
-					for (int sector = 1; sector <= numberOfSectors; sector++) {
-						for (int component = 1; component <= numberOfStrips[layer]; component++){
-							if ( ! ( (sector == 3 && layer == 5) || (sector == 1 && layer == 5) ) ){
-								double OccupancyNew = this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector).getBinContent(component);
-								//							System.out.println("Occupancy : "+OccupancyNew);
-								//							System.out.println("Average : "+OccupancyNew/count);
-								this.getDataGroup().getItem(0, 0, 0).getH1F("OccupancyStrip : Layer " + layer + " Sector " + sector).setBinContent(component, 100*OccupancyNew/count);
-								//							this.getDataGroup().getItem(0, 0, 0).getH1F("OccupancyStrip : Layer " + layer + " Sector " + sector).setBinContent(component, OccupancyOldAvg + (1-OccupancyOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
-								
-								mean += 100*OccupancyNew/count;
-								numberOfPoints++;
-								meanLayer += 100*OccupancyNew/count;
-								numberOfPointsLayer++;
-//								System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" hitNumber: "+OccupancyNew+" numberOfEvents: "+count+" Occupancy(%): "+(100*OccupancyNew/count));
-								occupancySum += OccupancyNew;
-								occupancySumTot += OccupancyNew;
-							}
-						}
-					}
-//					System.out.println("Occupancy BMT average layer "+layer+" : ");
-//					System.out.println(meanLayer/numberOfPointsLayer);
-////					System.out.println("Number of hits: "+occupancySum);
-////					System.out.println(" / nb strips * nb events: "+(numberOfPointsLayer*count));
-//					System.out.println(occupancySum);
-//					System.out.println((numberOfPointsLayer*count));
-//					System.out.println("");
-////					System.out.println("Ratio: "+occupancySum/(numberOfPointsLayer*count));
-				}
-//				System.out.println("Occupancy BMT average total : ");
-//				System.out.println(mean/numberOfPoints);
-//				
-////				System.out.println("Number of hits: "+occupancySumTot);
-////				System.out.println(" / nb strips * nb events: "+(numberOfPoints*count));
-//				System.out.println(occupancySumTot);
-//				System.out.println((numberOfPoints*count));
-//				
-////				System.out.println("Ratio: "+occupancySumTot/(numberOfPoints*count));
-//				
-//				System.out.println("");
-//				System.out.println("");
-			}
-			
 			/* ===== READ RECONSTRUCTED BANK ===== */
 
 			if (event.hasBank("BMTRec::Clusters") == true) {
@@ -1568,40 +1471,22 @@ public class BMTmonitor extends DetectorMonitor {
 						//System.out.println("avoid");
 						continue;
 					}
-					numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]++;
 
 					/* ===== FILL HISTOS ===== */
 
-					this.getDataGroup().getItem(0, 0, 0).getH1F("HitmapClusters : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(centroidInt);
-					int timeBin=20000; /* For Cosmics with SVT trigger 20000 is ~ an hour */
-					int hour = this.getNumberOfEvents()/timeBin;
-					int rescale=1;
-					//				hitNbVST[layer][sector][hour]++;
-					//				if (hour>100&&hour%100==0){ /* Try automatic rescaling */
-					//					rescale++;
-					//					System.out.println("scale : "+rescale);
-					//					for (int sector2 = 1; sector2 <= maxNumberSector; sector2++) {
-					//						for (int layer2 = 1; layer2 <= maxNumberLayer; layer2++) {
-					//							for (int hour2=0; hour2<rescale*100; hour2++){
-					//								this.getDataGroup().getItem(sector2, layer2, 4).getH1F("NbHits vs Time : Layer " + layer + " Sector " + sector).fill(hour2/rescale, hitNbVST[layer][sector][hour]);
-					//							}
-					//						}
-					//					}
-					//				}
-					this.getDataGroup().getItem(0, 0, 0).getH1F("NbClusters vs Time : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(hour/rescale);
-
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(etot);
-					double clusterChargeOldAvg = this.getDataGroup().getItem(0,0,1).getH1F("ClusterCharge per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, clusterChargeOldAvg + (etot-clusterChargeOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+					hitmapClustersHistos[sectorCentroid][layerCentroid].fill(centroidInt);
+					nbClustersVsTimeHistos[sectorCentroid][layerCentroid].fill(this.getEventContext(), this.getNumberOfEvents(), 1);
+
+					clusterChargeHistos[sectorCentroid][layerCentroid].fill(etot);
+					clusterChargePerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, etot);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Cluster charge: "+etot);
 
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(size);
-					double clusterSizeOldAvg = this.getDataGroup().getItem(0,0,1).getH1F("ClusterSize per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, clusterSizeOldAvg + (size-clusterSizeOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+					clusterSizeHistos[sectorCentroid][layerCentroid].fill(size);
+					clusterSizePerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, size);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Cluster size: "+size);
 
 					if (trkID!=-1){
-						this.getDataGroup().getItem(0, 0, 0).getH1F("OccupancyReco : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(centroidInt, 1);
+						occupancyRecoHistos[sectorCentroid][layerCentroid].fill(centroidInt, 1);
 					}
 					
 					/* ===== FILL HIT/CLUSTERS HISTOS ===== */
@@ -1637,14 +1522,12 @@ public class BMTmonitor extends DetectorMonitor {
 							adc=adcOfMax;
 							time=timeOfMax;
 							numberOfCentroidsMatchedPerStrip[sectorCentroid][layerCentroid][centroidInt]++;
-							this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(adc);
-							double maxAdcOfCentroidOldAvg = this.getDataGroup().getItem(0,0,1).getH1F("MaxAdcOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-							this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, maxAdcOfCentroidOldAvg + (adc-maxAdcOfCentroidOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+							maxAdcOfCentroidHistos[sectorCentroid][layerCentroid].fill(adc);
+							maxAdcOfCentroidPerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, adc);
 							//System.out.println("Matching Sector: "+sectorCentroid+" Layer: "+layerCentroid+" Component: "+centroid+ " Max adc of centroid: "+adc);	
 
-							this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(time);
-							double timeOfCentroidOldAvg = this.getDataGroup().getItem(0,0,2).getH1F("TimeOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-							this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, timeOfCentroidOldAvg + (time-timeOfCentroidOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+							timeOfCentroidHistos[sectorCentroid][layerCentroid].fill(time);
+							timeOfCentroidPerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, time);
 						}
 						//					else{
 						//						System.out.println("ERROR : Sector: "+sectorCentroid+" Layer: "+layerCentroid+" Component: "+centroid);
@@ -1972,14 +1855,14 @@ public class BMTmonitor extends DetectorMonitor {
 									//System.out.println("sector: "+clusterSector+"  layer: "+clusterLayer+"  phiTrack: "+thetaTrackDegree+"  clusterSize: "+clusterSize);
 									
 									
-									int bin = this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize vs angle : Layer " + clusterLayer + " Sector " + clusterSector).getxAxis().getBin(thetaTrackDegree);
+									int bin = clusterSizeVsAngleHistos.get(clusterSector, clusterLayer).getxAxis().getBin(thetaTrackDegree);
 									
-									double clusterSizeOldAvg = this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize vs angle : Layer " + clusterLayer + " Sector " + clusterSector).getBinContent(bin);
-									double numberOfTracksOld = this.getDataGroup().getItem(0, 0, 1).getH1F("Occupancy vs angle : Layer " + clusterLayer + " Sector " + clusterSector).getBinContent(bin);
+									double clusterSizeOldAvg = clusterSizeVsAngleHistos.get(clusterSector, clusterLayer).getBinContent(bin);
+									double numberOfTracksOld = occupancyVsAngleHistos.get(clusterSector, clusterLayer).getBinContent(bin);
 									double numberOfTracksNew = numberOfTracksOld+1;
-									this.getDataGroup().getItem(0, 0, 1).getH1F("Occupancy vs angle : Layer " + clusterLayer + " Sector " + clusterSector).setBinContent(bin,numberOfTracksNew);
+									occupancyVsAngleHistos.get(clusterSector, clusterLayer).setBinContent(bin,numberOfTracksNew);
 									//System.out.println("sector: "+clusterSector+"  layer: "+clusterLayer+"clusterSizeOldAvg: "+clusterSizeOldAvg+"  numberOfTracksNew: "+numberOfTracksNew+" bin: "+bin+" new avg: "+((clusterSizeOldAvg*(numberOfTracksNew-1)+clusterSize)/numberOfTracksNew));
-									this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize vs angle : Layer " + clusterLayer + " Sector " + clusterSector).setBinContent(bin, ((clusterSizeOldAvg*(numberOfTracksNew-1)+clusterSize)/numberOfTracksNew));
+									clusterSizeVsAngleHistos.get(clusterSector, clusterLayer).setBinContent(bin, ((clusterSizeOldAvg*(numberOfTracksNew-1)+clusterSize)/numberOfTracksNew));
 									
 								}
 							}
@@ -1,6 +1,8 @@
 package org.clas.detectors;
 
 import org.clas.viewer.DetectorMonitor;
+import org.clas.viewer.CountH1F;
+import org.clas.viewer.CountH2F;
 import org.jlab.groot.data.H1F;
 import org.jlab.groot.data.H2F;
 import org.jlab.groot.group.DataGroup;
@@ -10,10 +12,19 @@ import org.jlab.io.base.DataEvent;
 
 public class BSTmonitor extends DetectorMonitor {
     
+    // indexed by layer: region (layer+1)/2, bottom layer for odd layers
+    private final CountH2F[] occupancy   = new CountH2F[7];
+    private final CountH1F[] occupancy1D = new CountH1F[7];
 
     public BSTmonitor(String name) {
         super(name);
+        this.subscribeBanks("BST::adc");
         this.setDetectorTabNames("Occupancies 2D", "Occupancies 1D", "Multiplicity");
+        for(int layer=1; layer<=6; layer++) {
+            String occName = "occ_reg" + (layer+1)/2 + "_l" + (2-layer%2);
+            occupancy[layer]   = this.registerCountH2F(occName);
+            occupancy1D[layer] = this.registerCountH1F(occName + "_1d");
+        }
         this.init(false);
     }
     
@@ -195,33 +206,33 @@ public class BSTmonitor extends DetectorMonitor {
                 if(ADC > 0){
                     
                     if(layer == 1){ 
-                        this.getDataGroup().getItem(0,0,0).getH2F("occ_reg1_l1").fill(comp, sector);
-                        this.getDataGroup().getItem(0,0,0).getH1F("occ_reg1_l1_1d").fill((sector-1)*256+comp);
+                        occupancy[1].fill(comp, sector);
+                        occupancy1D[1].fill((sector-1)*256+comp);
                         this.getDetectorSummary().getH2F("summary").fill(comp, sector);
                     }
                     if(layer == 3){ 
-                        this.getDataGroup().getItem(0,0,0).getH2F("occ_reg2_l1").fill(comp, sector);
-                        this.getDataGroup().getItem(0,0,0).getH1F("occ_reg2_l1_1d").fill((sector-1)*256+comp);
+                        occupancy[3].fill(comp, sector);
+                        occupancy1D[3].fill((sector-1)*256+comp);
                         this.getDetectorSummary().getH2F("summary").fill(comp, sector+20);
                     }
                     if(layer == 5){ 
-                        this.getDataGroup().getItem(0,0,0).getH2F("occ_reg3_l1").fill(comp, sector);
-                        this.getDataGroup().getItem(0,0,0).getH1F("occ_reg3_l1_1d").fill((sector-1)*256+comp);
+                        occupancy[5].fill(comp, sector);
+                        occupancy1D[5].fill((sector-1)*256+comp);
                         this.getDetectorSummary().getH2F("summary").fill(comp, sector+48);
                     }
                     if(layer == 2){ 
-                        this.getDataGroup().getItem(0,0,0).getH2F("occ_reg1_l2").fill(comp, sector);
-                        this.getDataGroup().getItem(0,0,0).getH1F("occ_reg1_l2_1d").fill((sector-1)*256+comp);
+                        occupancy[2].fill(comp, sector);
+                        occupancy1D[2].fill((sector-1)*256+comp);
                         this.getDetectorSummary().getH2F("summary").fill(comp, sector+10);
                     }
                     if(layer == 4){ 
-                        this.getDataGroup().getItem(0,0,0).getH2F("occ_reg2_l2").fill(comp, sector);
-                        this.getDataGroup().getItem(0,0,0).getH1F("occ_reg2_l2_1d").fill((sector-1)*256+comp);
+                        occupancy[4].fill(comp, sector);
+                        occupancy1D[4].fill((sector-1)*256+comp);
                         this.getDetectorSummary().getH2F("summary").fill(comp, sector+34);
                     }
                     if(layer == 6){ 
-                        this.getDataGroup().getItem(0,0,0).getH2F("occ_reg3_l2").fill(comp, sector);
-                        this.getDataGroup().getItem(0,0,0).getH1F("occ_reg3_l2_1d").fill((sector-1)*256+comp);
+                        occupancy[6].fill(comp, sector);
+                        occupancy1D[6].fill((sector-1)*256+comp);
                         this.getDetectorSummary().getH2F("summary").fill(comp, sector+66);
                     }
                     
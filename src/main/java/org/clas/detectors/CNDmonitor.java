@@ -12,6 +12,7 @@ public class CNDmonitor  extends DetectorMonitor {
     
     public CNDmonitor(String name) {
         super(name);
+        this.subscribeBanks("CND::adc", "CND::tdc");
         
         this.setDetectorTabNames("ADC Occupancies", "TDC Occupancies");
         this.init(false);
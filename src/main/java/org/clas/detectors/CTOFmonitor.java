@@ -16,6 +16,7 @@ public class CTOFmonitor  extends DetectorMonitor {
     
     public CTOFmonitor(String name) {
         super(name);
+        this.subscribeBanks("CTOF::adc", "CTOF::tdc");
         
         this.setDetectorTabNames("ADC Occupancies", "TDC Occupancies");
         this.init(false);
@@ -1,6 +1,7 @@
 package org.clas.detectors;
 
 import org.clas.viewer.DetectorMonitor;
+import org.clas.viewer.CountH2F;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.detector.base.GeometryFactory;
 import org.jlab.detector.geant4.DCGeant4Factory;
@@ -20,10 +21,13 @@ import org.jlab.io.base.DataEvent;
 
 public class DCmonitor extends DetectorMonitor {
     
+    private final CountH2F[] rawOccupancy = new CountH2F[7];
 
     public DCmonitor(String name) {
         super(name);
+        this.subscribeBanks("DC::tdc");
         this.setDetectorTabNames("Raw Occupancies","Normalized Occupancies", "Hit Multiplicity");
+        for(int sector=1; sector <= 6; sector++) rawOccupancy[sector] = this.registerCountH2F("raw_sec" + sector);
         this.init(false);
     }
 
@@ -170,7 +174,7 @@ public class DCmonitor extends DetectorMonitor {
                 int       TDC = bank.getInt("TDC",i);
                 int     order = bank.getByte("order",i); 
                 
-                this.getDataGroup().getItem(sector,0,0).getH2F("raw_sec"+sector).fill(wire*1.0,layer*1.0);
+                rawOccupancy[sector].fill(wire*1.0,layer*1.0);
 
                 if(sector == 1 && sec1_check == 0){
                     this.getDataGroup().getItem(sector,0,0).getH1F("multiplicity_sec"+ sector).fill(rows);
@@ -205,11 +209,12 @@ public class DCmonitor extends DetectorMonitor {
     @Override
     public void timerUpdate() {
 //        System.out.println("Updating DC");
-        if(this.getNumberOfEvents()>0) {
+        double events = this.getEffectiveNumberOfEvents();
+        if(events>0) {
             for(int sector=1; sector <=6; sector++) {
                 H2F raw = this.getDataGroup().getItem(sector,0,0).getH2F("raw_sec"+sector);
                 for(int loop = 0; loop < raw.getDataBufferSize(); loop++){
-                    this.getDataGroup().getItem(sector,0,0).getH2F("occ_sec"+sector).setDataBufferBin(loop,100*raw.getDataBufferBin(loop)/this.getNumberOfEvents());
+                    this.getDataGroup().getItem(sector,0,0).getH2F("occ_sec"+sector).setDataBufferBin(loop,(float) (100*raw.getDataBufferBin(loop)/events));
                 }
             }
         }
@@ -1,6 +1,7 @@
 package org.clas.detectors;
 
 import org.clas.viewer.DetectorMonitor;
+import org.clas.viewer.HistogramFamily;
 import org.jlab.groot.base.GStyle;
 import org.jlab.groot.data.H1F;
 import org.jlab.groot.data.H2F;
@@ -13,13 +14,22 @@ import org.jlab.io.base.DataEvent;
 public class ECmonitor  extends DetectorMonitor {
 
     private final int[] npaddles = new int[]{68,62,62,36,36,36,36,36,36};
+
+    private HistogramFamily<H2F> occADC, occTDC, datADC, timeFADC, datTDC, mipADC;
         
     
     public ECmonitor(String name) {
         super(name);
+        this.subscribeBanks("ECAL::adc", "ECAL::tdc");
 
         this.setDetectorTabNames("ADC Occupancies","TDC Occupancies", "ADC Histograms", "FADC timing", "TDC Histograms", "ADC sum");
         this.useSectorButtons(true);
+        occADC   = this.registerHistograms(H2F.class, 0, 9, (sector, layer) -> "occADC"+layer);
+        occTDC   = this.registerHistograms(H2F.class, 0, 9, (sector, layer) -> "occTDC"+layer);
+        datADC   = this.registerHistograms(H2F.class, 6, 9, (sector, layer) -> "datADC"+layer+sector);
+        timeFADC = this.registerHistograms(H2F.class, 6, 9, (sector, layer) -> "timeFADC"+layer+sector);
+        datTDC   = this.registerHistograms(H2F.class, 6, 9, (sector, layer) -> "datTDC"+layer+sector);
+        mipADC   = this.registerHistograms(H2F.class, 6, 0, (sector, layer) -> "mipADC"+sector);
         this.init(false);
     }
 
@@ -27,24 +37,6 @@ public class ECmonitor  extends DetectorMonitor {
     public void createHistos() {
         // initialize canvas and create histograms
         this.setNumberOfEvents(0);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies").divide(3, 3);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridX(false);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridY(false);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies").divide(3, 3);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridX(false);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridY(false);
-        this.getDetectorCanvas().getCanvas("ADC Histograms").divide(3, 3);
-        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridX(false);
-        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridY(false);
-        this.getDetectorCanvas().getCanvas("FADC timing").divide(3, 3);
-        this.getDetectorCanvas().getCanvas("FADC timing").setGridX(false);
-        this.getDetectorCanvas().getCanvas("FADC timing").setGridY(false);
-        this.getDetectorCanvas().getCanvas("TDC Histograms").divide(3, 3);
-        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridX(false);
-        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridY(false);
-        this.getDetectorCanvas().getCanvas("ADC sum").divide(3, 2);
-        this.getDetectorCanvas().getCanvas("ADC sum").setGridX(false);
-        this.getDetectorCanvas().getCanvas("ADC sum").setGridY(false);
         
         String[] stacks = new String[]{"PCAL","ECin","ECout"};
         String[] views = new String[]{"u","v","w"};
@@ -117,6 +109,28 @@ public class ECmonitor  extends DetectorMonitor {
              
     }
         
+    @Override
+    public void setupCanvases() {
+        this.getDetectorCanvas().getCanvas("ADC Occupancies").divide(3, 3);
+        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridX(false);
+        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridY(false);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies").divide(3, 3);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridX(false);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridY(false);
+        this.getDetectorCanvas().getCanvas("ADC Histograms").divide(3, 3);
+        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridX(false);
+        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridY(false);
+        this.getDetectorCanvas().getCanvas("FADC timing").divide(3, 3);
+        this.getDetectorCanvas().getCanvas("FADC timing").setGridX(false);
+        this.getDetectorCanvas().getCanvas("FADC timing").setGridY(false);
+        this.getDetectorCanvas().getCanvas("TDC Histograms").divide(3, 3);
+        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridX(false);
+        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridY(false);
+        this.getDetectorCanvas().getCanvas("ADC sum").divide(3, 2);
+        this.getDetectorCanvas().getCanvas("ADC sum").setGridX(false);
+        this.getDetectorCanvas().getCanvas("ADC sum").setGridY(false);
+    }
+
     @Override
     public void plotHistos() {    
         
@@ -175,9 +189,9 @@ public class ECmonitor  extends DetectorMonitor {
                 int adc    = bank.getInt("ADC", loop);
                 float time = bank.getFloat("time",loop);
                 if(adc>0 && time>=0  && isGoodECALTrigger(sector)) {
-                  	this.getDataGroup().getItem(0,layer,0).getH2F("occADC"+layer).fill(sector*1.0, comp*1.0);
-                  	this.getDataGroup().getItem(sector,layer,0).getH2F("datADC"+layer+sector).fill(adc,comp*1.0);
-                    if(time > 1) this.getDataGroup().getItem(sector,layer,0).getH2F("timeFADC"+layer+sector).fill(time,comp*1.0);
+                  	occADC.get(0,layer).fill(sector*1.0, comp*1.0);
+                  	datADC.get(sector,layer).fill(adc,comp*1.0);
+                    if(time > 1) timeFADC.get(sector,layer).fill(time,comp*1.0);
                 }
                 if (layer<4) pcsum[sector-1]+=adc; //raw ADC sum in PCAL
                 if (layer>3) ecsum[sector-1]+=adc; //raw ADC sum in EC
@@ -190,7 +204,7 @@ public class ECmonitor  extends DetectorMonitor {
     	    }   
         
     	int bitsec = getElecTriggerSector(); 
-        if(bitsec>0&&bitsec<7) this.getDataGroup().getItem(bitsec,0,0).getH2F("mipADC"+bitsec).fill(pcsum[bitsec-1], ecsum[bitsec-1]);
+        if(bitsec>0&&bitsec<7) mipADC.get(bitsec,0).fill(pcsum[bitsec-1], ecsum[bitsec-1]);
                 
         if(event.hasBank("ECAL::tdc")==true){
             DataBank  bank = event.getBank("ECAL::tdc");
@@ -202,8 +216,8 @@ public class ECmonitor  extends DetectorMonitor {
                 int       TDC = bank.getInt("TDC",i);
                 int     order = bank.getByte("order",i); 
                 if(TDC>0 && isGoodECALTrigger(sector)) {
-                    this.getDataGroup().getItem(0,layer,0).getH2F("occTDC"+layer).fill(sector*1.0, comp*1.0);
-                    this.getDataGroup().getItem(sector,layer,0).getH2F("datTDC"+layer+sector).fill(TDC*0.02345-triggerPhase*4,comp*1.0);
+                    occTDC.get(0,layer).fill(sector*1.0, comp*1.0);
+                    datTDC.get(sector,layer).fill(TDC*0.02345-getTriggerPhase()*4,comp*1.0);
                 }
 //                if(layer==1)      this.getDetectorSummary().getH1F("sumPCAL").fill(sector*1.0);
 //                else if (layer==2)this.getDetectorSummary().getH1F("sumECin").fill(sector*1.0);
@@ -215,8 +229,10 @@ public class ECmonitor  extends DetectorMonitor {
     @Override
     public void resetEventListener() {
         System.out.println("Resetting EC histogram");
-        this.createHistos();
-        this.plotHistos();
+        synchronized(this) {
+            this.createHistos();
+            this.bindHistograms();
+        }
     }
 
     @Override
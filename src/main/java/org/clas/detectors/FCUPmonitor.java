@@ -15,6 +15,7 @@ public class FCUPmonitor extends DetectorMonitor {
     
     public FCUPmonitor(String name) {
         super(name);
+        this.subscribeBanks("HEADER::info");
         this.setDetectorTabNames("Faraday Cup");
         this.init(false);
     }
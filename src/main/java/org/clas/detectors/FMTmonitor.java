@@ -6,6 +6,10 @@ import java.util.List;
 
 import org.clas.viewer.DetectorMonitor;
 import org.clas.viewer.EventViewer;
+import org.clas.viewer.ProfileH1;
+import org.clas.viewer.CountH1F;
+import org.clas.viewer.CountH2F;
+import org.clas.viewer.TimeSeriesH1;
 import org.jlab.detector.calib.utils.ConstantsManager;
 import org.jlab.detector.calib.utils.DatabaseConstantProvider;
 import org.jlab.groot.data.H1F;
@@ -44,15 +48,43 @@ public class FMTmonitor extends DetectorMonitor {
 	
 	/* ===== DATA STORAGE & DISPLAY ===== */
 	
-	int numberOfHitsPerStrip[][][];
-	int numberOfCentroidsPerStrip[][][];
 	int numberOfCentroidsMatchedPerStrip[][][];
-	int numberOfHitsPerDream[];
 	
-	int ratePlotScale=10;
+	int ratePlotScale=10; /* initial bin width of the rate plots, doubled as the run goes on */
+	TimeSeriesH1.Axis rateAxis = TimeSeriesH1.Axis.EVENTS; /* or UNIXTIME to use the RUN::config time */
 	
 	MVTpulseViewer pulseViewer;
 	
+	/* ===== HISTOGRAM HANDLES ===== */
+	
+	CountH1F hitMultiplicityHisto;
+	CountH2F occupanciesHisto;
+	ProfileH1 timeOfMaxPerDreamHisto;
+	CountH1F[][] hitmapHistos;
+	TimeSeriesH1[][] nbHitsVsTimeHistos;
+	CountH1F[][] adcMaxHistos;
+	ProfileH1[][] adcMaxVsStripHistos;
+	CountH1F[][] integralPulseHistos;
+	ProfileH1[][] integralPulseVsStripHistos;
+	CountH1F[][] timeOfMaxHistos;
+	ProfileH1[][] timeOfMaxVsStripHistos;
+	CountH1F[][] ftotHistos;
+	ProfileH1[][] ftotPerStripHistos;
+	CountH1F[][] totHistos;
+	ProfileH1[][] totPerStripHistos;
+	CountH1F[][] multiplicityHistos;
+	CountH1F[][] tileOccupancyHistos;
+	CountH1F[][] hitmapClustersHistos;
+	TimeSeriesH1[][] nbClustersVsTimeHistos;
+	CountH1F[][] clusterChargeHistos;
+	ProfileH1[][] clusterChargePerStripHistos;
+	CountH1F[][] clusterSizeHistos;
+	ProfileH1[][] clusterSizePerStripHistos;
+	CountH1F[][] maxAdcOfCentroidHistos;
+	ProfileH1[][] maxAdcOfCentroidPerStripHistos;
+	CountH1F[][] timeOfCentroidHistos;
+	ProfileH1[][] timeOfCentroidPerStripHistos;
+	
 	/* ===== RECONSTRUCTION ===== */
 	
 //	private CVTReconstruction recosmic;
@@ -66,6 +98,7 @@ public class FMTmonitor extends DetectorMonitor {
 	public FMTmonitor(String name, /* MVT PULSE DISPLAY */ MVTpulseViewer pulseViewer) {
 		
 		super(name);
+		this.subscribeBanks("FMT::adc", "FMTRec::Clusters", "CVTRec::Cosmics", "CVTRec::Trajectory");
 		
 		this.pulseViewer=pulseViewer;
 		
@@ -122,10 +155,7 @@ public class FMTmonitor extends DetectorMonitor {
 		
 		/* ===== INITIALIZE DATA STORAGE ===== */
 		
-		numberOfHitsPerStrip             = new int[numberOfSectors + 1][numberOfLayers + 1][maxNumberOfStrips+1];
-		numberOfCentroidsPerStrip        = new int[numberOfSectors + 1][numberOfLayers + 1][maxNumberOfStrips+1];
 		numberOfCentroidsMatchedPerStrip = new int[numberOfSectors + 1][numberOfLayers + 1][maxNumberOfStrips+1];
-		numberOfHitsPerDream             = new int[maxNumberOfChips + 1];
 		
 		/* ===== RECONSTRUCTION ===== */
 		
@@ -135,9 +165,45 @@ public class FMTmonitor extends DetectorMonitor {
 		/* ===== DECLARE TABS ===== */
 		
 		this.setDetectorTabNames("Occupancies", "Occupancy", "Occupancy C", "Occupancy Z", "NbHits vs Time", "Tile Multiplicity", "Tile Occupancy", "MaxADC", "MaxADC vs Strip", "IntegralPulse", "IntegralPulse vs Strip", "TimeMax", "TimeMax vs Strip", "TimeMax per Dream", "ToT", "ToT per strip","FToT","FToT per strip", "OccupancyClusters", "NbClusters vs Time", "ClusterCharge", "ClusterCharge per strip", "ClusterSize", "ClusterSize per strip", "ClusterSize vs angle", "Residuals", "MaxAdcOfCentroid", "MaxAdcOfCentroid per strip", "TimeOfCentroid", "TimeOfCentroid per strip","hitMultiplicity");
+		this.registerHandles();
+		this.setInPlaceReset(true);
 		this.init(false);
 	}
 
+	/**
+	 * Resolve the histograms filled per hit once, they are bound again on every reset.
+	 * Plain count histograms go through count handles, which follow the decay mode.
+	 */
+	private void registerHandles() {
+		hitMultiplicityHisto = this.registerCountH1F("hitMultiplicity");
+		occupanciesHisto = this.registerCountH2F("Occupancies");
+		timeOfMaxPerDreamHisto = this.registerProfile("TimeOfMax");
+		hitmapHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "Hitmap : Layer " + layer + " Sector " + sector);
+		nbHitsVsTimeHistos = this.registerTimeSeries(numberOfSectors, numberOfLayers, (sector, layer) -> "NbHits vs Time : Layer " + layer + " Sector " + sector, rateAxis, ratePlotScale);
+		adcMaxHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ADCMax : Layer " + layer + " Sector " + sector);
+		adcMaxVsStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ADCMax vs Strip : Layer " + layer + " Sector " + sector);
+		integralPulseHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "IntegralPulse : Layer " + layer + " Sector " + sector);
+		integralPulseVsStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "IntegralPulse vs Strip : Layer " + layer + " Sector " + sector);
+		timeOfMaxHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfMax : Layer " + layer + " Sector " + sector);
+		timeOfMaxVsStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfMax vs Strip : Layer " + layer + " Sector " + sector);
+		ftotHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "FToT : Layer " + layer + " Sector " + sector);
+		ftotPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "FToT per strip : Layer " + layer + " Sector " + sector);
+		totHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ToT : Layer " + layer + " Sector " + sector);
+		totPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ToT per strip : Layer " + layer + " Sector " + sector);
+		multiplicityHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "Multiplicity : Layer " + layer + " Sector " + sector);
+		tileOccupancyHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TileOccupancy : Layer " + layer + " Sector " + sector);
+		hitmapClustersHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "HitmapClusters : Layer " + layer + " Sector " + sector);
+		nbClustersVsTimeHistos = this.registerTimeSeries(numberOfSectors, numberOfLayers, (sector, layer) -> "NbClusters vs Time : Layer " + layer + " Sector " + sector, rateAxis, ratePlotScale);
+		clusterChargeHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterCharge : Layer " + layer + " Sector " + sector);
+		clusterChargePerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterCharge per strip : Layer " + layer + " Sector " + sector);
+		clusterSizeHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterSize : Layer " + layer + " Sector " + sector);
+		clusterSizePerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "ClusterSize per strip : Layer " + layer + " Sector " + sector);
+		maxAdcOfCentroidHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "MaxAdcOfCentroid : Layer " + layer + " Sector " + sector);
+		maxAdcOfCentroidPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "MaxAdcOfCentroid per strip : Layer " + layer + " Sector " + sector);
+		timeOfCentroidHistos = this.registerCountH1F(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfCentroid : Layer " + layer + " Sector " + sector);
+		timeOfCentroidPerStripHistos = this.registerProfiles(numberOfSectors, numberOfLayers, (sector, layer) -> "TimeOfCentroid per strip : Layer " + layer + " Sector " + sector);
+	}
+	
 	/**
 	 * Create histograms, define legends, fill colors
 	 */
@@ -284,6 +350,7 @@ public class FMTmonitor extends DetectorMonitor {
 		timeOfMaxHisto.setTitleY("Time of max adc");
 		timeOfMaxHisto.setFillColor(4);
 		timeGroup.addDataSet(timeOfMaxHisto, 0);
+		
 	
 		for (int sector = 1; sector <= numberOfSectors; sector++) {
 			for (int layer = 1; layer <= numberOfLayers; layer++) {
@@ -539,6 +606,7 @@ public class FMTmonitor extends DetectorMonitor {
 			}
 		}
 		//pulseHistoFMT = new H1F("Pulse","Pulse", numberOfSamples, 1., numberOfSamples+1);
+
 	}
 	
 	/**
@@ -906,168 +974,16 @@ public class FMTmonitor extends DetectorMonitor {
 		}
 	}
 	
-	public void updateHistoChanges() {
-		for (int sector = 1; sector <= numberOfSectors; sector++) {
-			for (int layer = 1; layer <= numberOfLayers; layer++) {
-				int column=numberOfSectors - sector;
-				int row;
-				int numberOfColumns=numberOfSectors;
-				
-				switch (layer) {
-				case 1: row=1; break;
-				case 2: row=2; break;
-				case 3: row=3; break;
-				case 4: row=4; break;
-				case 5: row=5; break;
-				case 6: row=6; break;
-				default:row=-1;break;
-				}
-//				if (isZ[layer]==1){
-//					this.getDetectorCanvas().getCanvas("Occupancy Z").cd(column + numberOfColumns * row);
-//					this.getDetectorCanvas().getCanvas("Occupancy Z").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-//				}else{
-//					this.getDetectorCanvas().getCanvas("Occupancy C").cd(column + numberOfColumns * row);
-//					this.getDetectorCanvas().getCanvas("Occupancy C").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-//				}
-				
-				switch (layer) {
-				case 1: row=5; break;
-				case 2: row=2; break;
-				case 3: row=1; break;
-				case 4: row=4; break;
-				case 5: row=0; break;
-				case 6: row=3; break;
-				default:row=-1;break;
-				}
-////				this.getDetectorCanvas().getCanvas("Occupancies").cd(column + numberOfColumns * row);
-////				this.getDetectorCanvas().getCanvas("Occupancies").draw(
-////						this.getDataGroup().getItem(sector, layer, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-////				
-//				this.getDetectorCanvas().getCanvas("Occupancy").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("Occupancy").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector));
-//
-				this.getDetectorCanvas().getCanvas("NbHits vs Time").cd(column + numberOfColumns * row);
-				this.getDetectorCanvas().getCanvas("NbHits vs Time").draw(
-						this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("MaxADC").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxADC").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("MaxADC vs Strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxADC vs Strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax vs Strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("IntegralPulse").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("IntegralPulse").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("IntegralPulse vs Strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("IntegralPulse vs Strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse vs Strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("TimeMax").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeMax").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("TimeMax vs Strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeMax vs Strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax vs Strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ToT").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ToT").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ToT per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ToT per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT per strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("FToT").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("FToT").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("FToT per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("FToT per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT per strip : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("OccupancyClusters").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("OccupancyClusters").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("HitmapClusters : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("NbClusters vs Time").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("NbClusters vs Time").draw(
-//						this.getDataGroup().getItem(0, 0, 0).getH1F("NbClusters vs Time : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ClusterCharge").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterCharge").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("ClusterCharge per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterCharge per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge per strip : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("ClusterSize").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterSize").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("ClusterSize per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("ClusterSize per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize per strip : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("Residuals").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("Residuals").draw(
-//						this.getDataGroup().getItem(0, 0, 3).getH1F("Residuals : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid per strip : Layer " + layer + " Sector " + sector));
-//
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid : Layer " + layer + " Sector " + sector));
-//				
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid per strip").cd(column + numberOfColumns * row);
-//				this.getDetectorCanvas().getCanvas("TimeOfCentroid per strip").draw(
-//						this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid per strip : Layer " + layer + " Sector " + sector));
-//				
+	/**
+	 * Counters kept next to the histograms, cleared with them on an in-place reset
+	 */
+	@Override
+	public void resetCounters() {
+		for (int sector = 0; sector <= numberOfSectors; sector++) {
+			for (int layer = 0; layer <= numberOfLayers; layer++) {
+				Arrays.fill(numberOfCentroidsMatchedPerStrip[sector][layer], 0);
 			}
-	}
-//		this.getDetectorCanvas().getCanvas("Occupancies").update();
-//		this.getDetectorCanvas().getCanvas("Occupancy").update();
-//		this.getDetectorCanvas().getCanvas("Occupancy C").update();
-//		this.getDetectorCanvas().getCanvas("Occupancy Z").update();
-//		this.getDetectorCanvas().getCanvas("NbHits vs Time").update();
-//
-//		this.getDetectorCanvas().getCanvas("MaxADC").update();
-//		this.getDetectorCanvas().getCanvas("MaxADC vs Strip").update();
-//		this.getDetectorCanvas().getCanvas("IntegralPulse").update();
-//		this.getDetectorCanvas().getCanvas("IntegralPulse vs Strip").update();
-//
-//		this.getDetectorCanvas().getCanvas("TimeMax").update();
-//		this.getDetectorCanvas().getCanvas("TimeMax vs Strip").update();
-//		this.getDetectorCanvas().getCanvas("ToT").update();
-//		this.getDetectorCanvas().getCanvas("ToT per strip").update();
-//		this.getDetectorCanvas().getCanvas("FToT").update();
-//		this.getDetectorCanvas().getCanvas("FToT per strip").update();
-//
-//		this.getDetectorCanvas().getCanvas("OccupancyClusters").update();
-//		this.getDetectorCanvas().getCanvas("NbClusters vs Time").update();
-//		this.getDetectorCanvas().getCanvas("ClusterCharge").update();
-//		this.getDetectorCanvas().getCanvas("ClusterCharge per strip").update();
-//		this.getDetectorCanvas().getCanvas("ClusterSize").update();
-//		this.getDetectorCanvas().getCanvas("ClusterSize per strip").update();
-//		this.getDetectorCanvas().getCanvas("Residuals").update();
-//		this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid").update();
-//		this.getDetectorCanvas().getCanvas("MaxAdcOfCentroid per strip").update();
-//		this.getDetectorCanvas().getCanvas("TimeOfCentroid").update();
-//		this.getDetectorCanvas().getCanvas("TimeOfCentroid per strip").update();
+		}
 	}
 	
 	/**
@@ -1107,7 +1023,7 @@ public class FMTmonitor extends DetectorMonitor {
 				//System.out.println("hasBankFMT");
 				DataBank bank = event.getBank("FMT::adc");
 				//bank.show();
-				this.getDataGroup().getItem(0, 0, 0).getH1F("hitMultiplicity").fill(bank.rows(),1);
+				hitMultiplicityHisto.fill(bank.rows(),1);
 				//if (bank.rows()>4){ //CUT
 
 				for (int i = 0; i < bank.rows(); i++) { /* For all hits */
@@ -1137,7 +1053,6 @@ public class FMTmonitor extends DetectorMonitor {
 					/* ===== COMPUTE GENERAL QUANTITIES ===== */
 
 					multiplicity[sector][layer]++;
-					numberOfHitsPerStrip[sector][layer][component]++;
 					//				offset[layer][sector][component]=256;
 					//				threshold[layer][sector][component]=5*8.5;
 					int dream=0;
@@ -1148,60 +1063,30 @@ public class FMTmonitor extends DetectorMonitor {
 					int dreamSector = (sector-1) * numberOfChips[layer] ;
 					int dreamTile = (component - 1) / numberOfStripsPerChip + 1;
 					dream = dreamLayer + dreamSector + dreamTile;
-					numberOfHitsPerDream[dream]++;
 
 					/* ===== FILL OCCUPANCY PLOTS ===== */
 
-					this.getDataGroup().getItem(0, 0, 0).getH1F("Hitmap : Layer " + layer + " Sector " + sector).fill(component, 1);
-					this.getDataGroup().getItem(0, 0, 0).getH2F("Occupancies").fill(component,3*(layer-1)+(sector-1),1);
+					hitmapHistos[sector][layer].fill(component, 1);
+					occupanciesHisto.fill(component,3*(layer-1)+(sector-1),1);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component);
 
-					int eventBin = this.getNumberOfEvents()/ratePlotScale;
-					this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layer + " Sector " + sector).fill(eventBin);
-					int numberOfBins=100;
-					int rescaleFactor=2;
-					if (eventBin > (numberOfBins-numberOfBins*10/100)){
-						ratePlotScale*=rescaleFactor;
-						double hitNbVSEvents[][][] = new double[numberOfSectors + 1][numberOfLayers + 1][numberOfBins];
-						for (int sectorCounter = 1; sectorCounter <= numberOfSectors; sectorCounter++) {
-							for (int layerCounter = 1; layerCounter <= numberOfLayers; layerCounter++) {
-								for (int eventBinCounter=0; eventBinCounter<numberOfBins; eventBinCounter++){
-									hitNbVSEvents[sectorCounter][layerCounter][eventBinCounter]=this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).getBinContent(eventBinCounter);					
-									this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).setBinContent(eventBinCounter,0);
-								}
-								this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).setTitleX("Events (Each bin is "+ratePlotScale+" events)");
-								updateHistoChanges();
-
-								for (int eventBinCounter=0; eventBinCounter<numberOfBins/rescaleFactor; eventBinCounter++){
-									for (int binAdding=0; binAdding<rescaleFactor; binAdding++){
-										this.getDataGroup().getItem(0, 0, 0).getH1F("NbHits vs Time : Layer " + layerCounter + " Sector " + sectorCounter).fill(eventBinCounter,hitNbVSEvents[sectorCounter][layerCounter][rescaleFactor*eventBinCounter+binAdding]);
-									}
-								}
-							}
-						}
-					}
-
 					/* ===== FILL ADC PLOTS ===== */
 
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax : Layer " + layer + " Sector " + sector).fill(adcOfMax);
-					double adcMaxOldAvg = this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax vs Strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ADCMax vs Strip : Layer " + layer + " Sector " + sector).setBinContent(component, adcMaxOldAvg + (adcOfMax-adcMaxOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+					adcMaxHistos[sector][layer].fill(adcOfMax);
+					adcMaxVsStripHistos[sector][layer].fill(component, adcOfMax);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Max: "+ adcOfMax);
 
-					this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse : Layer " + layer + " Sector " + sector).fill(integralOverPulse);
-					double integralOldAvg = this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse vs Strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("IntegralPulse vs Strip : Layer " + layer + " Sector " + sector).setBinContent(component, integralOldAvg + (integralOverPulse-integralOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+					integralPulseHistos[sector][layer].fill(integralOverPulse);
+					integralPulseVsStripHistos[sector][layer].fill(component, integralOverPulse);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Integral: "+integralOverPulse);
 
 					/* ===== FILL TIME PLOTS ===== */
 
-					this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax : Layer " + layer + " Sector " + sector).fill(timeOfMax);
-					double timeOldAvg = this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax vs Strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-					this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax vs Strip : Layer " + layer + " Sector " + sector).setBinContent(component, timeOldAvg + (timeOfMax-timeOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+					timeOfMaxHistos[sector][layer].fill(timeOfMax);
+					timeOfMaxVsStripHistos[sector][layer].fill(component, timeOfMax);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+ "TimeOfMax: "+timeOfMax);
 
-					double timeMaxDreamOldAvg = this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax").getBinContent(dream);
-					this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfMax").setBinContent(dream,timeMaxDreamOldAvg + (timeOfMax-timeMaxDreamOldAvg)/numberOfHitsPerDream[dream]);
+					timeOfMaxPerDreamHisto.fill(dream, timeOfMax);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+ "Dream: "+dream+"TimeOfMax:"+timeOfMax);
 
 					int ftot=-1; /*First time over threshold */
@@ -1216,14 +1101,12 @@ public class FMTmonitor extends DetectorMonitor {
 						}
 					}
 					if (ftot>=0){
-						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT : Layer " + layer + " Sector " + sector).fill(ftot);
-						double ftotOldAvg = this.getDataGroup().getItem(0,0,2).getH1F("FToT per strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-						this.getDataGroup().getItem(0, 0, 2).getH1F("FToT per strip : Layer " + layer + " Sector " + sector).setBinContent(component, ftotOldAvg + (ftot-ftotOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+						ftotHistos[sector][layer].fill(ftot);
+						ftotPerStripHistos[sector][layer].fill(component, ftot);
 					}
 					if (tot>=0){
-						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT : Layer " + layer + " Sector " + sector).fill(tot);
-						double totOldAvg = this.getDataGroup().getItem(0,0,2).getH1F("ToT per strip : Layer " + layer + " Sector " + sector).getBinContent(component);
-						this.getDataGroup().getItem(0, 0, 2).getH1F("ToT per strip : Layer " + layer + " Sector " + sector).setBinContent(component, totOldAvg + (tot-totOldAvg)/numberOfHitsPerStrip[sector][layer][component]);
+						totHistos[sector][layer].fill(tot);
+						totPerStripHistos[sector][layer].fill(component, tot);
 					}
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+"Time Max: "+timeOfMax+" ftot: "+ftot+" tot: "+tot);
 
@@ -1249,9 +1132,10 @@ public class FMTmonitor extends DetectorMonitor {
 				for (int sector = 1; sector <= numberOfSectors; sector++) {
 					for (int layer = 1; layer <= numberOfLayers; layer++) {
 						if (multiplicity[sector][layer]>0){
-							this.getDataGroup().getItem(0, 0, 0).getH1F("Multiplicity : Layer " + layer + " Sector " + sector).fill(multiplicity[sector][layer]);
+							nbHitsVsTimeHistos[sector][layer].fill(this.getEventContext(), this.getNumberOfEvents(), multiplicity[sector][layer]);
+							multiplicityHistos[sector][layer].fill(multiplicity[sector][layer]);
 							double occupancy = (100*multiplicity[sector][layer]/(numberOfStrips[layer]+0.0));
-							this.getDataGroup().getItem(0, 0, 0).getH1F("TileOccupancy : Layer " + layer + " Sector " + sector).fill(occupancy);
+							tileOccupancyHistos[sector][layer].fill(occupancy);
 						}
 					}
 				}
@@ -1296,36 +1180,18 @@ public class FMTmonitor extends DetectorMonitor {
 						System.out.println("avoid");
 						continue;
 					}
-					numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]++;
 
 					/* ===== FILL HISTOS ===== */
 
-					this.getDataGroup().getItem(0, 0, 0).getH1F("HitmapClusters : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(centroidInt);
-					int timeBin=20000; /* For Cosmics with SVT trigger 20000 is ~ an hour */
-					int hour = this.getNumberOfEvents()/timeBin;
-					int rescale=1;
-					//				hitNbVST[layer][sector][hour]++;
-					//				if (hour>100&&hour%100==0){ /* Try automatic rescaling */
-					//					rescale++;
-					//					System.out.println("scale : "+rescale);
-					//					for (int sector2 = 1; sector2 <= maxNumberSector; sector2++) {
-					//						for (int layer2 = 1; layer2 <= maxNumberLayer; layer2++) {
-					//							for (int hour2=0; hour2<rescale*100; hour2++){
-					//								this.getDataGroup().getItem(sector2, layer2, 4).getH1F("NbHits vs Time : Layer " + layer + " Sector " + sector).fill(hour2/rescale, hitNbVST[layer][sector][hour]);
-					//							}
-					//						}
-					//					}
-					//				}
-					this.getDataGroup().getItem(0, 0, 0).getH1F("NbClusters vs Time : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(hour/rescale);
-
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(etot);
-					double clusterChargeOldAvg = this.getDataGroup().getItem(0,0,1).getH1F("ClusterCharge per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterCharge per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, clusterChargeOldAvg + (etot-clusterChargeOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+					hitmapClustersHistos[sectorCentroid][layerCentroid].fill(centroidInt);
+					nbClustersVsTimeHistos[sectorCentroid][layerCentroid].fill(this.getEventContext(), this.getNumberOfEvents(), 1);
+
+					clusterChargeHistos[sectorCentroid][layerCentroid].fill(etot);
+					clusterChargePerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, etot);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Cluster charge: "+etot);
 
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(size);
-					double clusterSizeOldAvg = this.getDataGroup().getItem(0,0,1).getH1F("ClusterSize per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-					this.getDataGroup().getItem(0, 0, 1).getH1F("ClusterSize per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, clusterSizeOldAvg + (size-clusterSizeOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+					clusterSizeHistos[sectorCentroid][layerCentroid].fill(size);
+					clusterSizePerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, size);
 					//System.out.println("Sector: "+sector+" Layer: "+layer+" Component: "+component+" Cluster size: "+size);
 
 					/* ===== FILL HIT/CLUSTERS HISTOS ===== */
@@ -1361,14 +1227,12 @@ public class FMTmonitor extends DetectorMonitor {
 							adc=adcOfMax;
 							time=timeOfMax;
 							numberOfCentroidsMatchedPerStrip[sectorCentroid][layerCentroid][centroidInt]++;
-							this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(adc);
-							double maxAdcOfCentroidOldAvg = this.getDataGroup().getItem(0,0,1).getH1F("MaxAdcOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-							this.getDataGroup().getItem(0, 0, 1).getH1F("MaxAdcOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, maxAdcOfCentroidOldAvg + (adc-maxAdcOfCentroidOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+							maxAdcOfCentroidHistos[sectorCentroid][layerCentroid].fill(adc);
+							maxAdcOfCentroidPerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, adc);
 							//System.out.println("Matching Sector: "+sectorCentroid+" Layer: "+layerCentroid+" Component: "+centroid+ " Max adc of centroid: "+adc);	
 
-							this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid : Layer " + layerCentroid + " Sector " + sectorCentroid).fill(time);
-							double timeOfCentroidOldAvg = this.getDataGroup().getItem(0,0,2).getH1F("TimeOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).getBinContent(centroidInt);
-							this.getDataGroup().getItem(0, 0, 2).getH1F("TimeOfCentroid per strip : Layer " + layerCentroid + " Sector " + sectorCentroid).setBinContent(centroidInt, timeOfCentroidOldAvg + (time-timeOfCentroidOldAvg)/numberOfCentroidsPerStrip[sectorCentroid][layerCentroid][centroidInt]);
+							timeOfCentroidHistos[sectorCentroid][layerCentroid].fill(time);
+							timeOfCentroidPerStripHistos[sectorCentroid][layerCentroid].fill(centroidInt, time);
 						}
 						//					else{
 						//						System.out.println("ERROR : Sector: "+sectorCentroid+" Layer: "+layerCentroid+" Component: "+centroid);
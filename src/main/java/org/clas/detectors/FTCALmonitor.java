@@ -18,6 +18,7 @@ public class FTCALmonitor  extends DetectorMonitor {
 
     public FTCALmonitor(String name) {
         super(name);
+        this.subscribeBanks("FTCAL::adc");
         
         this.setDetectorTabNames("FADC Occupancies");
         this.init(false);
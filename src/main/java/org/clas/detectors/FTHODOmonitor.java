@@ -18,6 +18,7 @@ public class FTHODOmonitor extends DetectorMonitor {
 
     public FTHODOmonitor(String name) {
         super(name);
+        this.subscribeBanks("FTHODO::adc");
 
         ccdb.setVariation("default");
         ccdb.init(Arrays.asList(new String[]{
@@ -1,6 +1,7 @@
 package org.clas.detectors;
 
 import org.clas.viewer.DetectorMonitor;
+import org.clas.viewer.HistogramFamily;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.detector.view.DetectorShape2D;
 import org.jlab.groot.data.H1F;
@@ -16,11 +17,22 @@ public class FTOFmonitor  extends DetectorMonitor {
 
     FTOFHits          ftofHits[] = new FTOFHits[3];    
     
+    // occupancies are indexed by [lay][ord], sector histograms by [sec][2*lay+ord]
+    private HistogramFamily<H2F> occADC, occTDC, datADC, timeFADC, datTDC, gmean, tdif;
+    
     public FTOFmonitor(String name) {
         super(name);
+        this.subscribeBanks("FTOF::adc", "FTOF::tdc");
         
         this.setDetectorTabNames("ADC Occupancies", "TDC Occupancies","ADC Histograms", "FADC timing", "TDC Histograms","GMEAN");
         this.useSectorButtons(true);
+        occADC   = this.registerHistograms(H2F.class, 2, 1, (lay, ord) -> "occADC"+lay+ord);
+        occTDC   = this.registerHistograms(H2F.class, 2, 1, (lay, ord) -> "occTDC"+lay+ord);
+        datADC   = this.registerHistograms(H2F.class, 6, 5, (sec, lo) -> "datADC"+sec+(lo/2)+(lo%2));
+        timeFADC = this.registerHistograms(H2F.class, 6, 5, (sec, lo) -> "timeFADC"+sec+(lo/2)+(lo%2));
+        datTDC   = this.registerHistograms(H2F.class, 6, 5, (sec, lo) -> "datTDC"+sec+(lo/2)+(lo%2));
+        gmean    = this.registerHistograms(H2F.class, 6, 2, (sec, lay) -> "GMEAN"+sec+lay);
+        tdif     = this.registerHistograms(H2F.class, 6, 2, (sec, lay) -> "TDIF"+sec+lay);
         this.init(false);   // set to true for picture on left side
         ftofHits[0] = new FTOFHits("PANEL1A");
         ftofHits[1] = new FTOFHits("PANEL1B");
@@ -31,24 +43,6 @@ public class FTOFmonitor  extends DetectorMonitor {
     public void createHistos() {
         // initialize canvas and create histograms
         this.setNumberOfEvents(0);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies").divide(2, 3);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridX(false);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridY(false);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies").divide(2, 3);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridX(false);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridY(false);
-        this.getDetectorCanvas().getCanvas("ADC Histograms").divide(2, 3);
-        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridX(false);
-        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridY(false);
-        this.getDetectorCanvas().getCanvas("FADC timing").divide(2, 3);
-        this.getDetectorCanvas().getCanvas("FADC timing").setGridX(false);
-        this.getDetectorCanvas().getCanvas("FADC timing").setGridY(false);
-        this.getDetectorCanvas().getCanvas("TDC Histograms").divide(2, 3);
-        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridX(false);
-        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridY(false);
-        this.getDetectorCanvas().getCanvas("GMEAN").divide(2, 3);
-        this.getDetectorCanvas().getCanvas("GMEAN").setGridX(false);
-        this.getDetectorCanvas().getCanvas("GMEAN").setGridY(false);
         
         String[] stacks = new String[]{"P1A","P1B","P2"};
         String[] views = new String[]{"Left","Right"};   
@@ -151,6 +145,28 @@ public class FTOFmonitor  extends DetectorMonitor {
                 
     }
             
+    @Override
+    public void setupCanvases() {
+        this.getDetectorCanvas().getCanvas("ADC Occupancies").divide(2, 3);
+        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridX(false);
+        this.getDetectorCanvas().getCanvas("ADC Occupancies").setGridY(false);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies").divide(2, 3);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridX(false);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies").setGridY(false);
+        this.getDetectorCanvas().getCanvas("ADC Histograms").divide(2, 3);
+        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridX(false);
+        this.getDetectorCanvas().getCanvas("ADC Histograms").setGridY(false);
+        this.getDetectorCanvas().getCanvas("FADC timing").divide(2, 3);
+        this.getDetectorCanvas().getCanvas("FADC timing").setGridX(false);
+        this.getDetectorCanvas().getCanvas("FADC timing").setGridY(false);
+        this.getDetectorCanvas().getCanvas("TDC Histograms").divide(2, 3);
+        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridX(false);
+        this.getDetectorCanvas().getCanvas("TDC Histograms").setGridY(false);
+        this.getDetectorCanvas().getCanvas("GMEAN").divide(2, 3);
+        this.getDetectorCanvas().getCanvas("GMEAN").setGridX(false);
+        this.getDetectorCanvas().getCanvas("GMEAN").setGridY(false);
+    }
+
     @Override
     public void plotHistos() {
     	
@@ -223,9 +239,9 @@ public class FTOFmonitor  extends DetectorMonitor {
                 
                 int lay=layer-1; int ord=order-0;
                 if(ADC>0 && isGoodECALTrigger(sector)) {
-                	  this.getDataGroup().getItem(0,lay,0).getH2F("occADC"+lay+ord).fill(sector*1.0,paddle*1.0);
-                	  this.getDataGroup().getItem(sector,lay,0).getH2F("datADC"+sector+lay+ord).fill(ADC,paddle*1.0);
-                	  if(time > 1) this.getDataGroup().getItem(sector,lay,0).getH2F("timeFADC"+sector+lay+ord).fill(time,paddle*1.0);
+                	  occADC.get(lay,ord).fill(sector*1.0,paddle*1.0);
+                	  datADC.get(sector,2*lay+ord).fill(ADC,paddle*1.0);
+                	  if(time > 1) timeFADC.get(sector,2*lay+ord).fill(time,paddle*1.0);
                 	  if(layer == 2) this.getDetectorSummary().getH1F("sum_p1").fill(sector*1.0);
                       if(layer == 1) this.getDetectorSummary().getH1F("sum_p2").fill(sector*1.0); 
                       if(layer == 3) this.getDetectorSummary().getH1F("sum_p2").fill(sector+6.0); 
@@ -246,9 +262,9 @@ public class FTOFmonitor  extends DetectorMonitor {
                 
                 int lay=layer-1; int ord=order-2;
                 if(TDC>0 && isGoodECALTrigger(sector)) {
-                   this.getDataGroup().getItem(0,lay,0).getH2F("occTDC"+lay+ord).fill(sector*1.0,paddle*1.0);
-                   this.getDataGroup().getItem(sector,lay,0).getH2F("datTDC"+sector+lay+ord).fill(TDC*0.02345-triggerPhase*4,paddle*1.0);
-                   storeTDCHits(lay,sector-1,ord,paddle,(float)(TDC*0.02345-triggerPhase*4));
+                   occTDC.get(lay,ord).fill(sector*1.0,paddle*1.0);
+                   datTDC.get(sector,2*lay+ord).fill(TDC*0.02345-getTriggerPhase()*4,paddle*1.0);
+                   storeTDCHits(lay,sector-1,ord,paddle,(float)(TDC*0.02345-getTriggerPhase()*4));
                 }
             }
         }
@@ -256,8 +272,8 @@ public class FTOFmonitor  extends DetectorMonitor {
         for(int sec=1; sec<7; sec++) {
           	if (isGoodECALTrigger(sec)) {
           	    for(int il=0; il<3; il++) {
-        		        getGM(il,sec-1,this.getDataGroup().getItem(sec,il,0).getH2F("GMEAN"+sec+il));
-        		        getTD(il,sec-1,this.getDataGroup().getItem(sec,il,0).getH2F("TDIF"+sec+il));
+        		        getGM(il,sec-1,gmean.get(sec,il));
+        		        getTD(il,sec-1,tdif.get(sec,il));
                  }
           	}
         }
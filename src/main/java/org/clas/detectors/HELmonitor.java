@@ -13,6 +13,8 @@ public class HELmonitor extends DetectorMonitor {
     
     public HELmonitor(String name) {
         super(name);
+        this.subscribeBanks("HEL::adc");
+        this.setMustSeeEveryEvent(true);
         this.setDetectorTabNames("Raw Signals", "Helicity");
         this.init(false);
     }
@@ -132,12 +134,10 @@ public class HELmonitor extends DetectorMonitor {
    
     // process event info and save into data group
         
-        if(event.hasBank("RUN::trigger") && event.hasBank("RUN::config") && event.hasBank("HEL::adc")){
-	    DataBank head = event.getBank("RUN::config");
-	    DataBank trig = event.getBank("RUN::trigger");
+        if(event.hasBank("RUN::trigger") && this.getEventContext().hasConfig() && event.hasBank("HEL::adc")){
 	    DataBank bank = event.getBank("HEL::adc");
-	    int eventNumber = head.getInt("event", 0);
-	    int unixTime = head.getInt("unixtime", 0);
+	    int eventNumber = this.getEventContext().getEvent();
+	    int unixTime = this.getEventContext().getUnixTime();
             int rows = bank.rows();
             int hel     = -1;
             int sync    = -1;
@@ -165,6 +165,7 @@ public class HELmonitor extends DetectorMonitor {
             if(hel==-1 || sync == -1 || quartet == -1) {
                 System.out.println("Helicity info not set for event number " + eventNumber);
                 bank.show();
+                this.flagEvent("Helicity info not set");
             }
 //                if(bank.getInt("trigger",0)==0) 
 //                    System.out.println(eventNumber + " " + unixTime + " " + String.format("0x%08X", bank.getInt("trigger",0))
@@ -176,7 +177,7 @@ public class HELmonitor extends DetectorMonitor {
                 this.getDataGroup().getItem(0,0,0).getGraph("helSequence").addPoint(eventNumber, hel, 0., 0.);
                 this.getDataGroup().getItem(0,0,0).getGraph("syncSequence").addPoint(eventNumber, sync+0.1, 0., 0.);
                 this.getDataGroup().getItem(0,0,0).getGraph("quartetSequence").addPoint(eventNumber, quartet-0.1, 0., 0.);
-                if(this.getDataGroup().getItem(0,0,0).getGraph("helSequence").getVectorX().size()==2) {
+                if(this.getDataGroup().getItem(0,0,0).getGraph("helSequence").getVectorX().size()==2 && !isHeadless()) {
                     this.getDetectorCanvas().getCanvas("Helicity").cd(3);
                     this.getDetectorCanvas().getCanvas("Helicity").draw(this.getDataGroup().getItem(0,0,0).getGraph("helSequence"));
                     this.getDetectorCanvas().getCanvas("Helicity").draw(this.getDataGroup().getItem(0,0,0).getGraph("syncSequence"),"same");
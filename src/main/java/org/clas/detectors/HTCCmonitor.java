@@ -17,6 +17,7 @@ public class HTCCmonitor  extends DetectorMonitor {
     
     public HTCCmonitor(String name) {
         super(name);
+        this.subscribeBanks("HTCC::adc", "HTCC::tdc");
         
         this.setDetectorTabNames("Occupancies", "ADC spectra", "FADC timing spectra", "TDC spectra");
         this.init(false);
@@ -26,18 +27,6 @@ public class HTCCmonitor  extends DetectorMonitor {
     public void createHistos() {
         // initialize canvas and create histograms
         this.setNumberOfEvents(0);
-        this.getDetectorCanvas().getCanvas("Occupancies").divide(1, 2);
-        this.getDetectorCanvas().getCanvas("Occupancies").setGridX(false);
-        this.getDetectorCanvas().getCanvas("Occupancies").setGridY(false);
-        this.getDetectorCanvas().getCanvas("ADC spectra").divide(3, 2);
-        this.getDetectorCanvas().getCanvas("ADC spectra").setGridX(false);
-        this.getDetectorCanvas().getCanvas("ADC spectra").setGridY(false);
-        this.getDetectorCanvas().getCanvas("FADC timing spectra").divide(3, 2);
-        this.getDetectorCanvas().getCanvas("FADC timing spectra").setGridX(false);
-        this.getDetectorCanvas().getCanvas("FADC timing spectra").setGridY(false);
-        this.getDetectorCanvas().getCanvas("TDC spectra").divide(3, 2);
-        this.getDetectorCanvas().getCanvas("TDC spectra").setGridX(false);
-        this.getDetectorCanvas().getCanvas("TDC spectra").setGridY(false);
         H1F summary = new H1F("summary","summary",6,1,7);
         summary.setTitleX("sector");
         summary.setTitleY("HTCC hits");
@@ -154,6 +143,22 @@ public class HTCCmonitor  extends DetectorMonitor {
         this.getDataGroup().add(dg,0,0,0);
     }
         
+    @Override
+    public void setupCanvases() {
+        this.getDetectorCanvas().getCanvas("Occupancies").divide(1, 2);
+        this.getDetectorCanvas().getCanvas("Occupancies").setGridX(false);
+        this.getDetectorCanvas().getCanvas("Occupancies").setGridY(false);
+        this.getDetectorCanvas().getCanvas("ADC spectra").divide(3, 2);
+        this.getDetectorCanvas().getCanvas("ADC spectra").setGridX(false);
+        this.getDetectorCanvas().getCanvas("ADC spectra").setGridY(false);
+        this.getDetectorCanvas().getCanvas("FADC timing spectra").divide(3, 2);
+        this.getDetectorCanvas().getCanvas("FADC timing spectra").setGridX(false);
+        this.getDetectorCanvas().getCanvas("FADC timing spectra").setGridY(false);
+        this.getDetectorCanvas().getCanvas("TDC spectra").divide(3, 2);
+        this.getDetectorCanvas().getCanvas("TDC spectra").setGridX(false);
+        this.getDetectorCanvas().getCanvas("TDC spectra").setGridY(false);
+    }
+
     @Override
     public void plotHistos() {
         // plotting histos
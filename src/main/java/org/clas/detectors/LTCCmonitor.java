@@ -16,6 +16,7 @@ public class LTCCmonitor  extends DetectorMonitor {
     
     public LTCCmonitor(String name) {
         super(name);
+        this.subscribeBanks("LTCC::adc", "LTCC::tdc");
 
         this.setDetectorTabNames("ADC Occupancies and Spectra", "FADC timing", "TDC Occupancies and Spectra");
         this.init(false);
@@ -25,15 +26,6 @@ public class LTCCmonitor  extends DetectorMonitor {
     public void createHistos() {
         // initialize canvas and create histograms
         this.setNumberOfEvents(0);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies and Spectra").divide(2, 2);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies and Spectra").setGridX(false);
-        this.getDetectorCanvas().getCanvas("ADC Occupancies and Spectra").setGridY(false);
-        this.getDetectorCanvas().getCanvas("FADC timing").divide(2, 1);
-        this.getDetectorCanvas().getCanvas("FADC timing").setGridX(false);
-        this.getDetectorCanvas().getCanvas("FADC timing").setGridY(false);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies and Spectra").divide(2, 2);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies and Spectra").setGridX(false);
-        this.getDetectorCanvas().getCanvas("TDC Occupancies and Spectra").setGridY(false);
         
         H1F summary = new H1F("summary","summary",6,0.5,6.5);
         summary.setTitleX("sector");
@@ -107,6 +99,19 @@ public class LTCCmonitor  extends DetectorMonitor {
         this.getDataGroup().add(dg,0,0,0);
     }
  
+    @Override
+    public void setupCanvases() {
+        this.getDetectorCanvas().getCanvas("ADC Occupancies and Spectra").divide(2, 2);
+        this.getDetectorCanvas().getCanvas("ADC Occupancies and Spectra").setGridX(false);
+        this.getDetectorCanvas().getCanvas("ADC Occupancies and Spectra").setGridY(false);
+        this.getDetectorCanvas().getCanvas("FADC timing").divide(2, 1);
+        this.getDetectorCanvas().getCanvas("FADC timing").setGridX(false);
+        this.getDetectorCanvas().getCanvas("FADC timing").setGridY(false);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies and Spectra").divide(2, 2);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies and Spectra").setGridX(false);
+        this.getDetectorCanvas().getCanvas("TDC Occupancies and Spectra").setGridY(false);
+    }
+
     @Override
     public void plotHistos() {        
         // plotting histos
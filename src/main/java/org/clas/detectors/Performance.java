@@ -0,0 +1,95 @@
+package org.clas.detectors;
+
+import java.awt.BorderLayout;
+import java.awt.Font;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+
+import org.clas.viewer.DetectorMonitor;
+import org.clas.viewer.MonitorStatistics;
+import org.jlab.io.base.DataEventType;
+
+
+public class Performance  extends JTabbedPane {
+    JPanel performancePanel =  new JPanel(new BorderLayout());
+
+    private static final String[] COLUMNS = {"Detector", "Event type", "Events", "Events/s", "Mean (us)", "p50 (us)", "p99 (us)", "Share of time (%)", "Allocation (MB/s)"};
+
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private long[] lastCount = null;
+    private long[] lastBytes = null;
+    private long   lastTime  = 0;
+
+    public Performance() {
+        this.add("Performance", this.performancePanel);
+        JTable table = new JTable(this.model);
+        table.setFont(new Font("Avenir",Font.PLAIN,14));
+        table.setRowHeight(20);
+        table.setAutoCreateRowSorter(true);
+        this.performancePanel.add(new JScrollPane(table),BorderLayout.CENTER);
+    }
+
+    public void update(DetectorMonitor[] monitors) {
+        long now = System.nanoTime();
+        if(this.lastCount==null || this.lastCount.length!=monitors.length) {
+            this.lastCount = new long[monitors.length];
+            this.lastBytes = new long[monitors.length];
+        }
+        double seconds = this.lastTime>0 ? (now-this.lastTime)/1E9 : 0;
+        this.lastTime = now;
+
+        long total = 0;
+        for(DetectorMonitor monitor : monitors) total += monitor.getStatistics().getTotalNanos();
+
+        final Object[][] rows = new Object[monitors.length*DataEventType.values().length][];
+        int nrows = 0;
+        for(int k=0; k<monitors.length; k++) {
+            MonitorStatistics stats = monitors[k].getStatistics();
+            long count = stats.getCount();
+            long bytes = stats.getAllocatedBytesTotal();
+            double rate  = seconds>0 ? (count-this.lastCount[k])/seconds : 0;
+            double alloc = seconds>0 ? (bytes-this.lastBytes[k])/seconds/1E6 : 0;
+            this.lastCount[k] = count;
+            this.lastBytes[k] = bytes;
+            for(DataEventType type : stats.getEventTypes()) {
+                long n = stats.getCount(type);
+                if(n==0) continue;
+                boolean first = type==DataEventType.EVENT_ACCUMULATE || n==count;
+                rows[nrows++] = new Object[]{
+                    monitors[k].getDetectorName(),
+                    type.toString(),
+                    n,
+                    first ? String.format("%.1f", rate) : "",
+                    String.format("%.1f", stats.getTotalNanos(type)/1E3/n),
+                    String.format("%.1f", stats.getPercentile(type, 0.50)/1E3),
+                    String.format("%.1f", stats.getPercentile(type, 0.99)/1E3),
+                    String.format("%.1f", total>0 ? 100.*stats.getTotalNanos(type)/total : 0.),
+                    first ? (bytes>0 ? String.format("%.1f", alloc) : "n/a") : ""
+                };
+            }
+        }
+        final int size = nrows;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                model.setRowCount(0);
+                for(int i=0; i<size; i++) model.addRow(rows[i]);
+            }
+        });
+    }
+
+    public void reset(DetectorMonitor[] monitors) {
+        for(DetectorMonitor monitor : monitors) monitor.getStatistics().reset();
+        this.lastCount = null;
+        this.lastTime  = 0;
+    }
+
+}
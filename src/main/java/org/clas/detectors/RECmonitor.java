@@ -14,6 +14,7 @@ public class RECmonitor extends DetectorMonitor {
 
     public RECmonitor(String name) {
         super(name);
+        this.subscribeBanks("CVTRec::Cosmics", "CVTRec::Tracks", "TimeBasedTrkg::TBTracks");
         this.setDetectorTabNames("CVT cosmic", "CVT positive tracks", "CVT negative tracks", "DC tracks per event", "DC hits per track", "DC momentum", "DC theta angle");
         this.init(false);
     }
@@ -21,6 +21,7 @@ public class RFmonitor extends DetectorMonitor {
     
     public RFmonitor(String name) {
         super(name);
+        this.subscribeBanks("RF::adc", "RF::tdc");
         this.setDetectorTabNames("RF TDCs","RF Time","RF Timeline","RF fADC");
         this.init(false);
     }
@@ -288,9 +289,8 @@ public class RFmonitor extends DetectorMonitor {
             resetEventListener();
         }
         
-        if(event.hasBank("RUN::config")){
-	    DataBank head = event.getBank("RUN::config");
-	    this.eventNumber = head.getInt("event", 0);
+        if(this.getEventContext().hasConfig()){
+	    this.eventNumber = this.getEventContext().getEvent();
         }
         // process event info and save into data group
         ArrayList<Integer> rf1 = new ArrayList();
@@ -332,6 +332,7 @@ public class RFmonitor extends DetectorMonitor {
             this.getDataGroup().getItem(0,0,0).getH1F("rf2difftmp").fill((rf2.get(i+1)-rf2.get(i))*tdc2Time);
         }
 
+        if(rf1.size()!=rf2.size()) this.flagEvent("RF pair mismatch " + rf1.size() + "/" + rf2.size());
         if(rf1.size()==rf2.size() || true) {
             double rfTime1 = 0;
             double rfTime2 = 0;
@@ -364,7 +365,7 @@ public class RFmonitor extends DetectorMonitor {
             this.getDataGroup().getItem(0,0,0).getGraph("rf2Timeline").addPoint(this.eventNumber, rf2diff.getMean() , 0, rf2diff.getRMS()/Math.sqrt(rf2diff.getEntries()));
             this.getDataGroup().getItem(0,0,0).getGraph("rfTimeline").addPoint(this.eventNumber, rfdiff.getMean() , 0, rfdiff.getRMS()/Math.sqrt(rfdiff.getEntries()));
             this.getDataGroup().getItem(0,0,0).getGraph("rfAveTimeline").addPoint(this.eventNumber, rfdiffAve.getMean() , 0, rfdiffAve.getRMS()/Math.sqrt(rfdiffAve.getEntries()));
-            if(this.getDataGroup().getItem(0,0,0).getGraph("rf1Timeline").getVectorX().size()==2) {
+            if(this.getDataGroup().getItem(0,0,0).getGraph("rf1Timeline").getVectorX().size()==2 && !isHeadless()) {
                 this.getDetectorCanvas().getCanvas("RF Timeline").cd(0);
                 this.getDetectorCanvas().getCanvas("RF Timeline").draw(this.getDataGroup().getItem(0,0,0).getGraph("rf1Timeline"));
                 this.getDetectorCanvas().getCanvas("RF Timeline").cd(1);
@@ -419,7 +420,7 @@ public class RFmonitor extends DetectorMonitor {
         if(this.getDataGroup().getItem(0,0,0).getH1F("rffADCdifftmp").getEntries()>=500){
             H1F rfdiff    = this.getDataGroup().getItem(0,0,0).getH1F("rffADCdifftmp");
             this.getDataGroup().getItem(0,0,0).getGraph("rffADCTimeline").addPoint(this.eventNumber, rfdiff.getMean() , 0, rfdiff.getRMS()/Math.sqrt(rfdiff.getEntries()));
-            if(this.getDataGroup().getItem(0,0,0).getGraph("rffADCTimeline").getVectorX().size()==2) {
+            if(this.getDataGroup().getItem(0,0,0).getGraph("rffADCTimeline").getVectorX().size()==2 && !isHeadless()) {
                 this.getDetectorCanvas().getCanvas("RF fADC").cd(5);
                 this.getDetectorCanvas().getCanvas("RF fADC").draw(this.getDataGroup().getItem(0,0,0).getGraph("rffADCTimeline"));
             }
@@ -437,9 +438,11 @@ public class RFmonitor extends DetectorMonitor {
         this.fitRF(this.getDataGroup().getItem(0,0,0).getH1F("rfdiff"),    this.getDataGroup().getItem(0,0,0).getF1D("fdiff"));
         this.fitRF(this.getDataGroup().getItem(0,0,0).getH1F("rfdiffAve"), this.getDataGroup().getItem(0,0,0).getF1D("fdiffAve"));
         double rfMean = this.getDataGroup().getItem(0,0,0).getH1F("rfdiffAve").getMean();
-        this.getDetectorCanvas().getCanvas("RF Time").getPad(3).getAxisX().setRange(rfMean-0.5,rfMean+0.5);
-        this.getDetectorCanvas().getCanvas("RF Time").getPad(4).getAxisY().setRange(rfMean-0.5,rfMean+0.5);
-        this.getDetectorCanvas().getCanvas("RF Time").getPad(5).getAxisY().setRange(rfMean-0.5,rfMean+0.5);
+        if(!isHeadless()) {
+            this.getDetectorCanvas().getCanvas("RF Time").getPad(3).getAxisX().setRange(rfMean-0.5,rfMean+0.5);
+            this.getDetectorCanvas().getCanvas("RF Time").getPad(4).getAxisY().setRange(rfMean-0.5,rfMean+0.5);
+            this.getDetectorCanvas().getCanvas("RF Time").getPad(5).getAxisY().setRange(rfMean-0.5,rfMean+0.5);
+        }
         this.fitRF(this.getDataGroup().getItem(0,0,0).getH1F("rffADCdiff"), this.getDataGroup().getItem(0,0,0).getF1D("ffADCdiff"));
     }
 
@@ -12,6 +12,7 @@ public class RICHmonitor  extends DetectorMonitor {
     
     public RICHmonitor(String name) {
         super(name);
+        this.subscribeBanks("RICH::adc", "RICH::tdc");
         
         this.setDetectorTabNames("Occupancies and spectra");
         this.init(false);
@@ -21,9 +22,6 @@ public class RICHmonitor  extends DetectorMonitor {
     public void createHistos() {
         // initialize canvas and create histograms
         this.setNumberOfEvents(0);
-        this.getDetectorCanvas().getCanvas("Occupancies and spectra").divide(1, 2);
-        this.getDetectorCanvas().getCanvas("Occupancies and spectra").setGridX(false);
-        this.getDetectorCanvas().getCanvas("Occupancies and spectra").setGridY(false);
         
         H2F summary = new H2F("summary","summary",192, 0.5, 192.5, 138, 0.5, 138.5);
         summary.setTitleX("MAPMT channel");
@@ -49,6 +47,13 @@ public class RICHmonitor  extends DetectorMonitor {
         this.getDataGroup().add(dg,0,0,0);
     }
         
+    @Override
+    public void setupCanvases() {
+        this.getDetectorCanvas().getCanvas("Occupancies and spectra").divide(1, 2);
+        this.getDetectorCanvas().getCanvas("Occupancies and spectra").setGridX(false);
+        this.getDetectorCanvas().getCanvas("Occupancies and spectra").setGridY(false);
+    }
+
     @Override
     public void plotHistos() {
         // plotting histos
@@ -0,0 +1,89 @@
+package org.clas.detectors;
+
+import java.awt.BorderLayout;
+import java.awt.Font;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+
+import org.clas.viewer.ReferenceComparator;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.graphics.EmbeddedCanvas;
+
+
+public class Reference  extends JTabbedPane {
+    JPanel referencePanel =  new JPanel(new BorderLayout());
+    EmbeddedCanvas canvas = new EmbeddedCanvas();
+    JLabel           file = new JLabel(" No reference file, open one from the File menu ");
+
+    private static final String[] COLUMNS = {"Detector", "Worst histogram", "Entries", "Chi2/ndf", "KS distance", "KS probability", "Max pull"};
+    private static final int      OVERLAYS = 6;
+
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    public Reference() {
+        this.add("Summary", this.referencePanel);
+        this.add("Worst histograms", this.canvas);
+        JTable table = new JTable(this.model);
+        table.setFont(new Font("Avenir",Font.PLAIN,14));
+        table.setRowHeight(20);
+        table.setAutoCreateRowSorter(true);
+        this.referencePanel.add(this.file,BorderLayout.PAGE_START);
+        this.referencePanel.add(new JScrollPane(table),BorderLayout.CENTER);
+    }
+
+    /**
+     * Shows the worst histogram of each detector and draws the worst 1D
+     * histograms with the reference scaled over them.
+     */
+    public void update(ReferenceComparator comparator) {
+        Map<String,ReferenceComparator.Score> worst = comparator.getWorstByDetector();
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        for(ReferenceComparator.Score score : worst.values()) {
+            rows.add(new Object[]{
+                score.getDetector(),
+                score.getName(),
+                (long) score.getEntries(),
+                String.format("%.2f", score.getChi2()),
+                Double.isNaN(score.getKS()) ? "" : String.format("%.3f", score.getKS()),
+                Double.isNaN(score.getKSProbability()) ? "" : String.format("%.3g", score.getKSProbability()),
+                String.format("%.1f", score.getPull())
+            });
+        }
+        final List<IDataSet[]> overlays = new ArrayList<IDataSet[]>();
+        for(ReferenceComparator.Score score : comparator.getWorst(comparator.size())) {
+            if(overlays.size()==OVERLAYS) break;
+            if(score.getLive() instanceof H1F) overlays.add(new IDataSet[]{score.copyLive(), score.getScaledReference()});
+        }
+        final String title = " Reference: " + comparator.getFileName() + ", " + comparator.size() + " histograms compared ";
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                file.setText(title);
+                model.setRowCount(0);
+                for(Object[] row : rows) model.addRow(row);
+                canvas.clear();
+                canvas.divide(3, 2);
+                for(int i=0; i<overlays.size(); i++) {
+                    canvas.cd(i);
+                    canvas.draw(overlays.get(i)[0]);
+                    canvas.draw(overlays.get(i)[1], "same");
+                }
+                canvas.update();
+            }
+        });
+    }
+
+}
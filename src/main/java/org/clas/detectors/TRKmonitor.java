@@ -25,6 +25,7 @@ public class TRKmonitor extends DetectorMonitor {
  
     public TRKmonitor(String name) {
         super(name);
+        this.subscribeBanks("HitBasedTrkg::HBTracks", "TimeBasedTrkg::TBTracks", "HitBasedTrkg::HBCrosses", "TimeBasedTrkg::TBCrosses");
         
         // initializa monitoring panel
         this.setDetectorTabNames("Tracking Statistics");
@@ -40,9 +41,6 @@ public class TRKmonitor extends DetectorMonitor {
     public void createHistos() {
         // initialize canvas and create histograms
         this.setNumberOfEvents(0);
-        this.getDetectorCanvas().getCanvas("Tracking Statistics").divide(2, 4);
-        this.getDetectorCanvas().getCanvas("Tracking Statistics").setGridX(false);
-        this.getDetectorCanvas().getCanvas("Tracking Statistics").setGridY(false);
         
         H1F sumHBT = new H1F("sumHBT","sumHBT",6,0.5,6.5);
         sumHBT.setTitleX("sector");
@@ -178,6 +176,13 @@ public class TRKmonitor extends DetectorMonitor {
         
     }    
     
+    @Override
+    public void setupCanvases() {
+        this.getDetectorCanvas().getCanvas("Tracking Statistics").divide(2, 4);
+        this.getDetectorCanvas().getCanvas("Tracking Statistics").setGridX(false);
+        this.getDetectorCanvas().getCanvas("Tracking Statistics").setGridY(false);
+    }
+
     @Override
     public void plotHistos() {
         // initialize canvas and plot histograms
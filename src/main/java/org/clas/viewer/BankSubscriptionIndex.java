@@ -0,0 +1,57 @@
+package org.clas.viewer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jlab.io.base.DataEvent;
+
+/**
+ * Maps bank names to the monitors subscribed to them, so that the monitors
+ * interested in an event can be found from its bank list alone.
+ */
+public class BankSubscriptionIndex {
+
+    private final Map<String, int[]> index = new HashMap<String, int[]>();
+    private final boolean[]          always;
+    private final int                size;
+
+    public BankSubscriptionIndex(DetectorMonitor[] monitors) {
+        this.size   = monitors.length;
+        this.always = new boolean[monitors.length];
+        Map<String, List<Integer>> lists = new HashMap<String, List<Integer>>();
+        for(int k=0; k<monitors.length; k++) {
+            if(monitors[k].getSubscribedBanks().isEmpty()) {
+                this.always[k] = true;
+                continue;
+            }
+            for(String bank : monitors[k].getSubscribedBanks()) {
+                if(!lists.containsKey(bank)) lists.put(bank, new ArrayList<Integer>());
+                lists.get(bank).add(k);
+            }
+        }
+        for(Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+            int[] indices = new int[entry.getValue().size()];
+            for(int i=0; i<indices.length; i++) indices[i] = entry.getValue().get(i);
+            this.index.put(entry.getKey(), indices);
+        }
+    }
+
+    /**
+     * Fills selected with the monitors that have to process the event.
+     */
+    public void select(DataEvent event, boolean[] selected) {
+        String[] banks = event.getBankList();
+        if(banks == null) {
+            for(int k=0; k<this.size; k++) selected[k] = true;
+            return;
+        }
+        System.arraycopy(this.always, 0, selected, 0, this.size);
+        for(String bank : banks) {
+            int[] indices = this.index.get(bank);
+            if(indices == null) continue;
+            for(int k : indices) selected[k] = true;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.clas.viewer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.clas.detectors.*;
+import org.jlab.groot.data.TDirectory;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.base.DataEventType;
+import org.jlab.io.base.DataSource;
+import org.jlab.io.evio.EvioSource;
+import org.jlab.io.hipo.HipoDataSource;
+
+/**
+ * Headless replay of HIPO or EVIO files through the detector monitors,
+ * writing the resulting histograms to a TDirectory file. No Swing components
+ * are created, so it runs on batch nodes without a display:
+ *
+ *   java -cp clas12mon.jar org.clas.viewer.BatchProcessor [options] file1 [file2 ...]
+ *
+ *   -o file       output histogram file (default clas12mon_histos.hipo)
+ *   -m list       comma separated list of monitors (default BMT,FMT,FTTRK,Trigger)
+ *   -n events     maximum number of events to process
+ *   -r run        run number used for the EVIO decoding CCDB tables
+ *   -d threads    number of EVIO decoding threads
+ *   -p            process the monitors in parallel, one thread each
+ *   -j workers    process the files on several workers, each with its own
+ *                 monitors, and merge their histograms at the end
+ *   -s            print the processing time statistics of each monitor
+ */
+public class BatchProcessor {
+
+    public static final String[] MONITOR_NAMES = {"BMT", "BST", "CND", "CTOF", "DC", "ECAL", "FMT", "FTCAL", "FTHODO",
+                                                  "FTOF", "FTTRK", "HTCC", "LTCC", "RICH", "RECON", "RF", "HEL", "Faraday Cup", "Trigger"};
+
+    private final DetectorMonitor[]  monitors;
+    private final MonitorDispatcher  dispatcher;
+    private final EventDecoderPool   decoderPool;
+    private int                      maxEvents = -1;
+    private long                     numberOfEvents = 0;
+    private AtomicLong               totalEvents = new AtomicLong(0);
+
+    public BatchProcessor(List<String> names, int decoderThreads, boolean parallel) {
+        DetectorMonitor.setHeadless(true);
+        this.monitors = new DetectorMonitor[names.size()];
+        for(int k=0; k<names.size(); k++) {
+            this.monitors[k] = createMonitor(names.get(k));
+            // the whole input is accumulated, no periodic resets
+            for(int i=0; i<this.monitors[k].eventResetTime_current.length; i++) {
+                this.monitors[k].eventResetTime_current[i] = 0;
+            }
+        }
+        this.dispatcher  = new MonitorDispatcher(this.monitors);
+        this.dispatcher.setParallel(parallel);
+        this.decoderPool = new EventDecoderPool(decoderThreads, new EventDecoderPool.DecodedEventHandler() {
+            public void onEvent(DataEvent event, boolean decoded) {
+                dispatcher.dispatch(event, EventContext.fromEvent(event));
+            }
+        });
+    }
+
+    public static DetectorMonitor createMonitor(String name) {
+        switch(name) {
+            case "BMT":         return new BMTmonitor(name, new MVTpulseViewer(name));
+            case "BST":         return new BSTmonitor(name);
+            case "CND":         return new CNDmonitor(name);
+            case "CTOF":        return new CTOFmonitor(name);
+            case "DC":          return new DCmonitor(name);
+            case "ECAL":        return new ECmonitor(name);
+            case "FMT":         return new FMTmonitor(name, new MVTpulseViewer(name));
+            case "FTCAL":       return new FTCALmonitor(name);
+            case "FTHODO":      return new FTHODOmonitor(name);
+            case "FTOF":        return new FTOFmonitor(name);
+            case "FTTRK":       return new FTTRKmonitor(name, new MVTpulseViewer("FTT"));
+            case "HTCC":        return new HTCCmonitor(name);
+            case "LTCC":        return new LTCCmonitor(name);
+            case "RICH":        return new RICHmonitor(name);
+            case "RECON":       return new RECmonitor(name);
+            case "RF":          return new RFmonitor(name);
+            case "HEL":         return new HELmonitor(name);
+            case "Faraday Cup": return new FCUPmonitor(name);
+            case "Trigger":     return new TRIGGERmonitor(name);
+            default:
+                throw new IllegalArgumentException("Unknown monitor " + name);
+        }
+    }
+
+    public DetectorMonitor[] getMonitors() {
+        return this.monitors;
+    }
+
+    public void setMaxEvents(int maxEvents) {
+        this.maxEvents = maxEvents;
+    }
+
+    public void setRunNumber(int run) {
+        this.decoderPool.setRunNumber(run);
+    }
+
+    public long getNumberOfEvents() {
+        return this.numberOfEvents;
+    }
+
+    /**
+     * Event counter shared by all workers, so that -n limits the total.
+     */
+    public void setEventCounter(AtomicLong counter) {
+        this.totalEvents = counter;
+    }
+
+    private boolean limitReached() {
+        return this.maxEvents>=0 && this.totalEvents.get()>=this.maxEvents;
+    }
+
+    public void processFile(String fileName) {
+        if(this.limitReached()) return;
+        System.out.println("Opening file: " + fileName);
+        DataSource reader = fileName.endsWith(".evio") || fileName.contains(".evio.") ? new EvioSource() : new HipoDataSource();
+        reader.open(fileName);
+        long start = System.currentTimeMillis();
+        while(reader.hasEvent()) {
+            if(this.limitReached()) break;
+            DataEvent event = reader.getNextEvent();
+            event.setType(DataEventType.EVENT_ACCUMULATE);
+            this.decoderPool.submit(event);
+            this.numberOfEvents++;
+            this.totalEvents.incrementAndGet();
+            if(this.numberOfEvents%10000 == 0) {
+                double seconds = (System.currentTimeMillis()-start)/1000.;
+                System.out.println("Processed " + this.numberOfEvents + " events (" + String.format("%.1f", this.numberOfEvents/Math.max(seconds,0.001)) + " Hz)");
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Processes files taken from the shared queue until it is empty.
+     */
+    public void processFiles(Queue<String> files) {
+        String fileName;
+        while((fileName = files.poll()) != null) {
+            this.processFile(fileName);
+        }
+        this.drain();
+    }
+
+    /**
+     * Waits until all queued events have been processed by the monitors.
+     */
+    public void drain() {
+        try {
+            this.decoderPool.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.dispatcher.awaitIdle();
+    }
+
+    /**
+     * Waits for all queued events, runs the end of data analysis and returns
+     * the histograms of all monitors.
+     */
+    public TDirectory finish() {
+        this.drain();
+        return writeMonitors(this.monitors);
+    }
+
+    public static TDirectory writeMonitors(DetectorMonitor[] monitors) {
+        TDirectory dir = new TDirectory();
+        for(int k=0; k<monitors.length; k++) {
+            monitors[k].foldHistograms();
+            monitors[k].analyze();
+            monitors[k].timerUpdate();
+            monitors[k].writeDataGroup(dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Map-reduce over the input files: every worker has its own monitors and
+     * decoder pool and takes the next file from a shared queue; the histograms
+     * are merged once all files are done.
+     */
+    public static TDirectory processParallel(List<String> names, List<String> inputs, int nWorkers, int decoderThreads,
+                                             int maxEvents, int run) {
+        final Queue<String> files   = new ConcurrentLinkedQueue<String>(inputs);
+        AtomicLong          counter = new AtomicLong(0);
+        List<BatchProcessor> workers = new ArrayList<BatchProcessor>();
+        Thread[]             threads = new Thread[nWorkers];
+        for(int i=0; i<nWorkers; i++) {
+            final BatchProcessor worker = new BatchProcessor(names, decoderThreads, false);
+            worker.setMaxEvents(maxEvents);
+            worker.setRunNumber(run);
+            worker.setEventCounter(counter);
+            workers.add(worker);
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    worker.processFiles(files);
+                }
+            }, "batch-worker-" + (i+1));
+            threads[i].start();
+        }
+        for(Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.println("Processed " + counter.get() + " events, merging histograms from " + nWorkers + " workers");
+        List<DetectorMonitor[]> sets = new ArrayList<DetectorMonitor[]>();
+        for(BatchProcessor worker : workers) {
+            sets.add(worker.getMonitors());
+        }
+        DetectorMonitor[] merged = HistogramMerger.reduce(sets, Runtime.getRuntime().availableProcessors());
+        return writeMonitors(merged);
+    }
+
+    public static void printStatistics(DetectorMonitor[] monitors) {
+        System.out.println(String.format("%-12s %10s %10s %10s %10s", "Monitor", "Events", "Mean (us)", "p50 (us)", "p99 (us)"));
+        for(DetectorMonitor monitor : monitors) {
+            MonitorStatistics stats = monitor.getStatistics();
+            long n = stats.getCount(DataEventType.EVENT_ACCUMULATE);
+            if(n==0) continue;
+            System.out.println(String.format("%-12s %10d %10.1f %10.1f %10.1f", monitor.getDetectorName(), n,
+                               stats.getTotalNanos(DataEventType.EVENT_ACCUMULATE)/1E3/n,
+                               stats.getPercentile(DataEventType.EVENT_ACCUMULATE, 0.50)/1E3,
+                               stats.getPercentile(DataEventType.EVENT_ACCUMULATE, 0.99)/1E3));
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String       output    = "clas12mon_histos.hipo";
+        List<String> names     = new ArrayList<String>();
+        List<String> inputs    = new ArrayList<String>();
+        int          maxEvents = -1;
+        int          run       = 0;
+        int          threads   = Math.max(1, Runtime.getRuntime().availableProcessors()/2);
+        boolean      parallel  = false;
+        int          workers   = 1;
+        boolean      stats     = false;
+        for(int i=0; i<args.length; i++) {
+            if(args[i].equals("-o") && i+1<args.length)      output    = args[++i];
+            else if(args[i].equals("-m") && i+1<args.length) for(String name : args[++i].split(",")) names.add(name.trim());
+            else if(args[i].equals("-n") && i+1<args.length) maxEvents = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-r") && i+1<args.length) run       = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-d") && i+1<args.length) threads   = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-j") && i+1<args.length) workers   = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-p"))                    parallel  = true;
+            else if(args[i].equals("-s"))                    stats     = true;
+            else inputs.add(args[i]);
+        }
+        if(inputs.isEmpty()) {
+            System.out.println("Usage: BatchProcessor [-o output] [-m monitors] [-n events] [-r run] [-d threads] [-p] [-j workers] [-s] file1 [file2 ...]");
+            System.out.println("Available monitors: " + String.join(",", MONITOR_NAMES));
+            System.exit(1);
+        }
+        if(names.isEmpty()) {
+            names.add("BMT"); names.add("FMT"); names.add("FTTRK"); names.add("Trigger");
+        }
+
+        MonitorStatistics.setEnabled(stats);
+        long start = System.currentTimeMillis();
+        TDirectory dir;
+        if(workers>1) {
+            workers = Math.min(workers, inputs.size());
+            dir = processParallel(names, inputs, workers, Math.max(1, threads/workers), maxEvents, run);
+        }
+        else {
+            BatchProcessor processor = new BatchProcessor(names, threads, parallel);
+            processor.setMaxEvents(maxEvents);
+            processor.setRunNumber(run);
+            for(String input : inputs) {
+                processor.processFile(input);
+            }
+            dir = processor.finish();
+            System.out.println("Processed " + processor.getNumberOfEvents() + " events");
+            if(stats) printStatistics(processor.getMonitors());
+        }
+        double seconds = (System.currentTimeMillis()-start)/1000.;
+        System.out.println("Done in " + String.format("%.1f", seconds) + " s");
+        System.out.println("Saving histograms to file " + output);
+        try {
+            HistogramSaver.writeAtomically(dir, output);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,113 @@
+package org.clas.viewer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import org.jlab.groot.graphics.EmbeddedCanvas;
+
+/**
+ * Saves canvases as PNG without freezing the GUI. Each canvas is painted
+ * into an offscreen image on the event dispatch thread, one canvas per
+ * event so that the live plots keep refreshing in between, and the images
+ * are encoded and written, which is most of the cost, on a pool of threads.
+ * Completion is reported to the status listener and the optional callback
+ * is then run on a background thread.
+ */
+public class CanvasExporter {
+
+    private final ExecutorService               executor;
+    private final HistogramSaver.StatusListener listener;
+
+    public CanvasExporter(HistogramSaver.StatusListener listener) {
+        this.listener = listener;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()-1), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "png-writer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Exports the canvases by file name; may be called from any thread.
+     */
+    public void export(Map<String,EmbeddedCanvas> canvases, final Runnable whenDone) {
+        final long           start   = System.currentTimeMillis();
+        final CountDownLatch pending = new CountDownLatch(canvases.size());
+        final AtomicInteger  failed  = new AtomicInteger(0);
+        final int            total   = canvases.size();
+        final Iterator<Map.Entry<String,EmbeddedCanvas>> next = new ArrayList<Map.Entry<String,EmbeddedCanvas>>(canvases.entrySet()).iterator();
+        this.status("Exporting " + total + " canvases");
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if(!next.hasNext()) return;
+                Map.Entry<String,EmbeddedCanvas> entry = next.next();
+                final String        fileName = entry.getKey();
+                final BufferedImage image    = paint(entry.getValue());
+                if(image==null) {
+                    System.out.println("Canvas for " + fileName + " has no size, skipped");
+                    failed.incrementAndGet();
+                    pending.countDown();
+                }
+                else {
+                    executor.submit(new Runnable() {
+                        public void run() {
+                            try {
+                                ImageIO.write(image, "png", new File(fileName));
+                            } catch (IOException e) {
+                                System.out.println("Could not write " + fileName + ": " + e.getMessage());
+                                failed.incrementAndGet();
+                            } finally {
+                                pending.countDown();
+                            }
+                        }
+                    });
+                }
+                if(next.hasNext()) SwingUtilities.invokeLater(this);
+            }
+        });
+        Thread waiter = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    pending.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                status("Exported " + (total-failed.get()) + "/" + total + " canvases in " + String.format("%.1f", (System.currentTimeMillis()-start)/1000.) + " s");
+                if(whenDone!=null) whenDone.run();
+            }
+        }, "png-export");
+        waiter.setDaemon(true);
+        waiter.start();
+    }
+
+    private static BufferedImage paint(EmbeddedCanvas canvas) {
+        int width  = canvas.getWidth();
+        int height = canvas.getHeight();
+        if(width<=0 || height<=0) return null;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        canvas.paint(graphics);
+        graphics.dispose();
+        return image;
+    }
+
+    private void status(String message) {
+        System.out.println(message);
+        if(this.listener!=null) this.listener.status(message);
+    }
+}
@@ -0,0 +1,296 @@
+package org.clas.viewer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.data.TDirectory;
+
+/**
+ * Writes the histograms of all monitors to an append-only checkpoint file per
+ * run, so that they can be restored after a crash. Every checkpoint is one
+ * block with a length and a CRC, so a block cut short by a crash is ignored
+ * on reading. A block only holds the histograms that changed since the
+ * previous checkpoint, found by comparing a hash of their bins, and reading
+ * the file keeps the last version of each histogram. Once the appended
+ * blocks outgrow the last full checkpoint the file is rewritten with a full
+ * one, to a temporary file renamed over it.
+ *
+ * Each monitor is serialised under its lock, into memory, and written outside
+ * of it; the time spent is reported as a fraction of the elapsed time.
+ * Finding the changed histograms hashes every bin of every histogram, so
+ * checkpointing is off unless enabled from the Settings menu.
+ */
+public class Checkpointer {
+
+    private static final int MAGIC = 0x434b5054;
+
+    private final DetectorMonitor[]        monitors;
+    private final File                     folder;
+    private final Map<String,Long>         hashes   = new HashMap<String,Long>();
+    private ScheduledExecutorService       executor = null;
+    private int   run            = -1;
+    private File  file           = null;
+    private long  fullBytes      = 0;
+    private long  appendedBytes  = 0;
+    private long  lastTime       = 0;
+    private long  lastEvents     = 0;
+    private long  busyNanos      = 0;
+    private long  startNanos     = System.nanoTime();
+    private int   seconds        = 60;
+    private long  events         = 0;
+
+    public Checkpointer(DetectorMonitor[] monitors, File folder) {
+        this.monitors = monitors;
+        this.folder   = folder;
+    }
+
+    public static File getDefaultFolder() {
+        return new File(System.getProperty("user.dir"), "checkpoints");
+    }
+
+    public File getFile(int run) {
+        return new File(this.folder, "mon12_checkpoint_run_" + run + ".dat");
+    }
+
+    /**
+     * Checks once a second whether a checkpoint is due: every given number
+     * of seconds, or of events summed over the monitors if events>0.
+     */
+    public synchronized void start(int seconds, long events) {
+        this.stop();
+        this.seconds  = Math.max(1, seconds);
+        this.events   = events;
+        this.lastTime = System.currentTimeMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "histogram-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                checkpointIfDue();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        System.out.println("Checkpointing histograms to " + this.folder + " every " + this.seconds + " s" + (events>0 ? " or " + events + " events" : ""));
+    }
+
+    public synchronized void stop() {
+        if(this.executor!=null) this.executor.shutdown();
+        this.executor = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return this.executor!=null;
+    }
+
+    /**
+     * Run of the following checkpoints, which go to a new file when it changes.
+     */
+    public synchronized void setRun(int run) {
+        if(run==this.run) return;
+        this.run  = run;
+        this.file = this.getFile(run);
+        this.hashes.clear();
+        this.fullBytes     = 0;
+        this.appendedBytes = 0;
+        this.lastEvents    = 0;
+    }
+
+    /**
+     * Time spent checkpointing over the time since the checkpointer was created.
+     */
+    public synchronized double getCost() {
+        return (double) this.busyNanos/Math.max(1, System.nanoTime()-this.startNanos);
+    }
+
+    private synchronized void checkpointIfDue() {
+        long events = 0;
+        for(DetectorMonitor monitor : this.monitors) events += monitor.getNumberOfEvents();
+        boolean due = System.currentTimeMillis()-this.lastTime >= 1000L*this.seconds
+                   || (this.events>0 && Math.abs(events-this.lastEvents) >= this.events);
+        if(!due || events==this.lastEvents) return;
+        this.lastEvents = events;
+        this.lastTime   = System.currentTimeMillis();
+        try {
+            this.checkpoint();
+        } catch (IOException e) {
+            System.out.println("Checkpoint to " + this.file + " failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Appends the histograms changed since the previous checkpoint, or
+     * rewrites the file with all of them when it has grown too much.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if(this.file==null) return;
+        long start = System.nanoTime();
+        boolean full = this.fullBytes==0 || this.appendedBytes > 2*this.fullBytes || !this.file.exists();
+        if(full) this.hashes.clear();
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(block);
+        int written = 0, total = 0;
+        for(DetectorMonitor monitor : this.monitors) {
+            synchronized(monitor) {
+                for(IDataSet ds : monitor.getSavedDataSets()) {
+                    String key  = monitor.getDetectorName() + "/" + ds.getName();
+                    Long   hash = hash(ds);
+                    if(hash==null) continue;
+                    total++;
+                    if(hash.equals(this.hashes.put(key, hash))) continue;
+                    out.writeUTF(monitor.getDetectorName());
+                    DataSetCodec.write(out, ds);
+                    written++;
+                }
+            }
+        }
+        out.flush();
+        byte[] payload = block.toByteArray();
+        File target = full ? new File(this.file.getPath() + ".tmp") : this.file;
+        this.folder.mkdirs();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        try (FileOutputStream stream = new FileOutputStream(target, !full)) {
+            DataOutputStream header = new DataOutputStream(stream);
+            header.writeInt(MAGIC);
+            header.writeInt(this.run);
+            header.writeLong(System.currentTimeMillis());
+            header.writeInt(payload.length);
+            header.writeLong(crc.getValue());
+            stream.write(payload);
+            stream.getFD().sync();
+        }
+        if(full) {
+            Files.move(target.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.fullBytes     = payload.length;
+            this.appendedBytes = 0;
+        }
+        else {
+            this.appendedBytes += payload.length;
+        }
+        long elapsed = System.nanoTime()-start;
+        this.busyNanos += elapsed;
+        System.out.println(String.format("Checkpoint run %d: %d/%d histograms, %.1f kB%s in %.1f ms (%.3f%% of the time)",
+                           this.run, written, total, payload.length/1024., full ? " (full)" : "", elapsed/1e6, 100*this.getCost()));
+    }
+
+    /**
+     * Restores the monitors found in a checkpoint file through readDataGroup,
+     * with their event counters, and returns how many were restored. The
+     * monitors must not be processing events.
+     */
+    public static int restore(File file, DetectorMonitor[] monitors) throws IOException {
+        Map<String,Map<String,IDataSet>> detectors = read(file);
+        int restored = 0;
+        for(DetectorMonitor monitor : monitors) {
+            Map<String,IDataSet> saved = detectors.get(monitor.getDetectorName());
+            if(saved==null) continue;
+            TDirectory dir = new TDirectory();
+            dir.mkdir("/" + monitor.getDetectorName());
+            dir.cd("/" + monitor.getDetectorName());
+            for(IDataSet ds : saved.values()) dir.addDataSet(ds);
+            monitor.readDataGroup(dir);
+            IDataSet counters = saved.get("prescale");
+            if(counters instanceof H1F) {
+                monitor.setNumberOfEvents((int) ((H1F) counters).getBinContent(0));
+                monitor.setNumberOfProcessedEvents((int) ((H1F) counters).getBinContent(1));
+            }
+            restored++;
+        }
+        return restored;
+    }
+
+    /**
+     * Last version of each data set in the complete blocks of a checkpoint
+     * file, by monitor.
+     */
+    private static Map<String,Map<String,IDataSet>> read(File file) throws IOException {
+        Map<String,Map<String,IDataSet>> detectors = new LinkedHashMap<String,Map<String,IDataSet>>();
+        int blocks = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while(true) {
+                byte[] payload;
+                try {
+                    if(in.readInt()!=MAGIC) break;
+                    in.readInt();
+                    in.readLong();
+                    int length = in.readInt();
+                    long crc   = in.readLong();
+                    if(length<0) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 check = new CRC32();
+                    check.update(payload);
+                    if(check.getValue()!=crc) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream block = new DataInputStream(new ByteArrayInputStream(payload));
+                while(block.available()>0) {
+                    String detector = block.readUTF();
+                    IDataSet ds = DataSetCodec.read(block);
+                    if(!detectors.containsKey(detector)) detectors.put(detector, new LinkedHashMap<String,IDataSet>());
+                    detectors.get(detector).put(ds.getName(), ds);
+                }
+                blocks++;
+            }
+        }
+        System.out.println("Read " + blocks + " checkpoints of " + detectors.size() + " monitors from " + file);
+        return detectors;
+    }
+
+    private static Long hash(IDataSet ds) {
+        long hash = 1125899906842597L;
+        if(ds instanceof H1F) {
+            H1F h = (H1F) ds;
+            for(int bin=0; bin<h.getxAxis().getNBins(); bin++) {
+                hash = 31*hash + Double.doubleToLongBits(h.getBinContent(bin));
+                hash = 31*hash + Double.doubleToLongBits(h.getBinError(bin));
+            }
+            return hash;
+        }
+        if(ds instanceof H2F) {
+            H2F h = (H2F) ds;
+            for(int bin=0; bin<h.getDataBufferSize(); bin++) {
+                hash = 31*hash + Float.floatToIntBits(h.getDataBufferBin(bin));
+            }
+            return hash;
+        }
+        if(ds instanceof GraphErrors) {
+            GraphErrors g = (GraphErrors) ds;
+            for(int i=0; i<g.getDataSize(0); i++) {
+                hash = 31*hash + Double.doubleToLongBits(g.getDataX(i));
+                hash = 31*hash + Double.doubleToLongBits(g.getDataY(i));
+                hash = 31*hash + Double.doubleToLongBits(g.getDataEX(i));
+                hash = 31*hash + Double.doubleToLongBits(g.getDataEY(i));
+            }
+            return 31*hash + g.getDataSize(0);
+        }
+        return null;
+    }
+}
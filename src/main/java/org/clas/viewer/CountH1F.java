@@ -0,0 +1,43 @@
+package org.clas.viewer;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Count H1F. Fills go through H1F.fill, so the errors, under- and overflows
+ * are those of groot; decay scales the contents and errors of the bins.
+ */
+public class CountH1F extends CountHistogram {
+
+    public CountH1F(String name) {
+        super(name);
+    }
+
+    public void fill(double x) {
+        H1F h = (H1F) this.getTarget();
+        if(h!=null) h.fill(x);
+    }
+
+    public void fill(double x, int n) {
+        H1F h = (H1F) this.getTarget();
+        if(h!=null) h.fill(x, n);
+    }
+
+    public H1F getHistogram() {
+        return (H1F) this.getTarget();
+    }
+
+    @Override
+    protected boolean accepts(IDataSet target) {
+        return target instanceof H1F;
+    }
+
+    @Override
+    protected void scale(IDataSet target, double scale) {
+        H1F h = (H1F) target;
+        for(int bin=0; bin<h.getxAxis().getNBins(); bin++) {
+            h.setBinContent(bin, h.getBinContent(bin)*scale);
+            h.setBinError(bin, h.getBinError(bin)*scale);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.clas.viewer;
+
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+
+public class CountH2F extends CountHistogram {
+
+    public CountH2F(String name) {
+        super(name);
+    }
+
+    public void fill(double x, double y) {
+        this.fill(x, y, 1);
+    }
+
+    public void fill(double x, double y, int n) {
+        H2F h = (H2F) this.getTarget();
+        if(h==null) return;
+        int ix = h.getXAxis().getBin(x);
+        int iy = h.getYAxis().getBin(y);
+        if(ix<0 || ix>=h.getXAxis().getNBins() || iy<0 || iy>=h.getYAxis().getNBins()) return;
+        h.setBinContent(ix, iy, h.getBinContent(ix, iy) + n);
+    }
+
+    public H2F getHistogram() {
+        return (H2F) this.getTarget();
+    }
+
+    @Override
+    protected boolean accepts(IDataSet target) {
+        return target instanceof H2F;
+    }
+
+    @Override
+    protected void scale(IDataSet target, double scale) {
+        H2F h = (H2F) target;
+        for(int bin=0; bin<h.getDataBufferSize(); bin++) h.setDataBufferBin(bin, (float) (h.getDataBufferBin(bin)*scale));
+    }
+}
@@ -0,0 +1,49 @@
+package org.clas.viewer;
+
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Typed handle on a plain count histogram of a monitor, filled under the
+ * monitor lock like the rest of its histograms. The groot histogram is found
+ * by name when the monitor binds its histograms, after createHistos or
+ * after reading a file. In decay mode fold() scales the contents by the
+ * decay accumulated since the previous fold.
+ */
+public abstract class CountHistogram {
+
+    private final String      name;
+    private volatile IDataSet target = null;
+
+    protected CountHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    protected IDataSet getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Scales the groot histogram, e.g. by the decay since the previous fold.
+     */
+    public void fold(double scale) {
+        IDataSet target = this.target;
+        if(target==null || scale==1) return;
+        this.scale(target, scale);
+    }
+
+    void bind(IDataSet target) {
+        if(target!=null && !this.accepts(target)) {
+            System.out.println("Count histogram " + this.name + " cannot be bound to " + target.getClass().getSimpleName());
+            target = null;
+        }
+        this.target = target;
+    }
+
+    protected abstract boolean accepts(IDataSet target);
+
+    protected abstract void scale(IDataSet target, double scale);
+}
@@ -0,0 +1,356 @@
+package org.clas.viewer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Binary form of the H1F, H2F and GraphErrors written by the checkpointer
+ * and the histogram archive: type, name and titles, axes and bin contents.
+ *
+ * The compact form used by the archive refers to names and titles by their
+ * number in a dictionary, and writes the bins as variable length integers
+ * when they are all integers, as the differences to the previous bin when
+ * most are filled and as (distance to the previous filled bin, content)
+ * pairs when most are empty. Errors that are the square root of the
+ * content, as left by fill, are not written.
+ */
+class DataSetCodec {
+
+    static final byte H1 = 1, H2 = 2, GRAPH = 3;
+
+    private static final int SPARSE   = 1;
+    private static final int INTEGRAL = 2;
+    private static final int SQRT     = 4;
+
+    private DataSetCodec() {
+    }
+
+    /**
+     * Names and titles by number, in the order they were first used.
+     */
+    static final class Dictionary {
+        private final Map<String,Integer> ids     = new HashMap<String,Integer>();
+        private final List<String>        strings = new ArrayList<String>();
+
+        int id(String string) {
+            if(string==null) string = "";
+            Integer id = this.ids.get(string);
+            if(id==null) {
+                id = this.strings.size();
+                this.ids.put(string, id);
+                this.strings.add(string);
+            }
+            return id;
+        }
+
+        String get(int id) {
+            return this.strings.get(id);
+        }
+
+        int size() {
+            return this.strings.size();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            writeVarLong(out, this.strings.size());
+            for(String string : this.strings) out.writeUTF(string);
+        }
+
+        static Dictionary read(DataInputStream in) throws IOException {
+            Dictionary dictionary = new Dictionary();
+            long n = readVarLong(in);
+            for(long i=0; i<n; i++) dictionary.id(in.readUTF());
+            return dictionary;
+        }
+    }
+
+    static void writeCompact(DataOutputStream out, IDataSet ds, Dictionary dictionary) throws IOException {
+        if(ds instanceof H1F) {
+            H1F h = (H1F) ds;
+            int nbins = h.getxAxis().getNBins();
+            out.writeByte(H1);
+            writeIds(out, dictionary, h.getName(), h.getTitle(), h.getTitleX(), h.getTitleY());
+            writeVarLong(out, nbins);
+            out.writeDouble(h.getxAxis().min());
+            out.writeDouble(h.getxAxis().max());
+            double[] contents = new double[nbins];
+            double[] errors   = new double[nbins];
+            boolean  sqrt     = true;
+            for(int bin=0; bin<nbins; bin++) {
+                contents[bin] = h.getBinContent(bin);
+                errors[bin]   = h.getBinError(bin);
+                if(errors[bin]!=Math.sqrt(Math.abs(contents[bin]))) sqrt = false;
+            }
+            writeValues(out, contents, false, sqrt);
+            if(!sqrt) writeValues(out, errors, false, false);
+        }
+        else if(ds instanceof H2F) {
+            H2F h = (H2F) ds;
+            out.writeByte(H2);
+            writeIds(out, dictionary, h.getName(), h.getTitle(), h.getTitleX(), h.getTitleY());
+            writeVarLong(out, h.getXAxis().getNBins());
+            out.writeDouble(h.getXAxis().min());
+            out.writeDouble(h.getXAxis().max());
+            writeVarLong(out, h.getYAxis().getNBins());
+            out.writeDouble(h.getYAxis().min());
+            out.writeDouble(h.getYAxis().max());
+            double[] contents = new double[h.getDataBufferSize()];
+            for(int bin=0; bin<contents.length; bin++) contents[bin] = h.getDataBufferBin(bin);
+            writeValues(out, contents, true, false);
+        }
+        else {
+            GraphErrors g = (GraphErrors) ds;
+            out.writeByte(GRAPH);
+            writeIds(out, dictionary, g.getName(), g.getTitle(), g.getTitleX(), g.getTitleY());
+            writeVarLong(out, g.getDataSize(0));
+            for(int i=0; i<g.getDataSize(0); i++) {
+                out.writeDouble(g.getDataX(i));
+                out.writeDouble(g.getDataY(i));
+                out.writeDouble(g.getDataEX(i));
+                out.writeDouble(g.getDataEY(i));
+            }
+        }
+    }
+
+    static IDataSet readCompact(DataInputStream in, Dictionary dictionary) throws IOException {
+        byte type = in.readByte();
+        String[] titles = new String[4];
+        for(int i=0; i<titles.length; i++) titles[i] = dictionary.get((int) readVarLong(in));
+        if(type==H1) {
+            int nbins = (int) readVarLong(in);
+            H1F h = new H1F(titles[0], titles[1], nbins, in.readDouble(), in.readDouble());
+            h.setTitleX(titles[2]);
+            h.setTitleY(titles[3]);
+            double[] contents = new double[nbins];
+            boolean  sqrt     = readValues(in, contents, false);
+            double[] errors   = new double[nbins];
+            if(!sqrt) readValues(in, errors, false);
+            for(int bin=0; bin<nbins; bin++) {
+                h.setBinContent(bin, contents[bin]);
+                h.setBinError(bin, sqrt ? Math.sqrt(Math.abs(contents[bin])) : errors[bin]);
+            }
+            return h;
+        }
+        if(type==H2) {
+            int    nx   = (int) readVarLong(in);
+            double xmin = in.readDouble();
+            double xmax = in.readDouble();
+            int    ny   = (int) readVarLong(in);
+            double ymin = in.readDouble();
+            double ymax = in.readDouble();
+            H2F h = new H2F(titles[0], titles[1], nx, xmin, xmax, ny, ymin, ymax);
+            h.setTitleX(titles[2]);
+            h.setTitleY(titles[3]);
+            double[] contents = new double[h.getDataBufferSize()];
+            readValues(in, contents, true);
+            for(int bin=0; bin<contents.length; bin++) h.setDataBufferBin(bin, (float) contents[bin]);
+            return h;
+        }
+        if(type==GRAPH) {
+            GraphErrors g = new GraphErrors(titles[0]);
+            g.setTitle(titles[1]);
+            g.setTitleX(titles[2]);
+            g.setTitleY(titles[3]);
+            long n = readVarLong(in);
+            for(long i=0; i<n; i++) g.addPoint(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+            return g;
+        }
+        throw new IOException("unknown data set type " + type);
+    }
+
+    private static void writeValues(DataOutputStream out, double[] values, boolean floats, boolean sqrt) throws IOException {
+        int     filled   = 0;
+        boolean integral = true;
+        for(double value : values) {
+            if(value!=0) filled++;
+            if(value!=Math.rint(value) || Math.abs(value)>1e15) integral = false;
+        }
+        boolean sparse = 2*filled < values.length;
+        out.writeByte((sparse ? SPARSE : 0) | (integral ? INTEGRAL : 0) | (sqrt ? SQRT : 0));
+        if(sparse) {
+            writeVarLong(out, filled);
+            int previous = -1;
+            for(int bin=0; bin<values.length; bin++) {
+                if(values[bin]==0) continue;
+                writeVarLong(out, bin-previous);
+                previous = bin;
+                writeValue(out, values[bin], integral, floats);
+            }
+        }
+        else if(integral) {
+            long previous = 0;
+            for(double value : values) {
+                long current = (long) value;
+                writeVarLong(out, zigzag(current-previous));
+                previous = current;
+            }
+        }
+        else {
+            for(double value : values) writeValue(out, value, false, floats);
+        }
+    }
+
+    /**
+     * Reads values written by writeValues and returns whether the errors
+     * were left out.
+     */
+    private static boolean readValues(DataInputStream in, double[] values, boolean floats) throws IOException {
+        int     mode     = in.readByte();
+        boolean integral = (mode & INTEGRAL)!=0;
+        if((mode & SPARSE)!=0) {
+            long filled = readVarLong(in);
+            int bin = -1;
+            for(long i=0; i<filled; i++) {
+                bin += (int) readVarLong(in);
+                values[bin] = readValue(in, integral, floats);
+            }
+        }
+        else if(integral) {
+            long previous = 0;
+            for(int bin=0; bin<values.length; bin++) {
+                previous += unzigzag(readVarLong(in));
+                values[bin] = previous;
+            }
+        }
+        else {
+            for(int bin=0; bin<values.length; bin++) values[bin] = readValue(in, false, floats);
+        }
+        return (mode & SQRT)!=0;
+    }
+
+    private static void writeValue(DataOutputStream out, double value, boolean integral, boolean floats) throws IOException {
+        if(integral)    writeVarLong(out, zigzag((long) value));
+        else if(floats) out.writeFloat((float) value);
+        else            out.writeDouble(value);
+    }
+
+    private static double readValue(DataInputStream in, boolean integral, boolean floats) throws IOException {
+        if(integral) return unzigzag(readVarLong(in));
+        if(floats)   return in.readFloat();
+        return in.readDouble();
+    }
+
+    private static void writeIds(DataOutputStream out, Dictionary dictionary, String... strings) throws IOException {
+        for(String string : strings) writeVarLong(out, dictionary.id(string));
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while((value & ~0x7FL)!=0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for(int shift=0; shift<64; shift+=7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80)==0) return value;
+        }
+        throw new IOException("malformed variable length integer");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void write(DataOutputStream out, IDataSet ds) throws IOException {
+        if(ds instanceof H1F) {
+            H1F h = (H1F) ds;
+            int nbins = h.getxAxis().getNBins();
+            out.writeByte(H1);
+            writeTitles(out, h.getName(), h.getTitle(), h.getTitleX(), h.getTitleY());
+            out.writeInt(nbins);
+            out.writeDouble(h.getxAxis().min());
+            out.writeDouble(h.getxAxis().max());
+            for(int bin=0; bin<nbins; bin++) {
+                out.writeDouble(h.getBinContent(bin));
+                out.writeDouble(h.getBinError(bin));
+            }
+        }
+        else if(ds instanceof H2F) {
+            H2F h = (H2F) ds;
+            out.writeByte(H2);
+            writeTitles(out, h.getName(), h.getTitle(), h.getTitleX(), h.getTitleY());
+            out.writeInt(h.getXAxis().getNBins());
+            out.writeDouble(h.getXAxis().min());
+            out.writeDouble(h.getXAxis().max());
+            out.writeInt(h.getYAxis().getNBins());
+            out.writeDouble(h.getYAxis().min());
+            out.writeDouble(h.getYAxis().max());
+            for(int bin=0; bin<h.getDataBufferSize(); bin++) out.writeFloat(h.getDataBufferBin(bin));
+        }
+        else {
+            GraphErrors g = (GraphErrors) ds;
+            out.writeByte(GRAPH);
+            writeTitles(out, g.getName(), g.getTitle(), g.getTitleX(), g.getTitleY());
+            out.writeInt(g.getDataSize(0));
+            for(int i=0; i<g.getDataSize(0); i++) {
+                out.writeDouble(g.getDataX(i));
+                out.writeDouble(g.getDataY(i));
+                out.writeDouble(g.getDataEX(i));
+                out.writeDouble(g.getDataEY(i));
+            }
+        }
+    }
+
+    static IDataSet read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String[] titles = new String[4];
+        for(int i=0; i<titles.length; i++) titles[i] = in.readUTF();
+        if(type==H1) {
+            int nbins = in.readInt();
+            H1F h = new H1F(titles[0], titles[1], nbins, in.readDouble(), in.readDouble());
+            h.setTitleX(titles[2]);
+            h.setTitleY(titles[3]);
+            for(int bin=0; bin<nbins; bin++) {
+                h.setBinContent(bin, in.readDouble());
+                h.setBinError(bin, in.readDouble());
+            }
+            return h;
+        }
+        if(type==H2) {
+            int    nx   = in.readInt();
+            double xmin = in.readDouble();
+            double xmax = in.readDouble();
+            int    ny   = in.readInt();
+            double ymin = in.readDouble();
+            double ymax = in.readDouble();
+            H2F h = new H2F(titles[0], titles[1], nx, xmin, xmax, ny, ymin, ymax);
+            h.setTitleX(titles[2]);
+            h.setTitleY(titles[3]);
+            for(int bin=0; bin<h.getDataBufferSize(); bin++) h.setDataBufferBin(bin, in.readFloat());
+            return h;
+        }
+        if(type==GRAPH) {
+            GraphErrors g = new GraphErrors(titles[0]);
+            g.setTitle(titles[1]);
+            g.setTitleX(titles[2]);
+            g.setTitleY(titles[3]);
+            int n = in.readInt();
+            for(int i=0; i<n; i++) g.addPoint(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+            return g;
+        }
+        throw new IOException("unknown data set type " + type);
+    }
+
+    private static void writeTitles(DataOutputStream out, String... titles) throws IOException {
+        for(String title : titles) out.writeUTF(title==null ? "" : title);
+    }
+}
@@ -6,20 +6,32 @@ import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JSplitPane;
+import javax.swing.SwingUtilities;
 import org.jlab.detector.base.DetectorOccupancy;
 import org.jlab.detector.view.DetectorPane2D;
 import org.jlab.groot.base.GStyle;
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
 import org.jlab.groot.data.IDataSet;
 import org.jlab.groot.data.TDirectory;
+import org.jlab.groot.graphics.EmbeddedCanvas;
 import org.jlab.groot.graphics.EmbeddedCanvasTabbed;
+import org.jlab.groot.graphics.EmbeddedPad;
+import org.jlab.groot.graphics.IDataSetPlotter;
 import org.jlab.groot.group.DataGroup;
 import org.jlab.io.base.DataEvent;
 import org.jlab.io.base.DataEventType;
@@ -39,6 +51,9 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
     private DetectorPane2D         detectorView      = null;
     private ButtonGroup            bG1               = null;
     private int                    numberOfEvents;
+    private int           numberOfProcessedEvents;
+    private volatile int                 prescale = 1;
+    private boolean             mustSeeEveryEvent = false;
     private Boolean                sectorButtons     = false;
     private int                 detectorActiveSector = 1;
     private Boolean                     detectorLogZ = true;
@@ -46,11 +61,27 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
     private JRadioButton bS1,bS2,bS3,bS4,bS5,bS6;
     private JCheckBox        tbBtn;
     
-    public int bitsec = 0;
-    public long trigger = 0;
-    public long triggerPhase = 0;
-    public int trigFD = 0;
-    public int trigCD = 0;
+    private EventContext eventContext = EventContext.EMPTY;
+    private Map<String,String> averageWeights = new LinkedHashMap<String,String>();
+    private Set<String>       subscribedBanks = new LinkedHashSet<String>();
+    private final MonitorStatistics statistics = new MonitorStatistics();
+    private List<HistogramFamily<?>>  families = new ArrayList<HistogramFamily<?>>();
+    private List<CountHistogram>     counts = new ArrayList<CountHistogram>();
+    private List<ProfileH1>            profiles = new ArrayList<ProfileH1>();
+    private List<TimeSeriesH1>         timeSeries = new ArrayList<TimeSeriesH1>();
+    private volatile HistogramWindow histogramWindow = null;
+    private volatile int            decayEvents = 0;
+    private volatile double         decayFactor = 1;
+    private volatile long            decayEpoch = 0;
+    private long                    foldedEpoch = 0;
+    private int           foldedProcessedEvents = 0;
+    private double                decayedEvents = 0;
+    private boolean                inPlaceReset = false;
+    private volatile int     histogramGeneration = 0;
+    private HistogramSnapshot             published = null;
+    private HistogramSnapshot               plotted = null;
+    private Thread                   plottingThread = null;
+    private Map<String,IDataSet>  referenceOverlays = new HashMap<String,IDataSet>();
     
     public boolean testTrigger = false;
     public boolean TriggerBeam[] = new boolean[32];
@@ -59,15 +90,21 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
     public int eventResetTime_current[]=new int[19];
     public int eventResetTime_default[]=new int[19];    
     
+    private static boolean headless = false;
+    private static volatile EventSkimWriter skimWriter = null;
+    private DataEvent               currentEvent = null;
+    
     public DetectorMonitor(String name){
         GStyle.getAxisAttributesX().setTitleFontSize(18);
         GStyle.getAxisAttributesX().setLabelFontSize(14);
         GStyle.getAxisAttributesY().setTitleFontSize(18);
         GStyle.getAxisAttributesY().setLabelFontSize(14);
         this.detectorName = name;
-        this.detectorPanel  = new JPanel();
-        this.detectorCanvas = new EmbeddedCanvasTabbed();
-        this.detectorView   = new DetectorPane2D();
+        if(!headless) {
+            this.detectorPanel  = new JPanel();
+            this.detectorCanvas = new EmbeddedCanvasTabbed();
+            this.detectorView   = new DetectorPane2D();
+        }
         this.numberOfEvents = 0;
         
         eventResetTime_current[0]=0;
@@ -124,9 +161,41 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
         // initialize canvas and create histograms
     }
     
+    public void setupCanvases() {
+        // divide the canvases, once, before the histograms are first drawn
+    }
+    
     @Override
     public void dataEventAction(DataEvent event) {
+        this.dataEventAction(event, EventContext.fromEvent(event));
+    }
+    
+    /**
+     * Counts and processes the event under the monitor lock, which is also
+     * held to publish, fold, reset, save or checkpoint the histograms, so
+     * that those never see an event half filled.
+     */
+    public synchronized void dataEventAction(DataEvent event, EventContext context) {
+        this.eventContext = context;
         this.setNumberOfEvents(this.getNumberOfEvents()+1);
+        this.ageHistograms();
+        this.numberOfProcessedEvents++;
+        this.currentEvent = event;
+        if(!MonitorStatistics.isEnabled()) {
+            this.processDataEvent(event);
+            this.currentEvent = null;
+            return;
+        }
+        long bytes = this.statistics.sampleAllocation() ? MonitorStatistics.getAllocatedBytes() : -1;
+        long start = System.nanoTime();
+        this.processDataEvent(event);
+        this.currentEvent = null;
+        long nanos = System.nanoTime() - start;
+        if(bytes>=0) bytes = MonitorStatistics.getAllocatedBytes() - bytes;
+        this.statistics.record(event.getType(), nanos, bytes);
+    }
+    
+    private void processDataEvent(DataEvent event) {
         if (event.getType() == DataEventType.EVENT_START) {
 //            resetEventListener();
             processEvent(event);
@@ -140,20 +209,82 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
 	}
     }
 
+    /**
+     * Called instead of dataEventAction for events carrying none of the
+     * subscribed banks: the event is counted but not processed.
+     */
+    public synchronized void skipEvent(DataEvent event, EventContext context) {
+        this.eventContext = context;
+        this.setNumberOfEvents(this.getNumberOfEvents()+1);
+        this.ageHistograms();
+        this.numberOfProcessedEvents++;
+        this.eventSkipped(event);
+    }
+    
+    /**
+     * Called for events dropped by the prescaler: they are counted in
+     * getNumberOfEvents but not in getNumberOfProcessedEvents, which is the
+     * one to normalise occupancies with.
+     */
+    public synchronized void prescaleEvent(DataEvent event) {
+        this.setNumberOfEvents(this.getNumberOfEvents()+1);
+        this.ageHistograms();
+    }
+    
+    public void eventSkipped(DataEvent event) {
+        // event without any of the subscribed banks
+    }
+    
+    /**
+     * Takes the event being processed out of getNumberOfProcessedEvents, for
+     * monitors that only look at part of the events, e.g. some triggers, and
+     * normalise their occupancies to those. To be called from processEvent
+     * or eventSkipped; does nothing if the monitor was reset since the event
+     * was counted.
+     */
+    public void rejectEvent() {
+        if(this.numberOfProcessedEvents>0) this.numberOfProcessedEvents--;
+    }
+    
+    /**
+     * Declares the banks read in processEvent; events carrying none of them
+     * are not processed. Monitors without subscriptions see every event.
+     */
+    public void subscribeBanks(String... banks) {
+        for(String bank : banks) {
+            this.subscribedBanks.add(bank);
+        }
+    }
+    
+    public Set<String> getSubscribedBanks() {
+        return this.subscribedBanks;
+    }
+    
+    public MonitorStatistics getStatistics() {
+        return this.statistics;
+    }
+    
     public void drawDetector() {
     
     }
     
-    public void setTriggerPhase(long phase) {
-    	   this.triggerPhase = phase;
+    public EventContext getEventContext() {
+    	    return this.eventContext;
     }
     
-    public long getTriggerPhase() {
-    	    return this.triggerPhase;
+    /**
+     * Flags the event being processed as anomalous, to be written to the
+     * skim files if a skim writer is set. Never waits: returns false if the
+     * event could not be queued.
+     */
+    public boolean flagEvent(String reason) {
+        EventSkimWriter writer = skimWriter;
+        if(writer==null || this.currentEvent==null) return false;
+        return writer.flag(this.currentEvent, this.getDetectorName(), reason, this.eventContext);
     }
     
-    public void setTriggerWord(long trig) {
-    	   this.trigger = trig;
+    public long getTriggerPhase() {
+    	    return this.eventContext.getTriggerPhase();
     }
     
     public void setTestTrigger(boolean test) {
@@ -179,17 +310,17 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
     public int     getCDTrigger()          {return this.trigger&0x00000fff;} 
 */
     
-    public int     getFDTrigger()            {return (int)(this.trigger)&0x000000000ffffffff;}
-    public int     getCDTrigger()            {return (int)(this.trigger>>32)&0x00000000ffffffff;}
+    public int     getFDTrigger()            {return this.eventContext.getFDTrigger();}
+    public int     getCDTrigger()            {return this.eventContext.getCDTrigger();}
     public boolean isGoodFD()                {return  getFDTrigger()>0;}    
     public boolean isTrigBitSet(int bit)     {int mask=0;mask |= 1<<bit; return isTrigMaskSet(mask);}
     public boolean isTrigMaskSet(int mask)   {return (getFDTrigger()&mask)!=0;}
     public boolean isGoodECALTrigger(int is) {return (testTrigger)? is==getECALTriggerSector():true;}    
     public int           getElecTrigger()    {return getFDTrigger()&0x1;}
-    public int     getElecTriggerSector()    {return (int) (isGoodFD() ? Math.log10(getFDTrigger()>>1)/0.301+1:0);} 
-    public int     getECALTriggerSector()    {return (int) (isGoodFD() ? Math.log10(getFDTrigger()>>19)/0.301+1:0);}       
-    public int     getPCALTriggerSector()    {return (int) (isGoodFD() ? Math.log10(getFDTrigger()>>13)/0.301+1:0);}       
-    public int     getHTCCTriggerSector()    {return (int) (isGoodFD() ? Math.log10(getFDTrigger()>>7)/0.301+1:0);} 
+    public int     getElecTriggerSector()    {return this.eventContext.getElecTriggerSector();} 
+    public int     getECALTriggerSector()    {return this.eventContext.getECALTriggerSector();}       
+    public int     getPCALTriggerSector()    {return this.eventContext.getPCALTriggerSector();}       
+    public int     getHTCCTriggerSector()    {return this.eventContext.getHTCCTriggerSector();} 
     
     public int    getTriggerMask()        {return this.TriggerMask;}
     public void   setTriggerMask(int bit) {this.TriggerMask|=(1<<bit);}  
@@ -205,7 +336,12 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
         return detectorTabNames;
     }
     
+    /**
+     * The histograms, or while plotHistos runs the published copies that the
+     * canvases draw.
+     */
     public IndexedList<DataGroup>  getDataGroup(){
+        if(this.plottingThread==Thread.currentThread()) return plotted.getDataGroup();
         return detectorData;
     }
 
@@ -222,6 +358,7 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
     }
     
     public DataGroup getDetectorSummary() {
+        if(this.plottingThread==Thread.currentThread()) return plotted.getDetectorSummary();
         return detectorSummary;
     }
     
@@ -241,6 +378,43 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
         return numberOfEvents;
     }
     
+    public int getNumberOfProcessedEvents() {
+        return numberOfProcessedEvents;
+    }
+    
+    /**
+     * Sets the processed events the histograms now hold, e.g. after merging
+     * or restoring them. In decay mode they are taken as undecayed, so that
+     * the decayed count is never made of a counter set here and one still
+     * counting from before.
+     */
+    public synchronized void setNumberOfProcessedEvents(int numberOfProcessedEvents) {
+        this.numberOfProcessedEvents = numberOfProcessedEvents;
+        this.foldedProcessedEvents   = numberOfProcessedEvents;
+        this.decayedEvents           = numberOfProcessedEvents;
+    }
+    
+    public int getPrescale() {
+        return prescale;
+    }
+    
+    public void setPrescale(int prescale) {
+        this.prescale = this.mustSeeEveryEvent ? 1 : Math.max(1, prescale);
+    }
+    
+    public boolean isMustSeeEveryEvent() {
+        return mustSeeEveryEvent;
+    }
+    
+    /**
+     * Monitors relying on consecutive events, e.g. helicity sequence checks,
+     * are never prescaled.
+     */
+    public void setMustSeeEveryEvent(boolean flag) {
+        this.mustSeeEveryEvent = flag;
+        if(flag) this.prescale = 1;
+    }
+    
     public void setLogZ(boolean flag) {
 	    this.detectorLogZ = flag;
     }
@@ -249,9 +423,31 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
 	    return this.detectorLogZ;
     }
 
+    public static void setHeadless(boolean flag) {
+        // must be set before any monitor is created
+        headless = flag;
+    }
+    
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    public static void setSkimWriter(EventSkimWriter writer) {
+        skimWriter = writer;
+    }
+
+    public static EventSkimWriter getSkimWriter() {
+        return skimWriter;
+    }
+    
     public void init(boolean flagDetectorView) {
         // initialize monitoring application
         // detector view is shown if flag is true
+        if(headless) {
+            createHistos();
+            bindHistograms();
+            return;
+        }
         getDetectorPanel().setLayout(new BorderLayout());
         drawDetector();
         JSplitPane   splitPane = new JSplitPane();
@@ -264,8 +460,10 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
             getDetectorPanel().add(getDetectorCanvas(),BorderLayout.CENTER); 
             if (sectorButtons) getDetectorPanel().add(getButtonPane(),BorderLayout.PAGE_END);  
         }
+        setupCanvases();
         createHistos();
-        plotHistos(); 
+        bindHistograms();
+        showSnapshot(takeSnapshot());
         if (sectorButtons) bS2.doClick();
     }
     
@@ -293,7 +491,7 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
     public void actionPerformed(ActionEvent e) {
         // TODO Auto-generated method stub
         this.detectorActiveSector   = Integer.parseInt(bG1.getSelection().getActionCommand());
-        plotHistos();
+        drawPlots();
     } 
     
     public void processEvent(DataEvent event) {
@@ -310,21 +508,205 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
     
     public void printCanvas(String dir) {
         // print canvas to files
+        for(Map.Entry<String,EmbeddedCanvas> entry : this.getCanvases(dir).entrySet()) {
+            System.out.println(entry.getKey());
+            entry.getValue().save(entry.getKey());
+        }
+    }
+
+    /**
+     * Canvases of the detector tabs by the file name printCanvas saves them to.
+     */
+    public Map<String,EmbeddedCanvas> getCanvases(String dir) {
+        Map<String,EmbeddedCanvas> canvases = new LinkedHashMap<String,EmbeddedCanvas>();
+        if(headless) return canvases;
         for(int tab=0; tab<this.detectorTabNames.size(); tab++) {
             String fileName = dir + "/" + this.detectorName + "_canvas" + tab + ".png";
-            System.out.println(fileName);
-            this.detectorCanvas.getCanvas(this.detectorTabNames.get(tab)).save(fileName);
+            canvases.put(fileName, this.detectorCanvas.getCanvas(this.detectorTabNames.get(tab)));
         }
+        return canvases;
     }
     
+    /**
+     * Replaces the histograms with new ones. They are built under the monitor
+     * lock, so the publisher and saving see either the old or the new set,
+     * and the canvases keep showing copies of the old ones until the new ones
+     * are published. Monitors may call it from processEvent.
+     */
     @Override
     public void resetEventListener() {
         System.out.println("Resetting " + this.getDetectorName() + " histogram");
-        this.createHistos();
-        this.plotHistos();
+        if(this.inPlaceReset && !this.getDataGroup().getMap().isEmpty()) {
+            this.clearHistograms();
+            return;
+        }
+        synchronized(this) {
+            this.createHistos();
+            this.bindHistograms();
+        }
+    }
+    
+    /**
+     * Resets by clearing the histograms in place rather than calling
+     * createHistos, for monitors whose createHistos does nothing but create
+     * empty histograms.
+     */
+    public void setInPlaceReset(boolean flag) {
+        this.inPlaceReset = flag;
+    }
+
+    public boolean isInPlaceReset() {
+        return this.inPlaceReset;
+    }
+
+    /**
+     * Zeroes all histograms and the event counters without allocating: the
+     * histogram objects, the handles bound to them and the canvases drawing
+     * them are kept, and the canvases show the empty histograms on their
+     * next repaint.
+     */
+    public synchronized void clearHistograms() {
+        Map<IDataSet,Boolean> seen = new IdentityHashMap<IDataSet,Boolean>();
+        for(DataGroup group : this.getAllDataGroups()) {
+            int nds = group.getRows()*group.getColumns();
+            for(int i=0; i<nds; i++) {
+                for(IDataSet ds : group.getData(i)) {
+                    if(seen.put(ds, true)!=null) continue;
+                    if(ds instanceof H1F) {
+                        ((H1F) ds).reset();
+                    }
+                    else if(ds instanceof H2F) {
+                        H2F h2 = (H2F) ds;
+                        for(int bin=0; bin<h2.getDataBufferSize(); bin++) h2.setDataBufferBin(bin, 0);
+                    }
+                    else if(ds instanceof GraphErrors) {
+                        ((GraphErrors) ds).reset();
+                    }
+                }
+            }
+        }
+        for(ProfileH1 profile : this.profiles) profile.clear();
+        for(TimeSeriesH1 series : this.timeSeries) series.clear();
+        HistogramWindow window = this.histogramWindow;
+        if(window!=null) window.clear();
+        this.setNumberOfEvents(0);
+        this.foldedEpoch           = this.decayEpoch;
+        this.resetCounters();
+    }
+
+    /**
+     * Called by clearHistograms, under the monitor lock, for monitors to zero
+     * the counters they keep next to their histograms.
+     */
+    public void resetCounters() {
+        // no counters of its own
+    }
+    
+    /**
+     * Draws the published copies on the canvases again, on the event dispatch
+     * thread, e.g. after a change of the plot options.
+     */
+    public void publishPlots() {
+        if(headless) return;
+        if(SwingUtilities.isEventDispatchThread()) {
+            this.drawPlots();
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                drawPlots();
+            }
+        });
+    }
+    
+    /**
+     * Refreshes the profile views and lets the monitor update its derived
+     * plots, without racing a reset.
+     */
+    public synchronized void publishHistograms() {
+        this.foldHistograms();
+        this.timerUpdate();
+    }
+
+    /**
+     * Publishes the histograms and copies them, under the monitor lock, into
+     * the snapshot that is handed to the event dispatch thread. The copies
+     * are made again when the histograms were replaced. Called by the
+     * HistogramPublisher, which does not take a snapshot before the previous
+     * one is shown.
+     */
+    synchronized HistogramSnapshot takeSnapshot() {
+        this.publishHistograms();
+        if(this.published==null || this.published.getGeneration()!=this.histogramGeneration || !this.published.refresh()) {
+            this.published = new HistogramSnapshot(this.histogramGeneration, this.detectorData, this.detectorSummary);
+        }
+        return this.published;
+    }
+
+    /**
+     * Copies the snapshot into the histograms drawn by the canvases, on the
+     * event dispatch thread and without the monitor lock. The canvases show
+     * them on their next repaint; plotHistos draws them again when the
+     * snapshot is of new histograms.
+     */
+    void showSnapshot(HistogramSnapshot snapshot) {
+        if(headless) return;
+        if(this.plotted==null || this.plotted.getSource()!=snapshot || !this.plotted.refresh()) {
+            this.plotted = snapshot.copy();
+            this.drawPlots();
+        }
+    }
+
+    private void drawPlots() {
+        if(this.plotted==null) return;
+        this.plottingThread = Thread.currentThread();
+        try {
+            this.plotHistos();
+        } finally {
+            this.plottingThread = null;
+        }
+        this.drawReferenceOverlays();
+    }
+
+    /**
+     * Sets the reference histograms, by name, that are drawn over the
+     * histograms of the same name wherever plotHistos draws them; on the
+     * event dispatch thread. The overlays are drawn as they are, and the
+     * canvases show changes to them on their next repaint.
+     */
+    void setReferenceOverlays(Map<String,IDataSet> overlays) {
+        if(headless) return;
+        this.referenceOverlays = overlays;
+        this.drawPlots();
+    }
+
+    private void drawReferenceOverlays() {
+        if(this.referenceOverlays.isEmpty()) return;
+        Map<IDataSet,Boolean> overlays = new IdentityHashMap<IDataSet,Boolean>();
+        for(IDataSet overlay : this.referenceOverlays.values()) overlays.put(overlay, true);
+        for(String tab : this.detectorTabNames) {
+            EmbeddedCanvas canvas = this.detectorCanvas.getCanvas(tab);
+            List<EmbeddedPad> pads = canvas.getCanvasPads();
+            for(int pad=0; pad<pads.size(); pad++) {
+                IDataSet overlay = null;
+                for(IDataSetPlotter plotter : pads.get(pad).getDatasetPlotters()) {
+                    IDataSet ds = plotter.getDataSet();
+                    // a pad plotHistos did not draw again keeps its overlay
+                    if(overlays.containsKey(ds)) {
+                        overlay = null;
+                        break;
+                    }
+                    if(overlay==null) overlay = this.referenceOverlays.get(ds.getName());
+                }
+                if(overlay==null) continue;
+                canvas.cd(pad);
+                canvas.draw(overlay, "same");
+            }
+        }
     }
     
     public void setCanvasUpdate(int time) {
+        if(headless) return;
         for(int tab=0; tab<this.detectorTabNames.size(); tab++) {
             this.detectorCanvas.getCanvas(this.detectorTabNames.get(tab)).initTimer(time);
         }
@@ -338,16 +720,285 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
         for(String name : names) {
             this.detectorTabNames.add(name);
         }
+        if(headless) return;
         EmbeddedCanvasTabbed canvas = new EmbeddedCanvasTabbed(names);
         this.setDetectorCanvas(canvas);
     }
  
     public void setDetectorSummary(DataGroup group) {
         this.detectorSummary = group;
+        this.histogramGeneration++;
     }
     
     public void setNumberOfEvents(int numberOfEvents) {
         this.numberOfEvents = numberOfEvents;
+        // monitors reset the counter in createHistos
+        if(numberOfEvents==0) this.setNumberOfProcessedEvents(0);
+    }
+
+    /**
+     * Declares a histogram whose bins hold running averages rather than
+     * counts, with the histogram holding the number of entries of each bin.
+     * A null weight means every bin is weighted by the number of processed events.
+     * Used by HistogramMerger to combine results from several workers.
+     */
+    public void registerAverage(String name, String weightName) {
+        this.averageWeights.put(name, weightName);
+    }
+    
+    public Map<String,String> getAverages() {
+        return this.averageWeights;
+    }
+
+    /**
+     * Declares a family of histograms named by sector and layer. The returned
+     * handles are valid once bindHistograms has run, which init,
+     * resetEventListener and readDataGroup do after the histograms are (re)created.
+     */
+    public <T extends IDataSet> HistogramFamily<T> registerHistograms(Class<T> type, int maxSector, int maxLayer, HistogramFamily.Naming naming) {
+        HistogramFamily<T> family = new HistogramFamily<T>(type, maxSector, maxLayer, naming);
+        this.families.add(family);
+        return family;
+    }
+
+    public <T extends IDataSet> HistogramFamily<T> registerHistogram(Class<T> type, final String name) {
+        return this.registerHistograms(type, 0, 0, (sector, layer) -> name);
+    }
+
+    /**
+     * Declares plain count histograms, see CountHistogram, which follow the
+     * decay of the monitor.
+     */
+    public CountH1F[][] registerCountH1F(int maxSector, int maxLayer, HistogramFamily.Naming naming) {
+        CountH1F[][] histos = new CountH1F[maxSector+1][maxLayer+1];
+        for(int sector=0; sector<=maxSector; sector++) {
+            for(int layer=0; layer<=maxLayer; layer++) {
+                histos[sector][layer] = this.registerCountH1F(naming.name(sector, layer));
+            }
+        }
+        return histos;
+    }
+
+    public CountH1F registerCountH1F(String name) {
+        CountH1F histo = new CountH1F(name);
+        this.counts.add(histo);
+        return histo;
+    }
+
+    public CountH2F registerCountH2F(String name) {
+        CountH2F histo = new CountH2F(name);
+        this.counts.add(histo);
+        return histo;
+    }
+
+    /**
+     * Declares H1F whose bins show the mean of the values filled in them, see ProfileH1.
+     */
+    public ProfileH1[][] registerProfiles(int maxSector, int maxLayer, HistogramFamily.Naming naming) {
+        ProfileH1[][] histos = new ProfileH1[maxSector+1][maxLayer+1];
+        for(int sector=0; sector<=maxSector; sector++) {
+            for(int layer=0; layer<=maxLayer; layer++) {
+                histos[sector][layer] = this.registerProfile(naming.name(sector, layer));
+            }
+        }
+        return histos;
+    }
+
+    public ProfileH1 registerProfile(String name) {
+        ProfileH1 profile = new ProfileH1(name);
+        this.profiles.add(profile);
+        return profile;
+    }
+
+    public List<ProfileH1> getProfiles() {
+        return this.profiles;
+    }
+
+    /**
+     * Declares rate histograms that widen their bins as the run goes on, see TimeSeriesH1.
+     */
+    public TimeSeriesH1[][] registerTimeSeries(int maxSector, int maxLayer, HistogramFamily.Naming naming, TimeSeriesH1.Axis axis, long width) {
+        TimeSeriesH1[][] histos = new TimeSeriesH1[maxSector+1][maxLayer+1];
+        for(int sector=0; sector<=maxSector; sector++) {
+            for(int layer=0; layer<=maxLayer; layer++) {
+                histos[sector][layer] = this.registerTimeSeries(naming.name(sector, layer), axis, width);
+            }
+        }
+        return histos;
+    }
+
+    public TimeSeriesH1 registerTimeSeries(String name, TimeSeriesH1.Axis axis, long width) {
+        TimeSeriesH1 series = new TimeSeriesH1(name, axis, width);
+        this.timeSeries.add(series);
+        return series;
+    }
+
+    public List<TimeSeriesH1> getTimeSeries() {
+        return this.timeSeries;
+    }
+
+    /**
+     * Applies the decay steps taken since the previous fold to the count
+     * histograms and refreshes the profile views. Called on every decay step,
+     * when publishing before timerUpdate, and before saving or merging.
+     */
+    public synchronized void foldHistograms() {
+        double scale = 1;
+        if(this.decayEvents>0) {
+            long epoch = this.decayEpoch;
+            int  processed = this.numberOfProcessedEvents;
+            scale = Math.pow(this.decayFactor, epoch - this.foldedEpoch);
+            // the events since the previous fold were filled before the step
+            this.decayedEvents = (this.decayedEvents + processed - this.foldedProcessedEvents)*scale;
+            this.foldedEpoch = epoch;
+            this.foldedProcessedEvents = processed;
+        }
+        for(CountHistogram histo : this.counts) histo.fold(scale);
+        for(ProfileH1 profile : this.profiles) profile.refresh();
+    }
+
+    /**
+     * Scales the count histograms by factor every events events, so that
+     * they follow the current conditions while keeping some statistics; events<=0
+     * goes back to accumulating. Each decay step scales the bins in one pass,
+     * on the filling thread before the next event. The periodic reset and
+     * the sliding window of the monitor are disabled.
+     */
+    public synchronized void setHistogramDecay(int events, double factor) {
+        this.foldHistograms();
+        if(events<=0 || factor<=0 || factor>=1) {
+            this.decayEvents = 0;
+            return;
+        }
+        for(int i=0; i<this.eventResetTime_current.length; i++) this.eventResetTime_current[i] = 0;
+        this.histogramWindow       = null;
+        this.decayFactor           = factor;
+        this.foldedEpoch           = this.decayEpoch;
+        this.foldedProcessedEvents = this.numberOfProcessedEvents;
+        this.decayedEvents         = this.numberOfProcessedEvents;
+        this.decayEvents           = events;
+    }
+
+    public int getDecayEvents() {
+        return this.decayEvents;
+    }
+
+    public double getDecayFactor() {
+        return this.decayFactor;
+    }
+
+    /**
+     * Number of processed events the histograms correspond to: in decay mode
+     * the processed events weighted like the counts. Occupancies should be
+     * normalised with it.
+     */
+    public double getEffectiveNumberOfEvents() {
+        return this.decayEvents>0 ? this.decayedEvents : this.numberOfProcessedEvents;
+    }
+
+    /**
+     * Shows the histograms of the last events instead of resetting them, see
+     * HistogramWindow; events<=0 goes back to accumulating. The periodic
+     * reset and the decay of the monitor are disabled.
+     */
+    public void setHistogramWindow(int events, int slices) {
+        if(events<=0) {
+            this.histogramWindow = null;
+            return;
+        }
+        for(int i=0; i<this.eventResetTime_current.length; i++) this.eventResetTime_current[i] = 0;
+        this.setHistogramDecay(0, 1);
+        HistogramWindow window = new HistogramWindow(events, slices);
+        this.foldHistograms();
+        window.bind(this.getWindowedDataSets());
+        this.histogramWindow = window;
+    }
+
+    public HistogramWindow getHistogramWindow() {
+        return this.histogramWindow;
+    }
+
+    /**
+     * Called before the event is counted as processed: a window slice
+     * closed here then counts exactly the events filled into it, the current
+     * one going to the next slice, where it may also be rejected.
+     */
+    private void ageHistograms() {
+        int decay = this.decayEvents;
+        if(decay>0 && this.numberOfEvents%decay==0) {
+            this.decayEpoch++;
+            this.foldHistograms();
+        }
+        HistogramWindow window = this.histogramWindow;
+        if(window==null || this.numberOfEvents%window.getSliceEvents()!=0) return;
+        this.foldHistograms();
+        this.numberOfProcessedEvents -= window.rotate(this.numberOfProcessedEvents);
+    }
+
+    /**
+     * Count histograms: profiles, time series and running averages are kept
+     * out of the window.
+     */
+    private List<IDataSet> getWindowedDataSets() {
+        Set<String> excluded = new LinkedHashSet<String>(this.averageWeights.keySet());
+        for(ProfileH1 profile : this.profiles) excluded.add(profile.getName());
+        for(TimeSeriesH1 series : this.timeSeries) excluded.add(series.getName());
+        Map<IDataSet,Boolean> seen = new IdentityHashMap<IDataSet,Boolean>();
+        List<IDataSet> datasets = new ArrayList<IDataSet>();
+        for(DataGroup group : this.getAllDataGroups()) {
+            int nds = group.getRows()*group.getColumns();
+            for(int i=0; i<nds; i++) {
+                for(IDataSet ds : group.getData(i)) {
+                    if(excluded.contains(ds.getName()) || seen.put(ds, true)!=null) continue;
+                    datasets.add(ds);
+                }
+            }
+        }
+        return datasets;
+    }
+
+    private List<DataGroup> getAllDataGroups() {
+        List<DataGroup> groups = new ArrayList<DataGroup>();
+        if(this.getDetectorSummary()!=null) groups.add(this.getDetectorSummary());
+        groups.addAll(this.getDataGroup().getMap().values());
+        return groups;
+    }
+
+    /**
+     * Changes whenever the histograms are replaced by new objects, for
+     * those holding on to them outside of the monitor.
+     */
+    public int getHistogramGeneration() {
+        return this.histogramGeneration;
+    }
+
+    /**
+     * Points all registered handles to the current histograms and restarts
+     * the sliding window or the decay, if any.
+     */
+    public void bindHistograms() {
+        this.histogramGeneration++;
+        HistogramWindow window = this.histogramWindow;
+        if(window!=null) window.bind(this.getWindowedDataSets());
+        synchronized(this) {
+            this.foldedEpoch           = this.decayEpoch;
+            this.foldedProcessedEvents = this.numberOfProcessedEvents;
+            this.decayedEvents         = this.numberOfProcessedEvents;
+        }
+        if(this.families.isEmpty() && this.counts.isEmpty() && this.profiles.isEmpty() && this.timeSeries.isEmpty()) return;
+        Map<String,IDataSet> datasets = new HashMap<String,IDataSet>();
+        for(DataGroup group : this.getAllDataGroups()) {
+            int nds = group.getRows()*group.getColumns();
+            for(int i=0; i<nds; i++) {
+                for(IDataSet ds : group.getData(i)) {
+                    if(!datasets.containsKey(ds.getName())) datasets.put(ds.getName(), ds);
+                }
+            }
+        }
+        for(HistogramFamily<?> family : this.families) family.bind(datasets);
+        for(CountHistogram histo : this.counts) histo.bind(datasets.get(histo.getName()));
+        for(ProfileH1 profile : this.profiles) profile.bind(datasets.get(profile.getName()));
+        for(TimeSeriesH1 series : this.timeSeries) series.bind(datasets.get(series.getName()));
     }
 
     @Override
@@ -355,71 +1006,99 @@ public class DetectorMonitor implements IDataEventListener, ActionListener {
         
     }
  
-    public void readDataGroup(TDirectory dir) {
+    public synchronized void readDataGroup(TDirectory dir) {
         String folder = this.getDetectorName() + "/";
         System.out.println("Reading from: " + folder);
-        DataGroup sum = this.getDetectorSummary();
-        int nrows = sum.getRows();
-        int ncols = sum.getColumns();
-        int nds   = nrows*ncols;
-        DataGroup newSum = new DataGroup(ncols,nrows);
-        for(int i = 0; i < nds; i++){
-            List<IDataSet> dsList = sum.getData(i);
-            for(IDataSet ds : dsList){
-                System.out.println("\t --> " + ds.getName());
-                newSum.addDataSet(dir.getObject(folder, ds.getName()),i);
-            }
-        }            
-        this.setDetectorSummary(newSum);
+        this.readDetectorSummary(dir);
         Map<Long, DataGroup> map = this.getDataGroup().getMap();
         for( Map.Entry<Long, DataGroup> entry : map.entrySet()) {
             Long key = entry.getKey();
             DataGroup group = entry.getValue();
-            nrows = group.getRows();
-            ncols = group.getColumns();
-            nds   = nrows*ncols;
+            int nrows = group.getRows();
+            int ncols = group.getColumns();
+            int nds   = nrows*ncols;
             DataGroup newGroup = new DataGroup(ncols,nrows);
             for(int i = 0; i < nds; i++){
                 List<IDataSet> dsList = group.getData(i);
                 for(IDataSet ds : dsList){
-                    System.out.println("\t --> " + ds.getName());
                     newGroup.addDataSet(dir.getObject(folder, ds.getName()),i);
                 }
             }
             map.replace(key, newGroup);
         }
-        this.plotHistos();
+        this.bindHistograms();
+        for(ProfileH1 profile : this.profiles) {
+            profile.restore(dir.getObject(folder, profile.getName() + ProfileH1.ENTRIES), dir.getObject(folder, profile.getName() + ProfileH1.SUMW2));
+        }
+        for(TimeSeriesH1 series : this.timeSeries) {
+            series.restore(dir.getObject(folder, series.getName() + TimeSeriesH1.WIDTH));
+        }
     }
     
-    public void writeDataGroup(TDirectory dir) {
-        String folder = "/" + this.getDetectorName();
-        dir.mkdir(folder);
-        dir.cd(folder);
+    /**
+     * Replaces only the summary histograms, e.g. to draw the summary
+     * canvases before the detector histograms are read.
+     */
+    public synchronized void readDetectorSummary(TDirectory dir) {
+        String folder = this.getDetectorName() + "/";
         DataGroup sum = this.getDetectorSummary();
-        int nrows = sum.getRows();
-        int ncols = sum.getColumns();
-        int nds   = nrows*ncols;
+        if(sum==null) return;
+        int nds = sum.getRows()*sum.getColumns();
+        DataGroup newSum = new DataGroup(sum.getColumns(),sum.getRows());
         for(int i = 0; i < nds; i++){
-            List<IDataSet> dsList = sum.getData(i);
-            for(IDataSet ds : dsList){
-                System.out.println("\t --> " + ds.getName());
-                dir.addDataSet(ds);
+            for(IDataSet ds : sum.getData(i)){
+                newSum.addDataSet(dir.getObject(folder, ds.getName()),i);
             }
         }            
-        Map<Long, DataGroup> map = this.getDataGroup().getMap();
-        for( Map.Entry<Long, DataGroup> entry : map.entrySet()) {
-            DataGroup group = entry.getValue();
-            nrows = group.getRows();
-            ncols = group.getColumns();
-            nds   = nrows*ncols;
+        this.setDetectorSummary(newSum);
+    }
+
+    public void writeDataGroup(TDirectory dir) {
+        this.writeDataGroup(dir, false);
+    }
+
+    /**
+     * Adds the histograms to the directory, as copies taken under the monitor
+     * lock when snapshot is set so that the directory can be written while
+     * the monitor keeps filling.
+     */
+    public synchronized void writeDataGroup(TDirectory dir, boolean snapshot) {
+        String folder = "/" + this.getDetectorName();
+        dir.mkdir(folder);
+        dir.cd(folder);
+        for(IDataSet ds : this.getSavedDataSets()) {
+            dir.addDataSet(snapshot ? HistogramSaver.copy(ds) : ds);
+        }
+    }
+
+    /**
+     * Folds the histograms and lists what is saved for this monitor: the
+     * summary and group data sets, as they are, followed by the profile and
+     * time series companions and the event counters, created for the call.
+     */
+    synchronized List<IDataSet> getSavedDataSets() {
+        this.foldHistograms();
+        List<IDataSet> saved = new ArrayList<IDataSet>();
+        for(DataGroup group : this.getAllDataGroups()) {
+            int nds = group.getRows()*group.getColumns();
             for(int i = 0; i < nds; i++){
-                List<IDataSet> dsList = group.getData(i);
-                for(IDataSet ds : dsList){
-                    System.out.println("\t --> " + ds.getName());
-                    dir.addDataSet(ds);
-                }
+                saved.addAll(group.getData(i));
             }
         }
+        for(ProfileH1 profile : this.profiles) {
+            if(profile.getHistogram()==null) continue;
+            for(H1F companion : profile.createCompanions()) saved.add(companion);
+        }
+        for(TimeSeriesH1 series : this.timeSeries) {
+            if(series.getHistogram()!=null) saved.add(series.createCompanion());
+        }
+        H1F prescaleHisto = new H1F("prescale", "prescale", 3, 0, 3);
+        prescaleHisto.setTitleX("events, processed events, last prescale");
+        prescaleHisto.setBinContent(0, this.numberOfEvents);
+        prescaleHisto.setBinContent(1, this.numberOfProcessedEvents);
+        prescaleHisto.setBinContent(2, this.prescale);
+        saved.add(prescaleHisto);
+        return saved;
     }
         
 }
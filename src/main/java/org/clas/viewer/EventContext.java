@@ -0,0 +1,70 @@
+package org.clas.viewer;
+
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+
+/**
+ * Event header information read once per event from RUN::config and shared,
+ * read-only, by all monitors processing that event.
+ */
+public final class EventContext {
+
+    public static final EventContext EMPTY = new EventContext(false, 0, 0, 0, 0, 0);
+
+    private final boolean hasConfig;
+    private final int     run;
+    private final int     event;
+    private final int     unixTime;
+    private final long    timestamp;
+    private final long    trigger;
+    private final long    triggerPhase;
+    private final int     fdTrigger;
+    private final int     cdTrigger;
+    private final int     elecTriggerSector;
+    private final int     ecalTriggerSector;
+    private final int     pcalTriggerSector;
+    private final int     htccTriggerSector;
+
+    private EventContext(boolean hasConfig, int run, int event, int unixTime, long timestamp, long trigger) {
+        this.hasConfig    = hasConfig;
+        this.run          = run;
+        this.event        = event;
+        this.unixTime     = unixTime;
+        this.timestamp    = timestamp;
+        this.trigger      = trigger;
+        int phase_offset  = 1;
+        this.triggerPhase = ((timestamp%6)+phase_offset)%6; // TI derived phase correction due to TDC and FADC clock differences
+        this.fdTrigger    = (int)(trigger)&0x000000000ffffffff;
+        this.cdTrigger    = (int)(trigger>>32)&0x00000000ffffffff;
+        boolean goodFD    = this.fdTrigger>0;
+        this.elecTriggerSector = (int) (goodFD ? Math.log10(this.fdTrigger>>1)/0.301+1:0);
+        this.ecalTriggerSector = (int) (goodFD ? Math.log10(this.fdTrigger>>19)/0.301+1:0);
+        this.pcalTriggerSector = (int) (goodFD ? Math.log10(this.fdTrigger>>13)/0.301+1:0);
+        this.htccTriggerSector = (int) (goodFD ? Math.log10(this.fdTrigger>>7)/0.301+1:0);
+    }
+
+    public static EventContext fromEvent(DataEvent event) {
+        if(event==null || !event.hasBank("RUN::config")) return EMPTY;
+        DataBank bank = event.getBank("RUN::config");
+        return new EventContext(true,
+                                bank.getInt("run", 0),
+                                bank.getInt("event", 0),
+                                bank.getInt("unixtime", 0),
+                                bank.getLong("timestamp", 0),
+                                bank.getLong("trigger", 0));
+    }
+
+    public boolean hasConfig()            {return hasConfig;}
+    public int     getRun()               {return run;}
+    public int     getEvent()             {return event;}
+    public int     getUnixTime()          {return unixTime;}
+    public long    getTimestamp()         {return timestamp;}
+    public long    getTriggerWord()       {return trigger;}
+    public long    getTriggerPhase()      {return triggerPhase;}
+    public int     getFDTrigger()         {return fdTrigger;}
+    public int     getCDTrigger()         {return cdTrigger;}
+    public int     getElecTriggerSector() {return elecTriggerSector;}
+    public int     getECALTriggerSector() {return ecalTriggerSector;}
+    public int     getPCALTriggerSector() {return pcalTriggerSector;}
+    public int     getHTCCTriggerSector() {return htccTriggerSector;}
+}
@@ -0,0 +1,188 @@
+package org.clas.viewer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jlab.detector.decode.CLASDecoder;
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.evio.EvioDataEvent;
+import org.jlab.io.hipo.HipoDataEvent;
+
+/**
+ * Decodes EVIO events on a pool of threads, each with its own CLASDecoder
+ * since the decoder is not thread-safe. Decoded events are handed on by a
+ * single sequencer thread in the order they were submitted, whatever order
+ * the decoding finishes in. HIPO events pass through unchanged, keeping their
+ * place in the sequence.
+ */
+public class EventDecoderPool {
+
+    public interface DecodedEventHandler {
+        void onEvent(DataEvent event, boolean decoded);
+    }
+
+    private final ExecutorService                     executor;
+    private final BlockingQueue<Future<DecodedEvent>> inFlight;
+    private final DecodedEventHandler                 handler;
+    private final Thread                              sequencer;
+    private final ThreadLocal<DecoderState>           decoders = new ThreadLocal<DecoderState>() {
+        @Override
+        protected DecoderState initialValue() {
+            return new DecoderState();
+        }
+    };
+    private volatile int ccdbRunNumber = 0;
+    private long         submitted     = 0;
+    private long         delivered     = 0;
+
+    public EventDecoderPool(int nThreads, DecodedEventHandler handler) {
+        this.handler  = handler;
+        this.inFlight = new ArrayBlockingQueue<Future<DecodedEvent>>(4*nThreads);
+        this.executor = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "evio-decoder-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.sequencer = new Thread(new Sequencer(), "event-sequencer");
+        this.sequencer.setDaemon(true);
+        this.sequencer.start();
+        System.out.println("Started " + nThreads + " event decoding threads");
+    }
+
+    /**
+     * Run number used for the CCDB tables of all decoders, applied lazily by
+     * each decoding thread before its next event.
+     */
+    public void setRunNumber(int run) {
+        this.ccdbRunNumber = run;
+    }
+
+    public int getRunNumber() {
+        return this.ccdbRunNumber;
+    }
+
+    /**
+     * Queues an event for decoding; blocks when too many events are in flight.
+     * Must be called from a single thread so that submission order is defined.
+     */
+    public void submit(final DataEvent event) {
+        Future<DecodedEvent> future = this.executor.submit(new Callable<DecodedEvent>() {
+            public DecodedEvent call() {
+                return decode(event);
+            }
+        });
+        try {
+            this.inFlight.put(future);
+            synchronized(this) {
+                this.submitted++;
+            }
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks until every submitted event has been handed to the handler.
+     */
+    public synchronized void flush() throws InterruptedException {
+        while(this.delivered < this.submitted) {
+            this.wait();
+        }
+    }
+
+    /**
+     * Blocks until the events submitted before the call have been handed to
+     * the handler, or the timeout expires; returns false on timeout.
+     */
+    public synchronized boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long target   = this.submitted;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(this.delivered < target) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if(millis<=0) return false;
+            this.wait(millis);
+        }
+        return true;
+    }
+
+    /**
+     * Whether the caller is the thread running the handler.
+     */
+    public boolean isSequencerThread() {
+        return Thread.currentThread() == this.sequencer;
+    }
+
+    private synchronized void markDelivered() {
+        this.delivered++;
+        this.notifyAll();
+    }
+
+    private DecodedEvent decode(DataEvent event) {
+        if(!(event instanceof EvioDataEvent)) return new DecodedEvent(event, false);
+        DecoderState state = this.decoders.get();
+        int run = this.ccdbRunNumber;
+        if(run != state.runNumber) {
+            if(run>0) state.decoder.setRunNumber(run, true);
+            state.runNumber = run;
+        }
+        HipoDataEvent hipo = (HipoDataEvent) state.decoder.getDataEvent(event);
+        DataBank   header  = state.decoder.createHeaderBank(hipo, run, 0, (float) 0, (float) 0);
+        DataBank  trigger  = state.decoder.createTriggerBank(hipo);
+        hipo.appendBanks(header);
+        hipo.appendBank(trigger);
+        return new DecodedEvent(hipo, true);
+    }
+
+    private static class DecoderState {
+        private final CLASDecoder decoder = new CLASDecoder();
+        private int runNumber = 0;
+    }
+
+    private static class DecodedEvent {
+        private final DataEvent event;
+        private final boolean   decoded;
+
+        DecodedEvent(DataEvent event, boolean decoded) {
+            this.event   = event;
+            this.decoded = decoded;
+        }
+    }
+
+    private class Sequencer implements Runnable {
+        @Override
+        public void run() {
+            while(!Thread.currentThread().isInterrupted()) {
+                Future<DecodedEvent> future;
+                try {
+                    future = inFlight.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    DecodedEvent result = future.get();
+                    handler.onEvent(result.event, result.decoded);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                markDelivered();
+            }
+        }
+    }
+}
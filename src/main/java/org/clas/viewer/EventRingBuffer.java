@@ -0,0 +1,236 @@
+package org.clas.viewer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jlab.io.base.DataEvent;
+
+/**
+ * Fixed size ring buffer between the event source and the monitors. A single
+ * producer publishes events and every registered consumer sees each event in
+ * order on its own thread. What happens once the slowest consumer falls a full
+ * buffer behind is set by the policy:
+ *   BLOCK       - the producer waits, which stalls the reader as before
+ *   DROP_OLDEST - the oldest event no consumer has started is discarded
+ *   SAMPLE      - only every Nth incoming event is kept, replacing the oldest
+ * A slot is reused once every consumer has taken its event, which the
+ * consumers hold on to while processing it, so an event still being
+ * processed is never dropped and only events that a consumer skipped are
+ * counted as dropped. awaitDrained also waits for the events being
+ * processed, while the fill level only counts the events not taken yet.
+ */
+public class EventRingBuffer {
+
+    public enum Policy { BLOCK, DROP_OLDEST, SAMPLE }
+
+    public interface EventHandler {
+        void onEvent(DataEvent event);
+    }
+
+    private final DataEvent[]     slots;
+    private final int             capacity;
+    private final ReentrantLock   lock     = new ReentrantLock();
+    private final Condition       notEmpty = lock.newCondition();
+    private final Condition       notFull  = lock.newCondition();
+    private final List<Consumer>  consumers = new ArrayList<Consumer>();
+
+    private long    head       = 0;
+    private long    dropped    = 0;
+    private long    overflows  = 0;
+    private volatile Policy policy     = Policy.BLOCK;
+    private volatile int    sampleRate = 10;
+
+    public EventRingBuffer(int capacity) {
+        this.capacity = capacity;
+        this.slots    = new DataEvent[capacity];
+    }
+
+    public void addConsumer(String name, EventHandler handler) {
+        Consumer consumer = new Consumer(handler);
+        lock.lock();
+        try {
+            consumer.sequence = this.head;
+            this.consumers.add(consumer);
+        } finally {
+            lock.unlock();
+        }
+        Thread thread = new Thread(consumer, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void setPolicy(Policy policy, int sampleRate) {
+        lock.lock();
+        try {
+            this.policy     = policy;
+            this.sampleRate = Math.max(1, sampleRate);
+            this.notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Policy getPolicy() {
+        return this.policy;
+    }
+
+    public int getSampleRate() {
+        return this.sampleRate;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Number of events waiting for the slowest consumer, at most the capacity.
+     */
+    public int getFillLevel() {
+        lock.lock();
+        try {
+            return (int) (this.head - this.getNextSequence());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDropCount() {
+        lock.lock();
+        try {
+            return this.dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void publish(DataEvent event) {
+        lock.lock();
+        try {
+            boolean sampled = false;
+            while(this.head - this.getNextSequence() >= this.capacity) {
+                if(this.policy == Policy.SAMPLE && !sampled) {
+                    sampled = true;
+                    if((this.overflows++ % this.sampleRate) != 0) {
+                        this.dropped++;
+                        return;
+                    }
+                }
+                else if(this.policy == Policy.BLOCK || !this.dropOldest()) {
+                    try {
+                        this.notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            this.slots[(int) (this.head % this.capacity)] = event;
+            this.head++;
+            this.notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the consumers are done with every event published before
+     * the call, or the timeout expires; returns false on timeout.
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            long target = this.head;
+            while(this.getMinimumSequence() < target) {
+                if(nanos<=0) return false;
+                nanos = this.notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the consumers that have not taken the oldest event past it;
+     * returns whether its slot was freed.
+     */
+    private boolean dropOldest() {
+        long oldest = this.getNextSequence();
+        if(oldest == this.head) return false;
+        for(Consumer consumer : this.consumers) {
+            if(consumer.sequence == oldest) consumer.sequence++;
+        }
+        this.dropped++;
+        this.notFull.signalAll();
+        return true;
+    }
+
+    /**
+     * Oldest event some consumer has not taken yet.
+     */
+    private long getNextSequence() {
+        long min = this.head;
+        for(Consumer consumer : this.consumers) min = Math.min(min, consumer.sequence);
+        return min;
+    }
+
+    /**
+     * Oldest event some consumer has not finished with.
+     */
+    private long getMinimumSequence() {
+        long min = this.head;
+        for(Consumer consumer : this.consumers) {
+            min = Math.min(min, consumer.busy ? consumer.sequence-1 : consumer.sequence);
+        }
+        return min;
+    }
+
+    private class Consumer implements Runnable {
+        private final EventHandler handler;
+        // next event to take, and whether the one before it is being processed
+        private long    sequence;
+        private boolean busy = false;
+
+        Consumer(EventHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            while(!Thread.currentThread().isInterrupted()) {
+                DataEvent event;
+                long current;
+                lock.lock();
+                try {
+                    while(this.sequence == head) {
+                        notEmpty.await();
+                    }
+                    current = this.sequence;
+                    event   = slots[(int) (current % capacity)];
+                    this.sequence = current + 1;
+                    this.busy     = true;
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    this.handler.onEvent(event);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                lock.lock();
+                try {
+                    this.busy = false;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.clas.viewer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataEvent;
+import org.jlab.io.hipo.HipoDataSync;
+
+/**
+ * Writes the events flagged by the monitors to HIPO skim files, so that they
+ * can be replayed later. flag() only offers the event to a bounded queue and
+ * never waits: when the queue is full the event is counted as dropped. The
+ * events are written by a single thread to skim_run<run>_<n>.hipo, with a
+ * new file once the current one exceeds the maximum size, and the flagging
+ * detectors and reasons are listed in a .log file next to each. An event
+ * flagged by several monitors in a row is written once.
+ *
+ * The events are queued as they are, which relies on events not being
+ * modified once dispatched to the monitors.
+ */
+public class EventSkimWriter {
+
+    public static final long DEFAULT_MAX_BYTES = 500L*1024*1024;
+    public static final int  DEFAULT_CAPACITY  = 1000;
+
+    private static final class Flag {
+        private final DataEvent event;
+        private final String    detector;
+        private final String    reason;
+        private final int       run;
+        private final int       number;
+
+        private Flag(DataEvent event, String detector, String reason, int run, int number) {
+            this.event    = event;
+            this.detector = detector;
+            this.reason   = reason;
+            this.run      = run;
+            this.number   = number;
+        }
+    }
+
+    private static final Flag CLOSE = new Flag(null, null, null, 0, 0);
+
+    private final File                folder;
+    private final long                maxBytes;
+    private final BlockingQueue<Flag> queue;
+    private final AtomicLong          flagged = new AtomicLong(0);
+    private final AtomicLong          dropped = new AtomicLong(0);
+    private final Thread              thread;
+    private volatile long             written = 0;
+
+    // only used by the writer thread
+    private HipoDataSync writer   = null;
+    private PrintWriter  log      = null;
+    private File         file     = null;
+    private int          run      = -1;
+    private int          index    = 0;
+    private DataEvent    previous = null;
+
+    public EventSkimWriter(File folder, long maxBytes, int capacity) {
+        this.folder   = folder;
+        this.maxBytes = maxBytes;
+        this.queue    = new ArrayBlockingQueue<Flag>(capacity);
+        this.thread   = new Thread(new Runnable() {
+            public void run() {
+                writeQueued();
+            }
+        }, "skim-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                close();
+            }
+        }, "skim-writer-close"));
+    }
+
+    public static File getDefaultFolder() {
+        return new File(System.getProperty("user.dir"), "skims");
+    }
+
+    /**
+     * Queues the event to be written and returns at once; returns false if
+     * the queue is full and the event was dropped.
+     */
+    public boolean flag(DataEvent event, String detector, String reason, EventContext context) {
+        if(event==null) return false;
+        this.flagged.incrementAndGet();
+        if(this.queue.offer(new Flag(event, detector, reason, context.getRun(), context.getEvent()))) return true;
+        this.dropped.incrementAndGet();
+        return false;
+    }
+
+    public long getFlaggedCount() {
+        return this.flagged.get();
+    }
+
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return this.written;
+    }
+
+    /**
+     * Writes what is queued, closes the current file and stops the thread.
+     */
+    public void close() {
+        if(!this.thread.isAlive()) return;
+        try {
+            this.queue.put(CLOSE);
+            this.thread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeQueued() {
+        while(true) {
+            Flag flag;
+            try {
+                flag = this.queue.poll(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if(flag==CLOSE) break;
+            if(flag==null) {
+                if(this.log!=null) this.log.flush();
+                continue;
+            }
+            try {
+                this.write(flag);
+            } catch (RuntimeException e) {
+                System.out.println("Could not write flagged event " + flag.number + " to " + this.file + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        this.closeFile();
+    }
+
+    private void write(Flag flag) {
+        if(flag.event!=this.previous) {
+            if(!(flag.event instanceof HipoDataEvent)) {
+                System.out.println("Flagged event " + flag.number + " is not a HIPO event, not written");
+                return;
+            }
+            if(this.writer==null || flag.run!=this.run || this.file.length()>=this.maxBytes) this.openFile(flag.run);
+            this.writer.writeEvent(flag.event);
+            this.previous = flag.event;
+            this.written++;
+        }
+        if(this.log!=null) this.log.println(flag.run + " " + flag.number + " " + flag.detector + " " + flag.reason);
+    }
+
+    private void openFile(int run) {
+        this.closeFile();
+        if(run!=this.run) this.index = 0;
+        this.run = run;
+        this.folder.mkdirs();
+        do {
+            this.file = new File(this.folder, "skim_run" + run + "_" + this.index++ + ".hipo");
+        } while(this.file.exists());
+        this.writer = new HipoDataSync();
+        this.writer.open(this.file.getPath());
+        try {
+            this.log = new PrintWriter(new FileWriter(this.file.getPath().replace(".hipo", ".log")));
+            this.log.println("# run event detector reason");
+        } catch (IOException e) {
+            System.out.println("Could not open the log of " + this.file + ": " + e.getMessage());
+            this.log = null;
+        }
+        System.out.println("Writing flagged events to " + this.file);
+    }
+
+    private void closeFile() {
+        if(this.writer!=null) this.writer.close();
+        if(this.log!=null) this.log.close();
+        this.writer   = null;
+        this.log      = null;
+        this.previous = null;
+    }
+}
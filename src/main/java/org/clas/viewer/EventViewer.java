@@ -1,6 +1,7 @@
 package org.clas.viewer;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Image;
@@ -15,8 +16,12 @@ import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.imageio.ImageIO;
 
 import javax.swing.ImageIcon;
@@ -35,6 +40,7 @@ import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextPane;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.text.SimpleAttributeSet;
@@ -42,7 +48,6 @@ import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 
 import org.clas.detectors.*;
-import org.jlab.detector.decode.CLASDecoder;
 import org.jlab.detector.decode.CodaEventDecoder;
 import org.jlab.detector.decode.DetectorEventDecoder;
 import org.jlab.detector.view.DetectorListener;
@@ -50,11 +55,11 @@ import org.jlab.detector.view.DetectorPane2D;
 import org.jlab.detector.view.DetectorShape2D;
 import org.jlab.groot.base.GStyle;
 import org.jlab.groot.data.TDirectory;
+import org.jlab.groot.graphics.EmbeddedCanvas;
 import org.jlab.groot.graphics.EmbeddedCanvasTabbed;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
 import org.jlab.io.base.DataEventType;
-import org.jlab.io.evio.EvioDataEvent;
 import org.jlab.io.hipo.HipoDataEvent;
 import org.jlab.io.task.DataSourceProcessorPane;
 import org.jlab.io.task.IDataEventListener;
@@ -84,7 +89,7 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
     /* MVT PULSE DISPLAY */
     
     //CodaEventDecoder               decoder = new CodaEventDecoder();
-    CLASDecoder                clasDecoder = new CLASDecoder();
+    EventDecoderPool           decoderPool = null;
     //DetectorEventDecoder   detectorDecoder = new DetectorEventDecoder();
            
     private int canvasUpdateTime   = 2000;
@@ -116,6 +121,42 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
 //                new FCUPmonitor("Faraday Cup"),  // 17
                 new TRIGGERmonitor("Trigger"),   // 18
     };
+    
+    MonitorDispatcher dispatcher = new MonitorDispatcher(monitors);
+    EventRingBuffer  eventBuffer = new EventRingBuffer(1024);
+    JLabel        dispatchStatus = new JLabel(" ");
+    JLabel        saveStatus     = new JLabel(" ");
+    HistogramSaver.StatusListener statusListener = new HistogramSaver.StatusListener() {
+        public void status(final String message) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    saveStatus.setText(" " + message + " ");
+                }
+            });
+        }
+    };
+    HistogramSaver histogramSaver = new HistogramSaver(statusListener);
+    CanvasExporter canvasExporter = new CanvasExporter(statusListener);
+    private volatile boolean saveOnRunChange = false;
+    Checkpointer  checkpointer   = new Checkpointer(monitors, Checkpointer.getDefaultFolder());
+    private boolean checkpointOffered = false;
+    private volatile HistogramArchive archive = null;
+    private final boolean[] archived = new boolean[monitors.length];
+    Performance   performance    = new Performance();
+    Reference     reference      = new Reference();
+    private volatile ReferenceComparator comparator = null;
+    HistogramPublisher publisher = new HistogramPublisher(monitors, new HistogramPublisher.Listener() {
+        public void published(HistogramSnapshot[] snapshots) {
+            ReferenceComparator current = comparator;
+            if(current==null) return;
+            current.update(snapshots, ReferenceComparator.DEFAULT_BINS_PER_UPDATE);
+            reference.update(current);
+        }
+        public void shown() {
+            ReferenceComparator current = comparator;
+            if(current!=null) current.showOverlays();
+        }
+    });
         
     public EventViewer() {    	
         		
@@ -135,6 +176,22 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         menuItem.getAccessibleContext().setAccessibleDescription("Save histograms to file");
         menuItem.addActionListener(this);
         file.add(menuItem);
+        JCheckBoxMenuItem runSaveItem = new JCheckBoxMenuItem("Save histograms on run change");
+        runSaveItem.getAccessibleContext().setAccessibleDescription("Save the histograms of the previous run to mon12_histo_run_<run>.hipo when the run changes");
+        runSaveItem.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                saveOnRunChange = e.getStateChange() == ItemEvent.SELECTED;
+            }
+        });
+        file.add(runSaveItem);
+        menuItem = new JMenuItem("Open reference histograms");
+        menuItem.getAccessibleContext().setAccessibleDescription("Compare the histograms with those of a reference file");
+        menuItem.addActionListener(this);
+        file.add(menuItem);
+        menuItem = new JMenuItem("Restore last checkpoint");
+        menuItem.getAccessibleContext().setAccessibleDescription("Restore the histograms from the last checkpoint of the current run");
+        menuItem.addActionListener(this);
+        file.add(menuItem);
         menuItem = new JMenuItem("Print histograms as png", KeyEvent.VK_B);
         menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_B, ActionEvent.CTRL_MASK));
         menuItem.getAccessibleContext().setAccessibleDescription("Print histograms as png");
@@ -169,6 +226,65 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         menuItem.getAccessibleContext().setAccessibleDescription("Set run number");
         menuItem.addActionListener(this);
         settings.add(menuItem);
+        JCheckBoxMenuItem parallelItem = new JCheckBoxMenuItem("Parallel monitor processing");
+        parallelItem.getAccessibleContext().setAccessibleDescription("Process each detector monitor on its own thread");
+        parallelItem.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                dispatcher.setParallel(e.getStateChange() == ItemEvent.SELECTED);
+                updateDispatchStatus();
+            }
+        });
+        settings.add(parallelItem);
+        JCheckBoxMenuItem statisticsItem = new JCheckBoxMenuItem("Monitor performance statistics", MonitorStatistics.isEnabled());
+        statisticsItem.getAccessibleContext().setAccessibleDescription("Record processing time per detector monitor");
+        statisticsItem.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                MonitorStatistics.setEnabled(e.getStateChange() == ItemEvent.SELECTED);
+                performance.reset(monitors);
+            }
+        });
+        settings.add(statisticsItem);
+        JCheckBoxMenuItem prescaleItem = new JCheckBoxMenuItem("Adaptive prescaling");
+        prescaleItem.getAccessibleContext().setAccessibleDescription("Prescale the slowest monitors to keep up with the input rate");
+        prescaleItem.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                dispatcher.setAdaptivePrescaling(e.getStateChange() == ItemEvent.SELECTED);
+                if(dispatcher.isAdaptivePrescaling()) statisticsItem.setSelected(true);
+                updateDispatchStatus();
+            }
+        });
+        settings.add(prescaleItem);
+        JCheckBoxMenuItem checkpointItem = new JCheckBoxMenuItem("Checkpoint histograms every minute");
+        checkpointItem.getAccessibleContext().setAccessibleDescription("Write the changed histograms to a checkpoint file every minute, to restore them after a crash");
+        checkpointItem.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                if(e.getStateChange() == ItemEvent.SELECTED) checkpointer.start(60, 0);
+                else                                         checkpointer.stop();
+            }
+        });
+        settings.add(checkpointItem);
+        JCheckBoxMenuItem skimItem = new JCheckBoxMenuItem("Write flagged events to skim files");
+        skimItem.getAccessibleContext().setAccessibleDescription("Write the events flagged as anomalous by the monitors to HIPO files in the skims folder");
+        skimItem.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                if(e.getStateChange() == ItemEvent.SELECTED) {
+                    DetectorMonitor.setSkimWriter(new EventSkimWriter(EventSkimWriter.getDefaultFolder(), EventSkimWriter.DEFAULT_MAX_BYTES, EventSkimWriter.DEFAULT_CAPACITY));
+                    return;
+                }
+                final EventSkimWriter writer = DetectorMonitor.getSkimWriter();
+                DetectorMonitor.setSkimWriter(null);
+                if(writer!=null) new Thread(new Runnable() {
+                    public void run() {
+                        writer.close();
+                    }
+                }, "skim-writer-close").start();
+            }
+        });
+        settings.add(skimItem);
+        menuItem = new JMenuItem("Set event buffer policy");
+        menuItem.getAccessibleContext().setAccessibleDescription("Set event buffer policy");
+        menuItem.addActionListener(this);
+        settings.add(menuItem);
         menuBar.add(settings);
          
         JMenu upload = new JMenu("Upload");
@@ -198,6 +314,16 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         menuItemdisable.addActionListener(this);
         reset.add(menuItemdisable);
         
+        JMenuItem menuItemwindow = new JMenuItem("Sliding window...");
+        menuItemwindow.getAccessibleContext().setAccessibleDescription("Show the last events instead of resetting");
+        menuItemwindow.addActionListener(this);
+        reset.add(menuItemwindow);
+        
+        JMenuItem menuItemdecay = new JMenuItem("Exponential decay...");
+        menuItemdecay.getAccessibleContext().setAccessibleDescription("Scale histograms down at regular intervals");
+        menuItemdecay.addActionListener(this);
+        reset.add(menuItemdecay);
+        
         JMenuItem menuItemBMT = new JMenuItem("Reset BMT histograms");
         menuItemBMT.getAccessibleContext().setAccessibleDescription("Reset BMT histograms");
         menuItemBMT.addActionListener(this);
@@ -384,8 +510,15 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         processorPane = new DataSourceProcessorPane();
         processorPane.setUpdateRate(analysisUpdateTime);
 
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(processorPane,BorderLayout.CENTER);
+        JPanel statusPanel = new JPanel(new BorderLayout());
+        statusPanel.add(dispatchStatus,BorderLayout.CENTER);
+        statusPanel.add(saveStatus,BorderLayout.LINE_END);
+        bottomPanel.add(statusPanel,BorderLayout.PAGE_END);
+        
         mainPanel.add(tabbedpane);
-        mainPanel.add(processorPane,BorderLayout.PAGE_END);
+        mainPanel.add(bottomPanel,BorderLayout.PAGE_END);
         
     
         GStyle.getAxisAttributesX().setTitleFontSize(18);
@@ -442,10 +575,23 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
                         
         }
         
+        this.decoderPool = new EventDecoderPool(Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors()/2)), 
+                                                new EventDecoderPool.DecodedEventHandler() {
+            public void onEvent(DataEvent event, boolean decoded) {
+                processDataEvent(event, decoded);
+            }
+        });
+        this.eventBuffer.addConsumer("event-decoding", new EventRingBuffer.EventHandler() {
+            public void onEvent(DataEvent event) {
+                decoderPool.submit(event);
+            }
+        });
         this.processorPane.addEventListener(this);
         
         this.tabbedpane.add(new Contact(),"Contacts");        
         this.tabbedpane.add(new Acronyms(),"Acronyms");
+        this.tabbedpane.add(this.performance,"Performance");
+        this.tabbedpane.add(this.reference,"Reference");
         
         this.setCanvasUpdate(canvasUpdateTime);
         this.plotSummaries();
@@ -455,7 +601,6 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         pulseWindowFMT.draw(tabbedpane);
         pulseWindowFTT.draw(tabbedpane);
         /* MVT PULSE DISPLAY */
-        
     }
       
     public void actionPerformed(ActionEvent e) {
@@ -463,17 +608,27 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         if(e.getActionCommand()=="Set GUI update interval") {
             this.chooseUpdateInterval();
         }
+        if(e.getActionCommand()=="Sliding window...") {
+            this.chooseHistogramWindow();
+        }
+        if(e.getActionCommand()=="Exponential decay...") {
+            this.chooseHistogramDecay();
+        }
         if(e.getActionCommand()=="Set global z-axis log scale") {
-        	   for(int k=0; k<this.monitors.length; k++) {this.monitors[k].setLogZ(true);this.monitors[k].plotHistos();}
+        	   for(int k=0; k<this.monitors.length; k++) {this.monitors[k].setLogZ(true);this.monitors[k].publishPlots();}
         }
         if(e.getActionCommand()=="Set global z-axis lin scale") {
-           for(int k=0; k<this.monitors.length; k++) {this.monitors[k].setLogZ(false);this.monitors[k].plotHistos();}
+           for(int k=0; k<this.monitors.length; k++) {this.monitors[k].setLogZ(false);this.monitors[k].publishPlots();}
         }
         
         if(e.getActionCommand()=="Set run number") {
         	setRunNumber(e.getActionCommand());
         }
         
+        if(e.getActionCommand()=="Set event buffer policy") {
+            this.chooseBufferPolicy();
+        }
+        
         if(e.getActionCommand()=="Open histograms file") {
             String fileName = null;
             JFileChooser fc = new JFileChooser();
@@ -486,6 +641,16 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
             }
             if(fileName != null) this.loadHistosFromFile(fileName);
         }        
+        if(e.getActionCommand()=="Open reference histograms") {
+            JFileChooser fc = new JFileChooser();
+            fc.setCurrentDirectory(new File(System.getProperty("user.dir")));
+            if (fc.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+                this.loadReference(fc.getSelectedFile().getAbsolutePath());
+            }
+        }
+        if(e.getActionCommand()=="Restore last checkpoint") {
+            this.restoreCheckpoint(this.runNumber);
+        }
         if(e.getActionCommand()=="Print histograms as png") {
             this.printHistosToFile();
         }
@@ -520,110 +685,98 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
                 if(result){ System.out.println("Created directory: " + data);}
             }
             
-            String fileName1 = data + "/summary_FD.png";
-            System.out.println(fileName1);
-            CLAS12Canvas.getCanvas("FD").save(fileName1);
-            String fileName2 = data + "/summary_CD.png";
-            System.out.println(fileName2);
-            CLAS12Canvas.getCanvas("CD").save(fileName2);
-            String fileName3 = data + "/summary_FT.png";
-            System.out.println(fileName3);
-            CLAS12Canvas.getCanvas("FT").save(fileName3);
+            this.exportCanvases(data, () -> {
+                LogEntry entry = new LogEntry("All online monitoring histograms for run number " + this.runNumber, "TLOG");  // change to HBLOG
             
-            for(int k=0; k<this.monitors.length; k++) {
-                this.monitors[k].printCanvas(data);
-            }
+                System.out.println("Starting to upload all monitoring plots");
             
-            LogEntry entry = new LogEntry("All online monitoring histograms for run number " + this.runNumber, "TLOG");  // change to HBLOG
-            
-            System.out.println("Starting to upload all monitoring plots");
-            
-            try{
-              entry.addAttachment(data+"/summary_FD.png", "Summary plots FD");
-              entry.addAttachment(data+"/summary_CD.png", "Summary plots CD");
-              entry.addAttachment(data+"/summary_FT.png", "Summary plots FT");
-              System.out.println("Summary plots uploaded");
-              entry.addAttachment(data+"/BMT_canvas0.png", "BMT occupancies");
-              entry.addAttachment(data+"/BMT_canvas1.png", "BMT occupancies c");
-              entry.addAttachment(data+"/BMT_canvas2.png", "BMT occupancies z");
-              entry.addAttachment(data+"/BMT_canvas3.png", "BMT time of max");
-              entry.addAttachment(data+"/BMT_canvas4.png", "BMT multiplicity");
-              System.out.println("BMT plots uploaded");
-              entry.addAttachment(data+"/BST_canvas0.png", "BST occupancies 2D");
-              entry.addAttachment(data+"/BST_canvas1.png", "BST occupancies 1D");
-              entry.addAttachment(data+"/BST_canvas2.png", "BST multiplicity"); 
-              System.out.println("BST plots uploaded");
-              entry.addAttachment(data+"/CND_canvas0.png", "CND ADC occupancies");
-              entry.addAttachment(data+"/CND_canvas1.png", "CND TDC occupancies");
-              System.out.println("CND plots uploaded");
-              entry.addAttachment(data+"/CTOF_canvas0.png", "CTOF ADC occupancies");
-              entry.addAttachment(data+"/CTOF_canvas1.png", "CTOF TDC occupancies");
-              System.out.println("CTOF plots uploaded");
-              entry.addAttachment(data+"/DC_canvas0.png", "DC occupancies raw");
-              entry.addAttachment(data+"/DC_canvas1.png", "DC occupancies normalized");
-              entry.addAttachment(data+"/DC_canvas2.png", "DC hit multiplicity");
-              System.out.println("DC plots uploaded");
-              entry.addAttachment(data+"/ECAL_canvas0.png", "ECAL ADC occupancies");
-              entry.addAttachment(data+"/ECAL_canvas1.png", "ECAL TDC occupancies");
-              entry.addAttachment(data+"/ECAL_canvas2.png", "ECAL ADC histograms");
-              entry.addAttachment(data+"/ECAL_canvas3.png", "ECAL TDC histograms");
-              entry.addAttachment(data+"/ECAL_canvas4.png", "ECAL ADC sum");
-              System.out.println("ECAL plots uploaded");
-              entry.addAttachment(data+"/Faraday Cup_canvas0.png", "Faraday Cup");
-              System.out.println("Farady Cup plots uploaded");
-              entry.addAttachment(data+"/FMT_canvas0.png", "FMT occupancies 2D");
-              entry.addAttachment(data+"/FMT_canvas1.png", "FMT Time of Max");
-              entry.addAttachment(data+"/FMT_canvas2.png", "FMT occupancies 1D");
-              entry.addAttachment(data+"/FMT_canvas3.png", "FMT Mulriplicity");
-              System.out.println("FMT plots uploaded");
-              entry.addAttachment(data+"/FTCAL_canvas0.png", "FTCAL");
-              System.out.println("FTCAL plot uploaded");
-              entry.addAttachment(data+"/FTHODO_canvas0.png", "FTHODO FADC occupancies");
-              entry.addAttachment(data+"/FTHODO_canvas1.png", "FTHODO FADC spectra");
-              System.out.println("FTHODO plots uploaded");
-              entry.addAttachment(data+"/FTOF_canvas0.png", "FTOF ADC occupancies");
-              entry.addAttachment(data+"/FTOF_canvas1.png", "FTOF TDC occupancies");
-              entry.addAttachment(data+"/FTOF_canvas2.png", "FTOF ADC histograms");
-              entry.addAttachment(data+"/FTOF_canvas3.png", "FTOF TDC histograms");
-              entry.addAttachment(data+"/FTOF_canvas4.png", "FTOF GMEAN");
-              System.out.println("FTOF plots uploaded");
-              entry.addAttachment(data+"/FTTRK_canvas0.png", "FTTRK occupancies 2D");
-              entry.addAttachment(data+"/FTTRK_canvas1.png", "FTTRK occupancies 1D");
-              entry.addAttachment(data+"/FTTRK_canvas2.png", "FTTRK average time maximum");
-              entry.addAttachment(data+"/FTTRK_canvas3.png", "FTTRK ADC and time spectra");
-              System.out.println("FTTRK plots uploaded");
-              entry.addAttachment(data+"/HEL_canvas0.png", "Helicity");
-              System.out.println("Helicity plot uploaded");
-              entry.addAttachment(data+"/HTCC_canvas0.png", "HTCC occupancies");
-              entry.addAttachment(data+"/HTCC_canvas1.png", "HTCC ADC spectra");
-              entry.addAttachment(data+"/HTCC_canvas2.png", "HTCC timing spectra");
-              System.out.println("HTCC plots uploaded");
-              entry.addAttachment(data+"/LTCC_canvas0.png", "LTCC occupancies");
-              entry.addAttachment(data+"/LTCC_canvas1.png", "LTCC occupancies normalized");
-              System.out.println("LTTC plots uploaded");
-              entry.addAttachment(data+"/RECON_canvas0.png", "RECON CVT cosmic");
-              entry.addAttachment(data+"/RECON_canvas1.png", "RECON CVT positive tracks");
-              entry.addAttachment(data+"/RECON_canvas2.png", "RECON CVT negative tracks");
-              entry.addAttachment(data+"/RECON_canvas3.png", "RECON DC tracks per event");
-              entry.addAttachment(data+"/RECON_canvas4.png", "RECON DC hits per track");
-              entry.addAttachment(data+"/RECON_canvas5.png", "RECON DC momentum");
-              entry.addAttachment(data+"/RECON_canvas6.png", "RECON DC theta angle");
-              System.out.println("RECON plots uploaded");
-              entry.addAttachment(data+"/RF_canvas0.png", "RF canvas 1");
-              entry.addAttachment(data+"/RF_canvas1.png", "RF canvas 2");
-              System.out.println("RF plots uploaded");
-              entry.addAttachment(data+"/RICH_canvas0.png", "RICH occupancy");
-              System.out.println("RICH plot uploaded");
-              entry.addAttachment(data+"/Trigger_canvas0.png", "Trigger bits");
-              entry.addAttachment(data+"/Trigger_canvas1.png", "Trigger EC peak");
-              entry.addAttachment(data+"/Trigger_canvas2.png", "Trigger EC cluster");
-              entry.addAttachment(data+"/Trigger_canvas3.png", "Trigger HTCC cluster");
-              entry.addAttachment(data+"/Trigger_canvas4.png", "Trigger FTOF cluster");
-              System.out.println("Trigger plots uploaded");
+                try{
+                  entry.addAttachment(data+"/summary_FD.png", "Summary plots FD");
+                  entry.addAttachment(data+"/summary_CD.png", "Summary plots CD");
+                  entry.addAttachment(data+"/summary_FT.png", "Summary plots FT");
+                  System.out.println("Summary plots uploaded");
+                  entry.addAttachment(data+"/BMT_canvas0.png", "BMT occupancies");
+                  entry.addAttachment(data+"/BMT_canvas1.png", "BMT occupancies c");
+                  entry.addAttachment(data+"/BMT_canvas2.png", "BMT occupancies z");
+                  entry.addAttachment(data+"/BMT_canvas3.png", "BMT time of max");
+                  entry.addAttachment(data+"/BMT_canvas4.png", "BMT multiplicity");
+                  System.out.println("BMT plots uploaded");
+                  entry.addAttachment(data+"/BST_canvas0.png", "BST occupancies 2D");
+                  entry.addAttachment(data+"/BST_canvas1.png", "BST occupancies 1D");
+                  entry.addAttachment(data+"/BST_canvas2.png", "BST multiplicity"); 
+                  System.out.println("BST plots uploaded");
+                  entry.addAttachment(data+"/CND_canvas0.png", "CND ADC occupancies");
+                  entry.addAttachment(data+"/CND_canvas1.png", "CND TDC occupancies");
+                  System.out.println("CND plots uploaded");
+                  entry.addAttachment(data+"/CTOF_canvas0.png", "CTOF ADC occupancies");
+                  entry.addAttachment(data+"/CTOF_canvas1.png", "CTOF TDC occupancies");
+                  System.out.println("CTOF plots uploaded");
+                  entry.addAttachment(data+"/DC_canvas0.png", "DC occupancies raw");
+                  entry.addAttachment(data+"/DC_canvas1.png", "DC occupancies normalized");
+                  entry.addAttachment(data+"/DC_canvas2.png", "DC hit multiplicity");
+                  System.out.println("DC plots uploaded");
+                  entry.addAttachment(data+"/ECAL_canvas0.png", "ECAL ADC occupancies");
+                  entry.addAttachment(data+"/ECAL_canvas1.png", "ECAL TDC occupancies");
+                  entry.addAttachment(data+"/ECAL_canvas2.png", "ECAL ADC histograms");
+                  entry.addAttachment(data+"/ECAL_canvas3.png", "ECAL TDC histograms");
+                  entry.addAttachment(data+"/ECAL_canvas4.png", "ECAL ADC sum");
+                  System.out.println("ECAL plots uploaded");
+                  entry.addAttachment(data+"/Faraday Cup_canvas0.png", "Faraday Cup");
+                  System.out.println("Farady Cup plots uploaded");
+                  entry.addAttachment(data+"/FMT_canvas0.png", "FMT occupancies 2D");
+                  entry.addAttachment(data+"/FMT_canvas1.png", "FMT Time of Max");
+                  entry.addAttachment(data+"/FMT_canvas2.png", "FMT occupancies 1D");
+                  entry.addAttachment(data+"/FMT_canvas3.png", "FMT Mulriplicity");
+                  System.out.println("FMT plots uploaded");
+                  entry.addAttachment(data+"/FTCAL_canvas0.png", "FTCAL");
+                  System.out.println("FTCAL plot uploaded");
+                  entry.addAttachment(data+"/FTHODO_canvas0.png", "FTHODO FADC occupancies");
+                  entry.addAttachment(data+"/FTHODO_canvas1.png", "FTHODO FADC spectra");
+                  System.out.println("FTHODO plots uploaded");
+                  entry.addAttachment(data+"/FTOF_canvas0.png", "FTOF ADC occupancies");
+                  entry.addAttachment(data+"/FTOF_canvas1.png", "FTOF TDC occupancies");
+                  entry.addAttachment(data+"/FTOF_canvas2.png", "FTOF ADC histograms");
+                  entry.addAttachment(data+"/FTOF_canvas3.png", "FTOF TDC histograms");
+                  entry.addAttachment(data+"/FTOF_canvas4.png", "FTOF GMEAN");
+                  System.out.println("FTOF plots uploaded");
+                  entry.addAttachment(data+"/FTTRK_canvas0.png", "FTTRK occupancies 2D");
+                  entry.addAttachment(data+"/FTTRK_canvas1.png", "FTTRK occupancies 1D");
+                  entry.addAttachment(data+"/FTTRK_canvas2.png", "FTTRK average time maximum");
+                  entry.addAttachment(data+"/FTTRK_canvas3.png", "FTTRK ADC and time spectra");
+                  System.out.println("FTTRK plots uploaded");
+                  entry.addAttachment(data+"/HEL_canvas0.png", "Helicity");
+                  System.out.println("Helicity plot uploaded");
+                  entry.addAttachment(data+"/HTCC_canvas0.png", "HTCC occupancies");
+                  entry.addAttachment(data+"/HTCC_canvas1.png", "HTCC ADC spectra");
+                  entry.addAttachment(data+"/HTCC_canvas2.png", "HTCC timing spectra");
+                  System.out.println("HTCC plots uploaded");
+                  entry.addAttachment(data+"/LTCC_canvas0.png", "LTCC occupancies");
+                  entry.addAttachment(data+"/LTCC_canvas1.png", "LTCC occupancies normalized");
+                  System.out.println("LTTC plots uploaded");
+                  entry.addAttachment(data+"/RECON_canvas0.png", "RECON CVT cosmic");
+                  entry.addAttachment(data+"/RECON_canvas1.png", "RECON CVT positive tracks");
+                  entry.addAttachment(data+"/RECON_canvas2.png", "RECON CVT negative tracks");
+                  entry.addAttachment(data+"/RECON_canvas3.png", "RECON DC tracks per event");
+                  entry.addAttachment(data+"/RECON_canvas4.png", "RECON DC hits per track");
+                  entry.addAttachment(data+"/RECON_canvas5.png", "RECON DC momentum");
+                  entry.addAttachment(data+"/RECON_canvas6.png", "RECON DC theta angle");
+                  System.out.println("RECON plots uploaded");
+                  entry.addAttachment(data+"/RF_canvas0.png", "RF canvas 1");
+                  entry.addAttachment(data+"/RF_canvas1.png", "RF canvas 2");
+                  System.out.println("RF plots uploaded");
+                  entry.addAttachment(data+"/RICH_canvas0.png", "RICH occupancy");
+                  System.out.println("RICH plot uploaded");
+                  entry.addAttachment(data+"/Trigger_canvas0.png", "Trigger bits");
+                  entry.addAttachment(data+"/Trigger_canvas1.png", "Trigger EC peak");
+                  entry.addAttachment(data+"/Trigger_canvas2.png", "Trigger EC cluster");
+                  entry.addAttachment(data+"/Trigger_canvas3.png", "Trigger HTCC cluster");
+                  entry.addAttachment(data+"/Trigger_canvas4.png", "Trigger FTOF cluster");
+                  System.out.println("Trigger plots uploaded");
 
-              long lognumber = entry.submitNow();
-              System.out.println("Successfully submitted log entry number: " + lognumber); 
-            } catch(Exception exc){}
+                  long lognumber = entry.submitNow();
+                  System.out.println("Successfully submitted log entry number: " + lognumber); 
+                } catch(Exception exc){}
+            });
               
         }
         
@@ -641,72 +794,60 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
                 if(result){ System.out.println("Created directory: " + data);}
             }
             
-            String fileName1 = data + "/summary_FD.png";
-            System.out.println(fileName1);
-            CLAS12Canvas.getCanvas("FD").save(fileName1);
-            String fileName2 = data + "/summary_CD.png";
-            System.out.println(fileName2);
-            CLAS12Canvas.getCanvas("CD").save(fileName2);
-            String fileName3 = data + "/summary_FT.png";
-            System.out.println(fileName3);
-            CLAS12Canvas.getCanvas("FT").save(fileName3);
-            
-            for(int k=0; k<this.monitors.length; k++) {
-                this.monitors[k].printCanvas(data);
-            }
+            this.exportCanvases(data, () -> {
+                LogEntry entry = new LogEntry("Occupancy online monitoring histograms for run number " + this.runNumber, "TLOG");     // change to HBLOG
             
-            LogEntry entry = new LogEntry("Occupancy online monitoring histograms for run number " + this.runNumber, "TLOG");     // change to HBLOG
+                System.out.println("Starting to upload the occupancy plots");
             
-            System.out.println("Starting to upload the occupancy plots");
+                try{
+                  entry.addAttachment(data+"/summary_FD.png", "Summary plots for the forward detector");
+                  entry.addAttachment(data+"/summary_CD.png", "Summary plots for the central detector");
+                  entry.addAttachment(data+"/summary_FT.png", "Summary plots for the forward tagger");
+                  System.out.println("Summary plots uploaded");
+                  entry.addAttachment(data+"/BMT_canvas0.png", "BMT occupancies");
+                  entry.addAttachment(data+"/BMT_canvas1.png", "BMT occupancies c");
+                  entry.addAttachment(data+"/BMT_canvas2.png", "BMT occupancies z");
+                  System.out.println("BMT plots uploaded");
+                  entry.addAttachment(data+"/BST_canvas0.png", "BST occupancies 2D");
+                  entry.addAttachment(data+"/BST_canvas1.png", "BST occupancies 1D"); 
+                  System.out.println("BST plots uploaded");
+                  entry.addAttachment(data+"/CND_canvas0.png", "CND ADC occupancies");
+                  entry.addAttachment(data+"/CND_canvas1.png", "CND TDC occupancies");
+                  System.out.println("CND plots uploaded");
+                  entry.addAttachment(data+"/CTOF_canvas0.png", "CTOF ADC occupancies");
+                  entry.addAttachment(data+"/CTOF_canvas1.png", "CTOF TDC occupancies");
+                  System.out.println("CTOF plots uploaded");
+                  entry.addAttachment(data+"/DC_canvas0.png", "DC occupancies raw");
+                  entry.addAttachment(data+"/DC_canvas1.png", "DC occupancies normalized");
+                  System.out.println("DC plots uploaded");
+                  entry.addAttachment(data+"/ECAL_canvas0.png", "ECAL ADC occupancies");
+                  entry.addAttachment(data+"/ECAL_canvas1.png", "ECAL TDC occupancies");
+                  System.out.println("ECAL plots uploaded");
+                  entry.addAttachment(data+"/FMT_canvas0.png", "FMT occupancies 2D");
+                  entry.addAttachment(data+"/FMT_canvas2.png", "FMT occupancies 1D");
+                  System.out.println("FMT plots uploaded");
+                  entry.addAttachment(data+"/FTCAL_canvas0.png", "FTCAL");
+                  System.out.println("FTCAL plot uploaded");
+                  entry.addAttachment(data+"/FTHODO_canvas0.png", "FTHODO FADC occupancies");
+                  System.out.println("FTHODO plot uploaded");
+                  entry.addAttachment(data+"/FTOF_canvas0.png", "FTOF ADC occupancies");
+                  entry.addAttachment(data+"/FTOF_canvas1.png", "FTOF TDC occupancies");
+                  System.out.println("FTOF plots uploaded");
+                  entry.addAttachment(data+"/FTTRK_canvas0.png", "FTTRK occupancies 2D");
+                  entry.addAttachment(data+"/FTTRK_canvas1.png", "FTTRK occupancies 1D");
+                  System.out.println("FTTRK plots uploaded");
+                  entry.addAttachment(data+"/HTCC_canvas0.png", "HTCC occupancies");
+                  System.out.println("HTCC plot uploaded");
+                  entry.addAttachment(data+"/LTCC_canvas0.png", "LTCC occupancies");
+                  entry.addAttachment(data+"/LTCC_canvas1.png", "LTCC occupancies normalized");
+                  System.out.println("LTCC plots uploaded");
+                  entry.addAttachment(data+"/RICH_canvas0.png", "RICH occupancy");
+                  System.out.println("RICH plot uploaded");
             
-            try{
-              entry.addAttachment(data+"/summary_FD.png", "Summary plots for the forward detector");
-              entry.addAttachment(data+"/summary_CD.png", "Summary plots for the central detector");
-              entry.addAttachment(data+"/summary_FT.png", "Summary plots for the forward tagger");
-              System.out.println("Summary plots uploaded");
-              entry.addAttachment(data+"/BMT_canvas0.png", "BMT occupancies");
-              entry.addAttachment(data+"/BMT_canvas1.png", "BMT occupancies c");
-              entry.addAttachment(data+"/BMT_canvas2.png", "BMT occupancies z");
-              System.out.println("BMT plots uploaded");
-              entry.addAttachment(data+"/BST_canvas0.png", "BST occupancies 2D");
-              entry.addAttachment(data+"/BST_canvas1.png", "BST occupancies 1D"); 
-              System.out.println("BST plots uploaded");
-              entry.addAttachment(data+"/CND_canvas0.png", "CND ADC occupancies");
-              entry.addAttachment(data+"/CND_canvas1.png", "CND TDC occupancies");
-              System.out.println("CND plots uploaded");
-              entry.addAttachment(data+"/CTOF_canvas0.png", "CTOF ADC occupancies");
-              entry.addAttachment(data+"/CTOF_canvas1.png", "CTOF TDC occupancies");
-              System.out.println("CTOF plots uploaded");
-              entry.addAttachment(data+"/DC_canvas0.png", "DC occupancies raw");
-              entry.addAttachment(data+"/DC_canvas1.png", "DC occupancies normalized");
-              System.out.println("DC plots uploaded");
-              entry.addAttachment(data+"/ECAL_canvas0.png", "ECAL ADC occupancies");
-              entry.addAttachment(data+"/ECAL_canvas1.png", "ECAL TDC occupancies");
-              System.out.println("ECAL plots uploaded");
-              entry.addAttachment(data+"/FMT_canvas0.png", "FMT occupancies 2D");
-              entry.addAttachment(data+"/FMT_canvas2.png", "FMT occupancies 1D");
-              System.out.println("FMT plots uploaded");
-              entry.addAttachment(data+"/FTCAL_canvas0.png", "FTCAL");
-              System.out.println("FTCAL plot uploaded");
-              entry.addAttachment(data+"/FTHODO_canvas0.png", "FTHODO FADC occupancies");
-              System.out.println("FTHODO plot uploaded");
-              entry.addAttachment(data+"/FTOF_canvas0.png", "FTOF ADC occupancies");
-              entry.addAttachment(data+"/FTOF_canvas1.png", "FTOF TDC occupancies");
-              System.out.println("FTOF plots uploaded");
-              entry.addAttachment(data+"/FTTRK_canvas0.png", "FTTRK occupancies 2D");
-              entry.addAttachment(data+"/FTTRK_canvas1.png", "FTTRK occupancies 1D");
-              System.out.println("FTTRK plots uploaded");
-              entry.addAttachment(data+"/HTCC_canvas0.png", "HTCC occupancies");
-              System.out.println("HTCC plot uploaded");
-              entry.addAttachment(data+"/LTCC_canvas0.png", "LTCC occupancies");
-              entry.addAttachment(data+"/LTCC_canvas1.png", "LTCC occupancies normalized");
-              System.out.println("LTCC plots uploaded");
-              entry.addAttachment(data+"/RICH_canvas0.png", "RICH occupancy");
-              System.out.println("RICH plot uploaded");
-            
-              long lognumber = entry.submitNow();
-              System.out.println("Successfully submitted log entry number: " + lognumber); 
-            } catch(Exception exc){}
+                  long lognumber = entry.submitNow();
+                  System.out.println("Successfully submitted log entry number: " + lognumber); 
+                } catch(Exception exc){}
+            });
         }
          
          
@@ -754,6 +895,125 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         }
     }
         
+    public void chooseBufferPolicy() {
+        EventRingBuffer.Policy policy = (EventRingBuffer.Policy) JOptionPane.showInputDialog(
+                    null,
+                    "Policy when the event buffer is full",
+                    " ",
+                    JOptionPane.PLAIN_MESSAGE,
+                    null,
+                    EventRingBuffer.Policy.values(),
+                    this.eventBuffer.getPolicy());
+        if(policy==null) return;
+        int rate = this.eventBuffer.getSampleRate();
+        if(policy==EventRingBuffer.Policy.SAMPLE) {
+            String s = (String)JOptionPane.showInputDialog(null, "Keep one event every", " ", JOptionPane.PLAIN_MESSAGE, null, null, String.valueOf(rate));
+            if(s==null) return;
+            try { 
+                rate = Integer.parseInt(s);
+            } catch(NumberFormatException e) { 
+                rate = 0;
+            }
+            if(rate<=0) {
+                JOptionPane.showMessageDialog(null, "Value must be a positive integer!");
+                return;
+            }
+        }
+        this.eventBuffer.setPolicy(policy, rate);
+        this.updateDispatchStatus();
+    }
+    
+    private DetectorMonitor chooseMonitor() {
+        String[] names = new String[this.monitors.length];
+        for(int k=0; k<this.monitors.length; k++) names[k] = this.monitors[k].getDetectorName();
+        String name = (String) JOptionPane.showInputDialog(null, "Monitor", " ", JOptionPane.PLAIN_MESSAGE, null, names, names[0]);
+        for(int k=0; k<this.monitors.length; k++) {
+            if(names[k].equals(name)) return this.monitors[k];
+        }
+        return null;
+    }
+    
+    public void chooseHistogramWindow() {
+        DetectorMonitor monitor = this.chooseMonitor();
+        if(monitor==null) return;
+        String name = monitor.getDetectorName();
+        HistogramWindow window = monitor.getHistogramWindow();
+        String s = (String) JOptionPane.showInputDialog(null, "Show the last (number of events, 0 to accumulate)", " ", JOptionPane.PLAIN_MESSAGE, null, null,
+                                                        window==null ? "100000" : String.valueOf(window.getEvents()));
+        if(s==null) return;
+        int events = -1;
+        try { 
+            events = Integer.parseInt(s);
+        } catch(NumberFormatException e) { 
+            events = -1;
+        }
+        if(events<0) {
+            JOptionPane.showMessageDialog(null, "Value must be a positive integer!");
+            return;
+        }
+        this.drainEvents();
+        monitor.setHistogramWindow(events, HistogramWindow.DEFAULT_SLICES);
+        System.out.println(name + (events>0 ? ": showing the last " + monitor.getHistogramWindow().getEvents() + " events" : ": accumulating"));
+    }
+    
+    /**
+     * Waits until the events read so far have gone through the event buffer,
+     * the decoders and the monitors. Called while the sequencer is handling
+     * an event, e.g. on a run change, only the monitors are waited for: the
+     * events before it have all been dispatched and the ones after it must
+     * not be processed yet.
+     */
+    private void drainEvents() {
+        if(this.decoderPool!=null && !this.decoderPool.isSequencerThread()) {
+            try {
+                if(!this.eventBuffer.awaitDrained(10, TimeUnit.SECONDS) || !this.decoderPool.flush(10, TimeUnit.SECONDS)) {
+                    System.out.println("Timed out waiting for the buffered events, going on without them");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.dispatcher.awaitIdle();
+    }
+    
+    public void chooseHistogramDecay() {
+        DetectorMonitor monitor = this.chooseMonitor();
+        if(monitor==null) return;
+        String name = monitor.getDetectorName();
+        boolean decaying = monitor.getDecayEvents()>0;
+        String s = (String) JOptionPane.showInputDialog(null, "Scale histograms every (number of events, 0 to accumulate)", " ", JOptionPane.PLAIN_MESSAGE, null, null,
+                                                        decaying ? String.valueOf(monitor.getDecayEvents()) : "10000");
+        if(s==null) return;
+        int events = -1;
+        try { 
+            events = Integer.parseInt(s);
+        } catch(NumberFormatException e) { 
+            events = -1;
+        }
+        if(events<0) {
+            JOptionPane.showMessageDialog(null, "Value must be a positive integer!");
+            return;
+        }
+        double factor = 1;
+        if(events>0) {
+            s = (String) JOptionPane.showInputDialog(null, "Scale factor", " ", JOptionPane.PLAIN_MESSAGE, null, null,
+                                                     decaying ? String.valueOf(monitor.getDecayFactor()) : "0.9");
+            if(s==null) return;
+            try { 
+                factor = Double.parseDouble(s);
+            } catch(NumberFormatException e) { 
+                factor = -1;
+            }
+            if(factor<=0 || factor>=1) {
+                JOptionPane.showMessageDialog(null, "Value must be between 0 and 1!");
+                return;
+            }
+        }
+        this.drainEvents();
+        monitor.setHistogramDecay(events, factor);
+        System.out.println(name + (events>0 ? ": scaling histograms by " + factor + " every " + events + " events" : ": accumulating"));
+    }
+        
     private JLabel getImage(String path,double scale) {
         JLabel label = null;
         Image image = null;
@@ -776,81 +1036,128 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         return mainPanel;
     }
     
-    public long getTriggerWord(DataEvent event) {    	
- 	    DataBank bank = event.getBank("RUN::config");	        
-        return bank.getLong("trigger", 0);
-    }
-    
-    public long getTriggerPhase(DataEvent event) {    	
- 	    DataBank bank = event.getBank("RUN::config");	        
-        long timestamp = bank.getLong("timestamp",0);    
-        int phase_offset = 1;
-        return ((timestamp%6)+phase_offset)%6; // TI derived phase correction due to TDC and FADC clock differences 
-    }
-    
-    private int getRunNumber(DataEvent event) {
-        int rNum = this.runNumber;
-        DataBank bank = event.getBank("RUN::config");
-        if(bank!=null) {
-            rNum      = bank.getInt("run", 0);
-        }
-        return rNum;
-    }
-    
     @Override
     public void dataEventAction(DataEvent event) {
+        if(event==null) return;
+        this.dispatcher.eventOffered();
+        this.eventBuffer.publish(event);
+    }
+    
+    private void processDataEvent(DataEvent event, boolean decoded) {
     	
-       // EvioDataEvent decodedEvent = deco.DecodeEvent(event, decoder, table);
-        //decodedEvent.show();
-        		
-        HipoDataEvent hipo = null;
+        HipoDataEvent hipo = (HipoDataEvent) event;
         
-	    if(event!=null ){
+	    if(hipo!=null ){
             //event.show();
 //
 //            if (event.getType() == DataEventType.EVENT_START) {
 //                this.runNumber = this.getRunNumber(event);
 //                System.out.println("RunNumber: "+this.runNumber);
 //            }
-//            
-//            if(this.runNumber != this.getRunNumber(event)) {
-////                this.saveToFile("mon12_histo_run_" + runNumber + ".hipo");
-//                this.runNumber = this.getRunNumber(event);
-//                System.out.println("RunNumber: "+this.runNumber);
-//                resetEventListener();
-//            }
             
-            if(event instanceof EvioDataEvent){
-             	hipo = (HipoDataEvent) clasDecoder.getDataEvent(event);
-//                DataBank   header = clasDecoder.createHeaderBank(hipo, 0, 0, (float) 0, (float) 0);
-             	DataBank   header = clasDecoder.createHeaderBank(hipo, this.ccdbRunNumber, 0, (float) 0, (float) 0);
-             	DataBank  trigger = clasDecoder.createTriggerBank(hipo);
-             	hipo.appendBanks(header);
-             	hipo.appendBank(trigger);
-             	if(this.runNumber != this.getRunNumber(hipo)) {
-//                this.saveToFile("mon12_histo_run_" + runNumber + ".hipo");
-             	this.runNumber = this.getRunNumber(hipo);
+            EventContext context = EventContext.fromEvent(hipo);
+            int run = context.hasConfig() ? context.getRun() : this.runNumber;
+            
+            // events arrive here in input order, even when decoded out of order
+            if(decoded && this.runNumber != run) {
+                if(this.saveOnRunChange && this.hasEvents()) this.saveHistosToFile("mon12_histo_run_" + runNumber + ".hipo");
+             	this.runNumber = run;
              	System.out.println("Setting run number to: " +this.runNumber);
              	resetEventListener();
-             	this.clas12Textinfo.setText("\nrun number: "+this.runNumber + "\nmode:" + "\nfile:" + "\n");
+             	this.setRunInfo();
+                this.checkpointer.setRun(run);
 //                    this.clas12Textinfo.updateUI();
-                }
-            } 
-            else {
-                hipo = (HipoDataEvent) event;    
+            }
+            if(decoded && !this.checkpointOffered) {
+                this.checkpointOffered = true;
+                this.offerCheckpoint(run);
+                this.checkpointer.setRun(run);
             }
             
-            for(int k=0; k<this.monitors.length; k++) {
-        	    this.monitors[k].setTriggerPhase(getTriggerPhase(hipo));
-        	    this.monitors[k].setTriggerWord(getTriggerWord(hipo));        	    
-                this.monitors[k].dataEventAction(hipo);
-            }      
+            // live events replace the histograms of an opened archive
+            if(this.archive!=null) this.closeArchive();
+            this.dispatcher.dispatch(hipo, context);
 	    }
     }
 
+    /**
+     * Asks whether to restore the checkpoint left for this run by a previous
+     * session, before it is overwritten by the first checkpoint.
+     */
+    private void offerCheckpoint(final int run) {
+        if(!this.checkpointer.getFile(run).exists()) return;
+        final int[] answer = {JOptionPane.NO_OPTION};
+        Runnable question = new Runnable() {
+            public void run() {
+                answer[0] = JOptionPane.showConfirmDialog(null, "Restore the histograms checkpointed for run " + run + " ?", "Checkpoint", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+            }
+        };
+        if(SwingUtilities.isEventDispatchThread()) {
+            question.run();
+        }
+        else {
+            try {
+                SwingUtilities.invokeAndWait(question);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        if(answer[0] == JOptionPane.YES_OPTION) this.restoreCheckpoint(run);
+    }
+
+    /**
+     * Compares the histograms with those of a TDirectory file or an archive
+     * from now on, in the Reference tab and drawn over the histograms; on
+     * the event dispatch thread.
+     */
+    public void loadReference(String fileName) {
+        ReferenceComparator previous = this.comparator;
+        try {
+            ReferenceComparator comparator = ReferenceComparator.load(fileName);
+            comparator.bind(this.monitors);
+            this.comparator = comparator;
+        } catch (IOException e) {
+            System.out.println("Could not read reference " + fileName + ": " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+        if(previous!=null) previous.clearOverlays();
+        this.publisher.publish();
+    }
+
+    private void restoreCheckpoint(int run) {
+        File file = this.checkpointer.getFile(run);
+        if(!file.exists()) {
+            System.out.println("No checkpoint for run " + run + " in " + file.getParent());
+            return;
+        }
+        this.drainEvents();
+        try {
+            int restored = Checkpointer.restore(file, this.monitors);
+            System.out.println("Restored " + restored + " monitors from " + file);
+        } catch (IOException e) {
+            System.out.println("Could not restore " + file + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        this.publisher.publish();
+        if(SwingUtilities.isEventDispatchThread()) {
+            this.plotSummaries();
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                plotSummaries();
+            }
+        });
+    }
+
     public void loadHistosFromFile(String fileName) {
         // TXT table summary FILE //
         System.out.println("Opening file: " + fileName);
+        if(HistogramArchive.isArchive(fileName)) {
+            this.openArchive(fileName);
+            return;
+        }
         TDirectory dir = new TDirectory();
         dir.readFile(fileName);
         System.out.println(dir.getDirectoryList());
@@ -860,9 +1167,68 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
         for(int k=0; k<this.monitors.length; k++) {
             this.monitors[k].readDataGroup(dir);
         }
+        this.publisher.publish();
         this.plotSummaries();
     }
 
+    /**
+     * Opens a histogram archive reading only the summaries; the histograms of
+     * each monitor are read when its tab is first selected, or before saving.
+     */
+    private void openArchive(String fileName) {
+        this.closeArchive();
+        long start = System.currentTimeMillis();
+        this.drainEvents();
+        try {
+            this.archive = HistogramArchive.open(fileName);
+            for(int k=0; k<this.monitors.length; k++) {
+                this.archived[k] = this.archive.contains(this.monitors[k].getDetectorName());
+                this.archive.restoreSummary(this.monitors[k]);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not open " + fileName + ": " + e.getMessage());
+            e.printStackTrace();
+            this.closeArchive();
+            return;
+        }
+        this.plotSummaries();
+        this.readArchivedMonitor(this.tabbedpane.getSelectedComponent());
+        this.publisher.publish();
+        System.out.println("Opened " + fileName + " in " + (System.currentTimeMillis()-start) + " ms");
+    }
+
+    /**
+     * Reads the archived histograms of the monitor shown in the given tab, or
+     * of all monitors if it is null.
+     */
+    private void readArchivedMonitor(Component tab) {
+        // called from the saver thread too
+        synchronized(this.archived) {
+            HistogramArchive archive = this.archive;
+            if(archive==null) return;
+            for(int k=0; k<this.monitors.length; k++) {
+                if(!this.archived[k]) continue;
+                if(tab!=null && tab!=this.monitors[k].getDetectorPanel()) continue;
+                this.archived[k] = false;
+                try {
+                    archive.restore(this.monitors[k]);
+                } catch (IOException e) {
+                    System.out.println("Could not read " + this.monitors[k].getDetectorName() + " from " + archive.getFileName() + ": " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void closeArchive() {
+        synchronized(this.archived) {
+            HistogramArchive archive = this.archive;
+            this.archive = null;
+            Arrays.fill(this.archived, false);
+            if(archive!=null) archive.close();
+        }
+    }
+
     public void plotSummaries() {
         
         /////////////////////////////////////////////////
@@ -960,21 +1326,22 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
             }
         }
         
-        String fileName1 = data + "/summary_FD.png";
-        System.out.println(fileName1);
-        CLAS12Canvas.getCanvas("FD").save(fileName1);
-        String fileName2 = data + "/summary_CD.png";
-        System.out.println(fileName2);
-        CLAS12Canvas.getCanvas("CD").save(fileName2);
-        String fileName3 = data + "/summary_FT.png";
-        System.out.println(fileName3);
-        CLAS12Canvas.getCanvas("FT").save(fileName3);
-        
+        this.exportCanvases(data, () -> System.out.println("Histogram pngs succesfully saved in: " + data));
+    }
+
+    /**
+     * Writes the summary and detector canvases to png files in the directory
+     * in the background, then runs whenDone off the event dispatch thread.
+     */
+    private void exportCanvases(String data, Runnable whenDone) {
+        Map<String,EmbeddedCanvas> canvases = new LinkedHashMap<String,EmbeddedCanvas>();
+        canvases.put(data + "/summary_FD.png", CLAS12Canvas.getCanvas("FD"));
+        canvases.put(data + "/summary_CD.png", CLAS12Canvas.getCanvas("CD"));
+        canvases.put(data + "/summary_FT.png", CLAS12Canvas.getCanvas("FT"));
         for(int k=0; k<this.monitors.length; k++) {
-            this.monitors[k].printCanvas(data);
+            canvases.putAll(this.monitors[k].getCanvases(data));
         }
-        
-        System.out.println("Histogram pngs succesfully saved in: " + data);
+        this.canvasExporter.export(canvases, whenDone);
     }
        
     public void createHistoPDF() {
@@ -1014,21 +1381,55 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
     
     @Override
     public void resetEventListener() {
+        this.drainEvents();
         for(int k=0; k<this.monitors.length; k++) {
             this.monitors[k].resetEventListener();
-            this.monitors[k].timerUpdate();
         }      
-        this.plotSummaries();
+        this.publisher.publish();
+        if(SwingUtilities.isEventDispatchThread()) {
+            this.plotSummaries();
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                plotSummaries();
+            }
+        });
     }
     
-    public void saveHistosToFile(String fileName) {
-        // TXT table summary FILE //
-        TDirectory dir = new TDirectory();
+    /**
+     * Copies the histograms once the events read so far are processed, with
+     * dispatch held off so that all monitors are copied at the same event,
+     * and writes them in the background, the progress being shown in the
+     * status bar. From the menu both the wait and the copy run on the saver
+     * thread; on a run change they run on the sequencer thread, before the
+     * histograms are reset.
+     */
+    public void saveHistosToFile(final String fileName) {
+        Runnable snapshot = new Runnable() {
+            public void run() {
+                drainEvents();
+                if(archive!=null) readArchivedMonitor(null);
+                dispatcher.runIdle(new Runnable() {
+                    public void run() {
+                        histogramSaver.save(monitors, fileName);
+                    }
+                });
+            }
+        };
+        if(this.decoderPool!=null && this.decoderPool.isSequencerThread()) {
+            snapshot.run();
+        }
+        else {
+            this.histogramSaver.submit(snapshot);
+        }
+    }
+
+    private boolean hasEvents() {
         for(int k=0; k<this.monitors.length; k++) {
-            this.monitors[k].writeDataGroup(dir);
+            if(this.monitors[k].getNumberOfEvents()>0) return true;
         }
-        System.out.println("Saving histograms to file " + fileName);
-        dir.writeFile(fileName);
+        return false;
     }
         
     public void setCanvasUpdate(int time) {
@@ -1046,16 +1447,53 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
     }
 
     public void stateChanged(ChangeEvent e) {
+        if(this.archive!=null) this.readArchivedMonitor(this.tabbedpane.getSelectedComponent());
         this.timerUpdate();
     }
     
     @Override
     public void timerUpdate() {
 //        System.out.println("Time to update ...");
-        for(int k=0; k<this.monitors.length; k++) {
-            this.monitors[k].timerUpdate();
-        }
+        this.publisher.publish();
+        this.updateDispatchStatus();
+        if(MonitorStatistics.isEnabled()) this.performance.update(this.monitors);
    }
+    
+    public void updateDispatchStatus() {
+        final int  fill    = this.eventBuffer.getFillLevel();
+        final long dropped = this.eventBuffer.getDropCount();
+        final long calls   = this.dispatcher.getInvocationCount();
+        final long skipped = this.dispatcher.getSkippedCount();
+        final long prescaled = this.dispatcher.getPrescaledCount();
+        final EventSkimWriter skim = DetectorMonitor.getSkimWriter();
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                for(int k=0; k<monitors.length; k++) {
+                    int index = tabbedpane.indexOfComponent(monitors[k].getDetectorPanel());
+                    if(index<0) continue;
+                    String title = monitors[k].getDetectorName();
+                    if(dispatcher.isParallel()) title += " (" + dispatcher.getQueueDepth(k) + ")";
+                    if(monitors[k].getPrescale()>1) title += " [1/" + monitors[k].getPrescale() + "]";
+                    tabbedpane.setTitleAt(index, title);
+                }
+                dispatchStatus.setText(" Event buffer: " + fill + "/" + eventBuffer.getCapacity() 
+                                     + " (" + 100*fill/eventBuffer.getCapacity() + "%), policy " + eventBuffer.getPolicy() 
+                                     + (eventBuffer.getPolicy()==EventRingBuffer.Policy.SAMPLE ? " (1/" + eventBuffer.getSampleRate() + ")" : "")
+                                     + ", " + dropped + " events dropped"
+                                     + ", " + skipped + "/" + calls + " monitor calls skipped (no subscribed bank)"
+                                     + (prescaled>0 ? ", " + prescaled + " prescaled" : "")
+                                     + (skim!=null ? ", " + skim.getWrittenCount() + " flagged events written (" + skim.getDroppedCount() + " dropped)" : ""));
+            }
+        });
+    }
+    
+    private void setRunInfo() {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                clas12Textinfo.setText("\nrun number: "+runNumber + "\nmode:" + "\nfile:" + "\n");
+            }
+        });
+    }
 
     public static void main(String[] args){
         JFrame frame = new JFrame("CLAS12Mon");
@@ -1083,7 +1521,7 @@ public class EventViewer implements IDataEventListener, DetectorListener, Action
             }
             if (cur_runNumber > 0){ 
                 this.ccdbRunNumber = cur_runNumber;
-                clasDecoder.setRunNumber(cur_runNumber,true);
+                decoderPool.setRunNumber(cur_runNumber);
             }
     		else {JOptionPane.showMessageDialog(null, "Value must be a positive integer!");}   
     	}    
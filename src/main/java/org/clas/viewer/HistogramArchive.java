@@ -0,0 +1,345 @@
+package org.clas.viewer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.data.TDirectory;
+import org.jlab.groot.group.DataGroup;
+
+/**
+ * Histogram file with an index, read lazily. The data sets of each monitor
+ * are written in the compact form of DataSetCodec into blocks of at most
+ * BLOCK_SIZE bytes, each compressed with zstd, followed by the dictionary of
+ * names and titles, an index giving the block, offset and length of each
+ * data set by monitor, and a trailer pointing to the index. Opening a file
+ * only reads the index; a data set is read when it is asked for, by
+ * decompressing its block, so the viewer reads the summaries when the file is
+ * opened and the histograms of a monitor when its tab is first shown.
+ *
+ * Files of the first version, uncompressed with one record per data set, can
+ * still be read. main() converts between archives and TDirectory files.
+ */
+public class HistogramArchive {
+
+    public static final String EXTENSION = ".mon12";
+
+    private static final int MAGIC      = 0x4d313241;
+    private static final int VERSION    = 2;
+    private static final int BLOCK_SIZE = 1<<20;
+
+    private final String                          fileName;
+    private final RandomAccessFile                file;
+    private final FileChannel                     channel;
+    private final int                             version;
+    private final DataSetCodec.Dictionary         dictionary;
+    private final long[][]                        blocks;
+    private final Map<String,Map<String,long[]>>  index;
+    private int                                   cachedBlock = -1;
+    private byte[]                                cachedBytes = null;
+
+    private HistogramArchive(String fileName, RandomAccessFile file, int version, DataSetCodec.Dictionary dictionary,
+                             long[][] blocks, Map<String,Map<String,long[]>> index) {
+        this.fileName   = fileName;
+        this.file       = file;
+        this.channel    = file.getChannel();
+        this.version    = version;
+        this.dictionary = dictionary;
+        this.blocks     = blocks;
+        this.index      = index;
+    }
+
+    public static boolean isArchive(String fileName) {
+        return fileName.endsWith(EXTENSION);
+    }
+
+    /**
+     * Writes the data sets of each monitor, by monitor name.
+     */
+    public static void write(Map<String,List<IDataSet>> detectors, String fileName) throws IOException {
+        DataSetCodec.Dictionary        dictionary = new DataSetCodec.Dictionary();
+        List<long[]>                   blocks     = new ArrayList<long[]>();
+        Map<String,Map<String,long[]>> index      = new LinkedHashMap<String,Map<String,long[]>>();
+        ZstdCompressor compressor = new ZstdCompressor();
+        long raw = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1<<16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long offset = 8;
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            DataOutputStream      data  = new DataOutputStream(block);
+            for(Map.Entry<String,List<IDataSet>> detector : detectors.entrySet()) {
+                Map<String,long[]> entries = new LinkedHashMap<String,long[]>();
+                for(IDataSet ds : detector.getValue()) {
+                    if(entries.containsKey(ds.getName())) continue;
+                    int start = block.size();
+                    DataSetCodec.writeCompact(data, ds, dictionary);
+                    entries.put(ds.getName(), new long[]{blocks.size(), start, block.size()-start});
+                    if(block.size()>=BLOCK_SIZE) offset = flush(out, block, blocks, offset, compressor);
+                }
+                // monitors start a new block so that a tab only decompresses its own
+                if(block.size()>0) offset = flush(out, block, blocks, offset, compressor);
+                index.put(detector.getKey(), entries);
+            }
+            for(long[] entry : blocks) raw += entry[2];
+            long indexOffset = offset;
+            dictionary.write(out);
+            out.writeInt(blocks.size());
+            for(long[] entry : blocks) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+            out.writeInt(index.size());
+            for(Map.Entry<String,Map<String,long[]>> detector : index.entrySet()) {
+                out.writeUTF(detector.getKey());
+                out.writeInt(detector.getValue().size());
+                for(Map.Entry<String,long[]> entry : detector.getValue().entrySet()) {
+                    DataSetCodec.writeVarLong(out, dictionary.id(entry.getKey()));
+                    DataSetCodec.writeVarLong(out, entry.getValue()[0]);
+                    DataSetCodec.writeVarLong(out, entry.getValue()[1]);
+                    DataSetCodec.writeVarLong(out, entry.getValue()[2]);
+                }
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            System.out.println(String.format("Archived %d monitors in %d blocks, %.2f MB compressed to %.2f MB",
+                               index.size(), blocks.size(), raw/1024./1024., out.size()/1024./1024.));
+        }
+    }
+
+    private static long flush(DataOutputStream out, ByteArrayOutputStream block, List<long[]> blocks, long offset, ZstdCompressor compressor) throws IOException {
+        byte[] raw        = block.toByteArray();
+        byte[] compressed = new byte[compressor.maxCompressedLength(raw.length)];
+        int    length     = compressor.compress(raw, 0, raw.length, compressed, 0, compressed.length);
+        out.write(compressed, 0, length);
+        blocks.add(new long[]{offset, length, raw.length});
+        block.reset();
+        return offset + length;
+    }
+
+    /**
+     * Opens a file and reads its index.
+     */
+    public static HistogramArchive open(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            file.seek(0);
+            if(file.readInt()!=MAGIC) throw new IOException(fileName + " is not a histogram archive");
+            int version = file.readInt();
+            if(version<1 || version>VERSION) throw new IOException(fileName + " has unsupported version " + version);
+            file.seek(file.length()-12);
+            long indexOffset = file.readLong();
+            if(file.readInt()!=MAGIC) throw new IOException(fileName + " is truncated");
+            byte[] bytes = new byte[(int) (file.length()-12-indexOffset)];
+            file.seek(indexOffset);
+            file.readFully(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            DataSetCodec.Dictionary        dictionary = null;
+            long[][]                       blocks     = new long[0][];
+            Map<String,Map<String,long[]>> index      = new LinkedHashMap<String,Map<String,long[]>>();
+            if(version>1) {
+                dictionary = DataSetCodec.Dictionary.read(in);
+                blocks = new long[in.readInt()][];
+                for(int i=0; i<blocks.length; i++) blocks[i] = new long[]{in.readLong(), in.readInt(), in.readInt()};
+            }
+            int ndetectors = in.readInt();
+            for(int i=0; i<ndetectors; i++) {
+                String detector = in.readUTF();
+                int n = in.readInt();
+                Map<String,long[]> entries = new LinkedHashMap<String,long[]>();
+                for(int k=0; k<n; k++) {
+                    if(version>1) {
+                        String name = dictionary.get((int) DataSetCodec.readVarLong(in));
+                        entries.put(name, new long[]{DataSetCodec.readVarLong(in), DataSetCodec.readVarLong(in), DataSetCodec.readVarLong(in)});
+                    }
+                    else {
+                        String name = in.readUTF();
+                        entries.put(name, new long[]{in.readLong(), in.readInt()});
+                    }
+                }
+                index.put(detector, entries);
+            }
+            return new HistogramArchive(fileName, file, version, dictionary, blocks, index);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public Set<String> getDetectors() {
+        return this.index.keySet();
+    }
+
+    public boolean contains(String detector) {
+        return this.index.containsKey(detector);
+    }
+
+    /**
+     * Reads one data set, or returns null if the file does not have it.
+     */
+    public synchronized IDataSet get(String detector, String name) throws IOException {
+        Map<String,long[]> entries = this.index.get(detector);
+        long[] entry = entries==null ? null : entries.get(name);
+        if(entry==null) return null;
+        if(this.version==1) {
+            byte[] bytes = this.read(entry[0], (int) entry[1]);
+            return DataSetCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+        byte[] block = this.getBlock((int) entry[0]);
+        return DataSetCodec.readCompact(new DataInputStream(new ByteArrayInputStream(block, (int) entry[1], (int) entry[2])), this.dictionary);
+    }
+
+    /**
+     * Decompressed block, kept until another one is read since the data sets
+     * of a monitor are read in the order they were written.
+     */
+    private byte[] getBlock(int block) throws IOException {
+        if(block==this.cachedBlock) return this.cachedBytes;
+        long[] entry = this.blocks[block];
+        byte[] compressed = this.read(entry[0], (int) entry[1]);
+        byte[] raw        = new byte[(int) entry[2]];
+        new ZstdDecompressor().decompress(compressed, 0, compressed.length, raw, 0, raw.length);
+        this.cachedBlock = block;
+        this.cachedBytes = raw;
+        return raw;
+    }
+
+    private byte[] read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            int n = this.channel.read(buffer, position);
+            if(n<0) throw new IOException(this.fileName + " is truncated");
+            position += n;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Directory with the given data sets of a monitor, or with all of them
+     * if names is null, as readDataGroup expects it.
+     */
+    public TDirectory getDirectory(String detector, Collection<String> names) throws IOException {
+        TDirectory dir = new TDirectory();
+        dir.mkdir("/" + detector);
+        dir.cd("/" + detector);
+        Map<String,long[]> entries = this.index.get(detector);
+        if(entries==null) return dir;
+        for(String name : names==null ? entries.keySet() : names) {
+            IDataSet ds = this.get(detector, name);
+            if(ds!=null) dir.addDataSet(ds);
+        }
+        return dir;
+    }
+
+    /**
+     * Reads the summary histograms of the monitor.
+     */
+    public void restoreSummary(DetectorMonitor monitor) throws IOException {
+        DataGroup sum = monitor.getDetectorSummary();
+        if(sum==null || !this.contains(monitor.getDetectorName())) return;
+        List<String> names = new ArrayList<String>();
+        int nds = sum.getRows()*sum.getColumns();
+        for(int i=0; i<nds; i++) {
+            for(IDataSet ds : sum.getData(i)) names.add(ds.getName());
+        }
+        monitor.readDetectorSummary(this.getDirectory(monitor.getDetectorName(), names));
+    }
+
+    /**
+     * Reads all histograms of the monitor.
+     */
+    public void restore(DetectorMonitor monitor) throws IOException {
+        if(!this.contains(monitor.getDetectorName())) return;
+        monitor.readDataGroup(this.getDirectory(monitor.getDetectorName(), null));
+    }
+
+    public void close() {
+        try {
+            this.file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * All data sets of a TDirectory file, by top folder.
+     */
+    public static Map<String,List<IDataSet>> readDirectory(String fileName) {
+        TDirectory dir = new TDirectory();
+        dir.readFile(fileName);
+        Map<String,List<IDataSet>> detectors = new LinkedHashMap<String,List<IDataSet>>();
+        for(Object item : dir.getDirectoryList()) {
+            String path = item.toString();
+            int slash = path.lastIndexOf('/');
+            if(slash<=0 || slash==path.length()-1) continue;
+            String folder = path.startsWith("/") ? path.substring(1, slash+1) : path.substring(0, slash+1);
+            IDataSet ds = dir.getObject(folder, path.substring(slash+1));
+            if(ds==null) continue;
+            String detector = folder.substring(0, folder.length()-1);
+            if(!detectors.containsKey(detector)) detectors.put(detector, new ArrayList<IDataSet>());
+            detectors.get(detector).add(ds);
+        }
+        return detectors;
+    }
+
+    /**
+     * All data sets of the archive, by monitor.
+     */
+    public Map<String,List<IDataSet>> readAll() throws IOException {
+        Map<String,List<IDataSet>> detectors = new LinkedHashMap<String,List<IDataSet>>();
+        for(Map.Entry<String,Map<String,long[]>> detector : this.index.entrySet()) {
+            List<IDataSet> datasets = new ArrayList<IDataSet>();
+            for(String name : detector.getValue().keySet()) datasets.add(this.get(detector.getKey(), name));
+            detectors.put(detector.getKey(), datasets);
+        }
+        return detectors;
+    }
+
+    /**
+     * Converts a TDirectory file to an archive or back, according to the
+     * extension of the output file.
+     */
+    public static void main(String[] args) {
+        if(args.length!=2) {
+            System.out.println("Usage: HistogramArchive input output, one of the two ending in " + EXTENSION);
+            System.exit(1);
+        }
+        try {
+            Map<String,List<IDataSet>> detectors;
+            if(isArchive(args[0])) {
+                HistogramArchive archive = open(args[0]);
+                detectors = archive.readAll();
+                archive.close();
+            }
+            else {
+                detectors = readDirectory(args[0]);
+            }
+            HistogramSaver.write(detectors, args[1]);
+            System.out.println("Converted " + args[0] + " to " + args[1]);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.clas.viewer;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Typed handles on a set of histograms of a monitor indexed by [sector][layer],
+ * obtained with DetectorMonitor.registerHistograms. The histograms are looked
+ * up by name once, when the monitor binds its handles after createHistos or
+ * after reading a file, so filling them does not build strings or search the
+ * data groups.
+ */
+public class HistogramFamily<T extends IDataSet> {
+
+    public interface Naming {
+        String name(int sector, int layer);
+    }
+
+    private final Class<T> type;
+    private final Naming   naming;
+    private final T[][]    handles;
+
+    @SuppressWarnings("unchecked")
+    HistogramFamily(Class<T> type, int maxSector, int maxLayer, Naming naming) {
+        this.type    = type;
+        this.naming  = naming;
+        this.handles = (T[][]) Array.newInstance(type, maxSector+1, maxLayer+1);
+    }
+
+    public T get(int sector, int layer) {
+        return this.handles[sector][layer];
+    }
+
+    public T get() {
+        return this.handles[0][0];
+    }
+
+    void bind(Map<String,IDataSet> datasets) {
+        for(int sector=0; sector<this.handles.length; sector++) {
+            for(int layer=0; layer<this.handles[sector].length; layer++) {
+                IDataSet ds = datasets.get(this.naming.name(sector, layer));
+                this.handles[sector][layer] = this.type.isInstance(ds) ? this.type.cast(ds) : null;
+            }
+        }
+    }
+}
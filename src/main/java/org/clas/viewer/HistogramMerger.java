@@ -0,0 +1,188 @@
+package org.clas.viewer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.group.DataGroup;
+
+/**
+ * Adds the histograms of one monitor into another monitor of the same type.
+ * H1F and H2F are summed bin by bin, GraphErrors points are appended,
+ * profiles are added through their sums, time series at their position on
+ * the axis, and histograms registered with DetectorMonitor.registerAverage
+ * are combined as weighted means. Other data sets are left as in the target.
+ */
+public class HistogramMerger {
+
+    public static void merge(DetectorMonitor target, DetectorMonitor source) {
+        target.foldHistograms();
+        source.foldHistograms();
+        // averages first, their weights are still the unmerged ones
+        Map<String,String> averages = target.getAverages();
+        List<double[]> averaged = new ArrayList<double[]>();
+        for(Map.Entry<String,String> entry : averages.entrySet()) {
+            averaged.add(mergeAverage(target, source, entry.getKey(), entry.getValue()));
+        }
+
+        // profiles are added through their sums, not through the displayed means
+        Set<String> excluded = new HashSet<String>(averages.keySet());
+        Map<String,ProfileH1> profiles = new HashMap<String,ProfileH1>();
+        for(ProfileH1 profile : source.getProfiles()) profiles.put(profile.getName(), profile);
+        for(ProfileH1 profile : target.getProfiles()) {
+            excluded.add(profile.getName());
+            if(profiles.containsKey(profile.getName())) profile.add(profiles.get(profile.getName()));
+        }
+        // time series may have different bin widths and origins
+        Map<String,TimeSeriesH1> series = new HashMap<String,TimeSeriesH1>();
+        for(TimeSeriesH1 ts : source.getTimeSeries()) series.put(ts.getName(), ts);
+        for(TimeSeriesH1 ts : target.getTimeSeries()) {
+            excluded.add(ts.getName());
+            if(series.containsKey(ts.getName())) ts.add(series.get(ts.getName()));
+        }
+
+        Map<IDataSet,Boolean> done = new IdentityHashMap<IDataSet,Boolean>();
+        if(target.getDetectorSummary()!=null && source.getDetectorSummary()!=null) {
+            mergeGroup(target.getDetectorSummary(), source.getDetectorSummary(), excluded, done);
+        }
+        for(Map.Entry<Long, DataGroup> entry : target.getDataGroup().getMap().entrySet()) {
+            DataGroup other = source.getDataGroup().getMap().get(entry.getKey());
+            if(other!=null) mergeGroup(entry.getValue(), other, excluded, done);
+        }
+
+        int k = 0;
+        for(String name : averages.keySet()) {
+            double[] values = averaged.get(k++);
+            H1F h = (H1F) findDataSet(target, name);
+            if(values==null || h==null) continue;
+            for(int bin=0; bin<values.length; bin++) h.setBinContent(bin, values[bin]);
+        }
+        int processed = target.getNumberOfProcessedEvents() + source.getNumberOfProcessedEvents();
+        target.setNumberOfEvents(target.getNumberOfEvents() + source.getNumberOfEvents());
+        target.setNumberOfProcessedEvents(processed);
+        target.foldHistograms();
+    }
+
+    /**
+     * Merges every monitor set into the first one, pairwise in a tree so that
+     * merges of different sets and monitors run concurrently.
+     */
+    public static DetectorMonitor[] reduce(final List<DetectorMonitor[]> sets, int nThreads) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+        try {
+            for(int stride=1; stride<sets.size(); stride*=2) {
+                List<Future<?>> futures = new ArrayList<Future<?>>();
+                for(int i=0; i+stride<sets.size(); i+=2*stride) {
+                    final DetectorMonitor[] target = sets.get(i);
+                    final DetectorMonitor[] source = sets.get(i+stride);
+                    for(int m=0; m<target.length; m++) {
+                        final int index = m;
+                        futures.add(executor.submit(new Runnable() {
+                            public void run() {
+                                merge(target[index], source[index]);
+                            }
+                        }));
+                    }
+                }
+                for(Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } finally {
+            executor.shutdown();
+        }
+        return sets.get(0);
+    }
+
+    private static double[] mergeAverage(DetectorMonitor target, DetectorMonitor source, String name, String weightName) {
+        IDataSet a = findDataSet(target, name);
+        IDataSet b = findDataSet(source, name);
+        if(!(a instanceof H1F) || !(b instanceof H1F)) return null;
+        H1F ha = (H1F) a;
+        H1F hb = (H1F) b;
+        H1F wa = weightName==null ? null : (H1F) findDataSet(target, weightName);
+        H1F wb = weightName==null ? null : (H1F) findDataSet(source, weightName);
+        if(weightName!=null && (wa==null || wb==null)) {
+            System.out.println("Missing weight " + weightName + " for " + name + ", using the event count");
+        }
+        int nbins = ha.getxAxis().getNBins();
+        double[] values = new double[nbins];
+        for(int bin=0; bin<nbins; bin++) {
+            double na = wa!=null && wb!=null ? wa.getBinContent(bin) : target.getNumberOfProcessedEvents();
+            double nb = wa!=null && wb!=null ? wb.getBinContent(bin) : source.getNumberOfProcessedEvents();
+            values[bin] = na+nb>0 ? (ha.getBinContent(bin)*na + hb.getBinContent(bin)*nb)/(na+nb) : 0;
+        }
+        return values;
+    }
+
+    private static void mergeGroup(DataGroup target, DataGroup source, Set<String> excluded, Map<IDataSet,Boolean> done) {
+        int nds = target.getRows()*target.getColumns();
+        for(int i=0; i<nds; i++) {
+            List<IDataSet> sources = source.getData(i);
+            for(IDataSet ds : target.getData(i)) {
+                if(done.containsKey(ds) || excluded.contains(ds.getName())) continue;
+                done.put(ds, true);
+                for(IDataSet other : sources) {
+                    if(other.getName().equals(ds.getName())) {
+                        add(ds, other);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void add(IDataSet target, IDataSet source) {
+        if(target instanceof H1F && source instanceof H1F) {
+            H1F a = (H1F) target;
+            H1F b = (H1F) source;
+            for(int bin=0; bin<a.getxAxis().getNBins(); bin++) {
+                a.setBinContent(bin, a.getBinContent(bin) + b.getBinContent(bin));
+            }
+        }
+        else if(target instanceof H2F && source instanceof H2F) {
+            H2F a = (H2F) target;
+            H2F b = (H2F) source;
+            for(int ix=0; ix<a.getXAxis().getNBins(); ix++) {
+                for(int iy=0; iy<a.getYAxis().getNBins(); iy++) {
+                    a.setBinContent(ix, iy, a.getBinContent(ix, iy) + b.getBinContent(ix, iy));
+                }
+            }
+        }
+        else if(target instanceof GraphErrors && source instanceof GraphErrors) {
+            GraphErrors a = (GraphErrors) target;
+            GraphErrors b = (GraphErrors) source;
+            for(int i=0; i<b.getDataSize(0); i++) {
+                a.addPoint(b.getDataX(i), b.getDataY(i), b.getDataEX(i), b.getDataEY(i));
+            }
+        }
+    }
+
+    public static IDataSet findDataSet(DetectorMonitor monitor, String name) {
+        for(DataGroup group : monitor.getDataGroup().getMap().values()) {
+            int nds = group.getRows()*group.getColumns();
+            for(int i=0; i<nds; i++) {
+                for(IDataSet ds : group.getData(i)) {
+                    if(ds.getName().equals(name)) return ds;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+package org.clas.viewer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+
+/**
+ * Publishes the histograms of the monitors for the canvases without holding
+ * up the timer or the GUI on the lock the monitors fill under. Each monitor
+ * is folded and copied into a snapshot under its lock on the
+ * "histogram-publisher" thread; the copies drawn by the canvases are then
+ * refreshed from the snapshots on the event dispatch thread, without any
+ * monitor lock. A request made while a publication is in progress is not
+ * queued but runs once that one is shown, so a slow monitor delays the
+ * plots and nothing else.
+ */
+public class HistogramPublisher {
+
+    private final ExecutorService executor;
+    private final AtomicBoolean   running   = new AtomicBoolean(false);
+    private final AtomicBoolean   requested = new AtomicBoolean(false);
+    private final DetectorMonitor[] monitors;
+    private final Listener        listener;
+
+    interface Listener {
+        /**
+         * On the publisher thread once the snapshots are taken, before they
+         * are shown; a snapshot is null if its monitor could not be copied.
+         */
+        void published(HistogramSnapshot[] snapshots);
+
+        /**
+         * On the event dispatch thread once the snapshots are shown.
+         */
+        void shown();
+    }
+
+    /**
+     * The listener may be null.
+     */
+    HistogramPublisher(DetectorMonitor[] monitors, Listener listener) {
+        this.monitors = monitors;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "histogram-publisher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Requests a publication; may be called from any thread and returns
+     * at once.
+     */
+    public void publish() {
+        this.requested.set(true);
+        if(!this.running.compareAndSet(false, true)) return;
+        this.requested.set(false);
+        this.executor.submit(new Runnable() {
+            public void run() {
+                final HistogramSnapshot[] snapshots = new HistogramSnapshot[monitors.length];
+                for(int k=0; k<monitors.length; k++) {
+                    try {
+                        snapshots[k] = monitors[k].takeSnapshot();
+                    } catch (RuntimeException e) {
+                        System.out.println("Could not publish " + monitors[k].getDetectorName() + ": " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+                try {
+                    if(listener!=null) listener.published(snapshots);
+                } catch (RuntimeException e) {
+                    System.out.println("Could not handle the published histograms: " + e.getMessage());
+                    e.printStackTrace();
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        show(snapshots);
+                    }
+                });
+            }
+        });
+    }
+
+    private void show(HistogramSnapshot[] snapshots) {
+        try {
+            for(int k=0; k<this.monitors.length; k++) {
+                if(snapshots[k]!=null) this.monitors[k].showSnapshot(snapshots[k]);
+            }
+            if(this.listener!=null) this.listener.shown();
+        } finally {
+            this.running.set(false);
+        }
+        if(this.requested.get()) this.publish();
+    }
+}
@@ -0,0 +1,183 @@
+package org.clas.viewer;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.data.TDirectory;
+
+/**
+ * Saves the histograms of all monitors without holding up the GUI or the
+ * event processing, as a TDirectory or, for the HistogramArchive extension,
+ * as an indexed archive. save() copies the histograms of each monitor under its
+ * lock, which the monitor also holds while filling an event, and returns; run
+ * with dispatch held off (MonitorDispatcher.runIdle) the copies of all
+ * monitors are of the same event. The copies are then written on a
+ * background thread to a temporary file which is renamed over the target
+ * once complete, so that a half written file is never seen under its name.
+ */
+public class HistogramSaver {
+
+    public interface StatusListener {
+        void status(String message);
+    }
+
+    private final ExecutorService executor;
+    private final StatusListener  listener;
+
+    public HistogramSaver(StatusListener listener) {
+        this.listener = listener;
+        // the thread only lives while saving, and is not a daemon so that a save in progress completes
+        this.executor = new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "histogram-saver");
+            }
+        });
+    }
+
+    /**
+     * Runs the task on the saver thread, before the writes queued after it.
+     */
+    public Future<?> submit(Runnable task) {
+        return this.executor.submit(task);
+    }
+
+    /**
+     * Takes the snapshot and queues the write.
+     */
+    public Future<?> save(DetectorMonitor[] monitors, final String fileName) {
+        long start = System.currentTimeMillis();
+        final Map<String,List<IDataSet>> snapshot = new LinkedHashMap<String,List<IDataSet>>();
+        for(DetectorMonitor monitor : monitors) {
+            List<IDataSet> copies = new ArrayList<IDataSet>();
+            synchronized(monitor) {
+                for(IDataSet ds : monitor.getSavedDataSets()) copies.add(copy(ds));
+            }
+            snapshot.put(monitor.getDetectorName(), copies);
+        }
+        this.status("Saving " + fileName + ": snapshot of " + monitors.length + " monitors taken in " + (System.currentTimeMillis()-start) + " ms, writing");
+        return this.executor.submit(new Runnable() {
+            public void run() {
+                long start = System.currentTimeMillis();
+                try {
+                    write(snapshot, fileName);
+                    status("Saved " + fileName + " in " + String.format("%.1f", (System.currentTimeMillis()-start)/1000.) + " s");
+                } catch (IOException e) {
+                    status("Saving " + fileName + " failed: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the data sets of each monitor as a histogram archive if the file
+     * name has its extension, as a TDirectory otherwise.
+     */
+    public static void write(Map<String,List<IDataSet>> detectors, String fileName) throws IOException {
+        if(HistogramArchive.isArchive(fileName)) {
+            Path tmp = temporary(fileName);
+            HistogramArchive.write(detectors, tmp.toString());
+            replace(tmp, fileName);
+            return;
+        }
+        TDirectory dir = new TDirectory();
+        for(Map.Entry<String,List<IDataSet>> detector : detectors.entrySet()) {
+            dir.mkdir("/" + detector.getKey());
+            dir.cd("/" + detector.getKey());
+            for(IDataSet ds : detector.getValue()) dir.addDataSet(ds);
+        }
+        writeAtomically(dir, fileName);
+    }
+
+    /**
+     * Writes the directory to fileName.tmp and renames it to fileName,
+     * replacing any previous file.
+     */
+    public static void writeAtomically(TDirectory dir, String fileName) throws IOException {
+        Path tmp = temporary(fileName);
+        dir.writeFile(tmp.toString());
+        replace(tmp, fileName);
+    }
+
+    private static Path temporary(String fileName) throws IOException {
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path tmp    = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        return tmp;
+    }
+
+    private static void replace(Path tmp, String fileName) throws IOException {
+        Path target = Paths.get(fileName).toAbsolutePath();
+        if(!Files.exists(tmp)) throw new IOException("nothing written to " + tmp);
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Copy of the contents and titles of a histogram or graph; other data
+     * sets are returned as they are.
+     */
+    static IDataSet copy(IDataSet ds) {
+        if(ds instanceof H1F) {
+            H1F h = (H1F) ds;
+            int nbins = h.getxAxis().getNBins();
+            H1F copy = new H1F(h.getName(), h.getTitle(), nbins, h.getxAxis().min(), h.getxAxis().max());
+            copy.setTitleX(h.getTitleX());
+            copy.setTitleY(h.getTitleY());
+            for(int bin=0; bin<nbins; bin++) {
+                copy.setBinContent(bin, h.getBinContent(bin));
+                copy.setBinError(bin, h.getBinError(bin));
+            }
+            return copy;
+        }
+        if(ds instanceof H2F) {
+            H2F h = (H2F) ds;
+            H2F copy = new H2F(h.getName(), h.getTitle(), h.getXAxis().getNBins(), h.getXAxis().min(), h.getXAxis().max(),
+                                                          h.getYAxis().getNBins(), h.getYAxis().min(), h.getYAxis().max());
+            copy.setTitleX(h.getTitleX());
+            copy.setTitleY(h.getTitleY());
+            for(int bin=0; bin<h.getDataBufferSize(); bin++) {
+                copy.setDataBufferBin(bin, h.getDataBufferBin(bin));
+            }
+            return copy;
+        }
+        if(ds instanceof GraphErrors) {
+            GraphErrors g = (GraphErrors) ds;
+            GraphErrors copy = new GraphErrors(g.getName());
+            copy.setTitle(g.getTitle());
+            copy.setTitleX(g.getTitleX());
+            copy.setTitleY(g.getTitleY());
+            for(int i=0; i<g.getDataSize(0); i++) {
+                copy.addPoint(g.getDataX(i), g.getDataY(i), g.getDataEX(i), g.getDataEY(i));
+            }
+            return copy;
+        }
+        return ds;
+    }
+
+    private void status(String message) {
+        System.out.println(message);
+        if(this.listener!=null) this.listener.status(message);
+    }
+}
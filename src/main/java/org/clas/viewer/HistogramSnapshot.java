@@ -0,0 +1,197 @@
+package org.clas.viewer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jlab.groot.base.DatasetAttributes;
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.group.DataGroup;
+import org.jlab.utils.groups.IndexedList;
+
+/**
+ * Copies of the histograms of a monitor, in groups with the same keys and
+ * layout, that are drawn or read while the monitor keeps filling. The copies
+ * are made once and refreshed in place from the histograms they were made
+ * of, so that the canvases drawing them keep their objects; refresh() tells
+ * which copies changed. The copies are drawn with the style of the
+ * histograms. Data sets other than H1F, H2F and GraphErrors, e.g. functions,
+ * are not copied but shared.
+ */
+class HistogramSnapshot {
+
+    private final int                    generation;
+    private final HistogramSnapshot      source;
+    private final IndexedList<DataGroup> data    = new IndexedList<DataGroup>(3);
+    private final DataGroup              summary;
+    private final List<IDataSet>         originals = new ArrayList<IDataSet>();
+    private final List<IDataSet>         copies    = new ArrayList<IDataSet>();
+    private final Map<IDataSet,Boolean>  changed   = new IdentityHashMap<IDataSet,Boolean>();
+
+    /**
+     * Copies the given groups and summary, of the given histogram generation.
+     */
+    HistogramSnapshot(int generation, IndexedList<DataGroup> groups, DataGroup summary) {
+        this(generation, null, groups, summary);
+    }
+
+    private HistogramSnapshot(int generation, HistogramSnapshot source, IndexedList<DataGroup> groups, DataGroup summary) {
+        this.generation = generation;
+        this.source     = source;
+        Map<IDataSet,IDataSet> made = new IdentityHashMap<IDataSet,IDataSet>();
+        for(Map.Entry<Long,DataGroup> entry : groups.getMap().entrySet()) {
+            this.data.getMap().put(entry.getKey(), this.copy(entry.getValue(), made));
+        }
+        this.summary = summary==null ? null : this.copy(summary, made);
+        for(IDataSet copy : this.copies) this.changed.put(copy, true);
+    }
+
+    /**
+     * Copies of this snapshot, refreshed from it.
+     */
+    HistogramSnapshot copy() {
+        return new HistogramSnapshot(this.generation, this, this.data, this.summary);
+    }
+
+    private DataGroup copy(DataGroup group, Map<IDataSet,IDataSet> made) {
+        int nds = group.getRows()*group.getColumns();
+        DataGroup copy = new DataGroup(group.getColumns(), group.getRows());
+        for(int i=0; i<nds; i++) {
+            for(IDataSet ds : group.getData(i)) {
+                IDataSet dsCopy = made.get(ds);
+                if(dsCopy==null) {
+                    dsCopy = HistogramSaver.copy(ds);
+                    made.put(ds, dsCopy);
+                    if(dsCopy!=ds) {
+                        copyStyle(ds, dsCopy);
+                        this.originals.add(ds);
+                        this.copies.add(dsCopy);
+                    }
+                }
+                copy.addDataSet(dsCopy, i);
+            }
+        }
+        return copy;
+    }
+
+    int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Snapshot this one was copied from, or null if it was made from the
+     * histograms of a monitor.
+     */
+    HistogramSnapshot getSource() {
+        return this.source;
+    }
+
+    IndexedList<DataGroup> getDataGroup() {
+        return this.data;
+    }
+
+    DataGroup getDetectorSummary() {
+        return this.summary;
+    }
+
+    List<IDataSet> getDataSets() {
+        return this.copies;
+    }
+
+    /**
+     * Copies the contents again, recording which copies changed. Returns
+     * false, with the copies left partly refreshed, if a histogram no longer
+     * has the binning it was copied with; a new snapshot has to be made.
+     */
+    boolean refresh() {
+        this.changed.clear();
+        for(int i=0; i<this.copies.size(); i++) {
+            IDataSet copy = this.copies.get(i);
+            int result = refresh(this.originals.get(i), copy);
+            if(result<0) return false;
+            if(result>0) this.changed.put(copy, true);
+        }
+        return true;
+    }
+
+    /**
+     * Whether the copy changed in the last refresh; copies are new, and
+     * changed, when the snapshot is made.
+     */
+    boolean hasChanged(IDataSet copy) {
+        return this.changed.containsKey(copy);
+    }
+
+    /**
+     * Copies the contents and titles, returning 1 if a content changed, 0 if
+     * not and -1 if the binning does not match.
+     */
+    static int refresh(IDataSet from, IDataSet to) {
+        int changed = 0;
+        if(from instanceof H1F) {
+            H1F h = (H1F) from, copy = (H1F) to;
+            int nbins = h.getxAxis().getNBins();
+            if(copy.getxAxis().getNBins()!=nbins) return -1;
+            for(int bin=0; bin<nbins; bin++) {
+                double content = h.getBinContent(bin);
+                if(content!=copy.getBinContent(bin)) {
+                    copy.setBinContent(bin, content);
+                    changed = 1;
+                }
+                copy.setBinError(bin, h.getBinError(bin));
+            }
+            copy.setTitle(h.getTitle());
+            copy.setTitleX(h.getTitleX());
+            copy.setTitleY(h.getTitleY());
+        }
+        else if(from instanceof H2F) {
+            H2F h = (H2F) from, copy = (H2F) to;
+            int size = h.getDataBufferSize();
+            if(copy.getDataBufferSize()!=size) return -1;
+            for(int bin=0; bin<size; bin++) {
+                float content = h.getDataBufferBin(bin);
+                if(content!=copy.getDataBufferBin(bin)) {
+                    copy.setDataBufferBin(bin, content);
+                    changed = 1;
+                }
+            }
+            copy.setTitle(h.getTitle());
+            copy.setTitleX(h.getTitleX());
+            copy.setTitleY(h.getTitleY());
+        }
+        else if(from instanceof GraphErrors) {
+            GraphErrors g = (GraphErrors) from, copy = (GraphErrors) to;
+            int npoints = g.getDataSize(0);
+            changed = npoints!=copy.getDataSize(0) ? 1 : 0;
+            for(int i=0; i<npoints && changed==0; i++) {
+                if(g.getDataX(i)!=copy.getDataX(i) || g.getDataY(i)!=copy.getDataY(i)
+                || g.getDataEX(i)!=copy.getDataEX(i) || g.getDataEY(i)!=copy.getDataEY(i)) changed = 1;
+            }
+            if(changed==1) {
+                copy.reset();
+                for(int i=0; i<npoints; i++) copy.addPoint(g.getDataX(i), g.getDataY(i), g.getDataEX(i), g.getDataEY(i));
+            }
+            copy.setTitle(g.getTitle());
+            copy.setTitleX(g.getTitleX());
+            copy.setTitleY(g.getTitleY());
+        }
+        return changed;
+    }
+
+    private static void copyStyle(IDataSet from, IDataSet to) {
+        DatasetAttributes style = from.getAttributes();
+        DatasetAttributes copy  = to.getAttributes();
+        copy.setLineColor(style.getLineColor());
+        copy.setLineWidth(style.getLineWidth());
+        copy.setLineStyle(style.getLineStyle());
+        copy.setFillColor(style.getFillColor());
+        copy.setMarkerColor(style.getMarkerColor());
+        copy.setMarkerSize(style.getMarkerSize());
+        copy.setMarkerStyle(style.getMarkerStyle());
+        copy.setOptStat(style.getOptStat());
+    }
+}
@@ -0,0 +1,149 @@
+package org.clas.viewer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Sliding window over the last N events of a monitor's H1F and H2F, used
+ * instead of resetting them every N events. The window is cut in slices of
+ * N/K events: the contents of the last K-1 complete slices are kept in a
+ * ring, and every N/K events the histograms, which keep being filled as
+ * usual, are split into the slice just completed and the older ones, and the
+ * oldest slice is subtracted. The displayed histograms therefore always hold
+ * between N-N/K and N events, for K+1 copies of the bins. The H1F errors of
+ * the bins the window subtracts from are set back to sqrt(content), as they
+ * are counts.
+ */
+public class HistogramWindow {
+
+    public static final int DEFAULT_SLICES = 10;
+
+    private final int     events;
+    private final int     slices;
+    private final int     sliceEvents;
+    private List<Slot>    slots     = new ArrayList<Slot>();
+    private final int[]   processed;
+    private int           stored    = 0;
+    private int           head      = 0;
+    private int           filled    = 0;
+
+    private static final class Slot {
+        final IDataSet   ds;
+        final int        nbins;
+        final double[][] slices;
+        final double[]   stored;
+
+        Slot(IDataSet ds, int nbins, int ring) {
+            this.ds     = ds;
+            this.nbins  = nbins;
+            this.slices = new double[ring][nbins];
+            this.stored = new double[nbins];
+        }
+    }
+
+    public HistogramWindow(int events, int slices) {
+        this.slices      = Math.max(2, slices);
+        this.sliceEvents = Math.max(1, events/this.slices);
+        this.events      = this.sliceEvents*this.slices;
+        this.processed   = new int[this.slices-1];
+    }
+
+    public int getEvents() {
+        return this.events;
+    }
+
+    public int getSlices() {
+        return this.slices;
+    }
+
+    public int getSliceEvents() {
+        return this.sliceEvents;
+    }
+
+    /**
+     * Starts a new window over the given histograms; what they already hold
+     * becomes the current slice.
+     */
+    synchronized void bind(List<IDataSet> datasets) {
+        this.slots = new ArrayList<Slot>();
+        for(IDataSet ds : datasets) {
+            int nbins = bins(ds);
+            if(nbins>0) this.slots.add(new Slot(ds, nbins, this.slices-1));
+        }
+        for(int i=0; i<this.processed.length; i++) this.processed[i] = 0;
+        this.stored = 0;
+        this.head   = 0;
+        this.filled = 0;
+    }
+
+    /**
+     * Empties the ring, for histograms that have just been cleared.
+     */
+    synchronized void clear() {
+        for(Slot slot : this.slots) {
+            for(double[] slice : slot.slices) Arrays.fill(slice, 0);
+            Arrays.fill(slot.stored, 0);
+        }
+        Arrays.fill(this.processed, 0);
+        this.stored = 0;
+        this.head   = 0;
+        this.filled = 0;
+    }
+
+    /**
+     * Closes the current slice and drops the oldest one once the ring is
+     * full. Returns the number of processed events dropped with it.
+     */
+    synchronized int rotate(int processedEvents) {
+        boolean full = this.filled==this.processed.length;
+        for(Slot slot : this.slots) {
+            double[] slice = slot.slices[this.head];
+            for(int bin=0; bin<slot.nbins; bin++) {
+                double content = get(slot.ds, bin);
+                double current = content - slot.stored[bin];
+                if(full) {
+                    set(slot.ds, bin, content - slice[bin]);
+                    slot.stored[bin] -= slice[bin];
+                }
+                slice[bin] = current;
+                slot.stored[bin] += current;
+            }
+        }
+        int dropped = full ? this.processed[this.head] : 0;
+        int current = processedEvents - this.stored;
+        this.stored += current - dropped;
+        this.processed[this.head] = current;
+        this.head = (this.head+1) % this.processed.length;
+        if(!full) this.filled++;
+        return dropped;
+    }
+
+    private static int bins(IDataSet ds) {
+        if(ds instanceof H1F) return ((H1F) ds).getxAxis().getNBins();
+        if(ds instanceof H2F) return ((H2F) ds).getXAxis().getNBins()*((H2F) ds).getYAxis().getNBins();
+        return 0;
+    }
+
+    private static double get(IDataSet ds, int bin) {
+        if(ds instanceof H1F) return ((H1F) ds).getBinContent(bin);
+        H2F h2 = (H2F) ds;
+        int nx = h2.getXAxis().getNBins();
+        return h2.getBinContent(bin%nx, bin/nx);
+    }
+
+    private static void set(IDataSet ds, int bin, double value) {
+        if(ds instanceof H1F) {
+            ((H1F) ds).setBinContent(bin, value);
+            ((H1F) ds).setBinError(bin, Math.sqrt(Math.abs(value)));
+            return;
+        }
+        H2F h2 = (H2F) ds;
+        int nx = h2.getXAxis().getNBins();
+        h2.setBinContent(bin%nx, bin/nx, value);
+    }
+}
@@ -0,0 +1,261 @@
+package org.clas.viewer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.base.DataEventType;
+
+/**
+ * Hands events to the detector monitors. In sequential mode every monitor is
+ * called in turn on the calling thread; in parallel mode each monitor has its
+ * own bounded queue and worker thread, so events are still processed in order
+ * within a monitor but monitors no longer wait for each other.
+ * Monitors are only invoked for events carrying one of the banks they
+ * subscribed to; for the others the event is just counted. Accumulate events
+ * can also be prescaled per monitor by the PrescaleScheduler.
+ */
+public class MonitorDispatcher {
+
+    private final DetectorMonitor[] monitors;
+    private final AtomicInteger[]   pending;
+    private BlockingQueue<MonitorTask>[] queues = null;
+    private Thread[]                     workers = null;
+    private volatile boolean            parallel = false;
+    private int                    queueCapacity = 1000;
+    private static final int PROCESS  = 0;
+    private static final int SKIP     = 1;
+    private static final int PRESCALE = 2;
+
+    private final BankSubscriptionIndex subscriptions;
+    private final PrescaleScheduler     scheduler;
+    private final boolean[]             selected;
+    private final int[]                 actions;
+    private volatile boolean    useSubscriptions = true;
+    // read by the status bar while an event is being dispatched
+    private final AtomicLong         invocations = new AtomicLong(0);
+    private final AtomicLong             skipped = new AtomicLong(0);
+    private final AtomicLong           prescaled = new AtomicLong(0);
+
+    public MonitorDispatcher(DetectorMonitor[] monitors) {
+        this.monitors = monitors;
+        this.pending  = new AtomicInteger[monitors.length];
+        for(int k=0; k<monitors.length; k++) {
+            this.pending[k] = new AtomicInteger(0);
+        }
+        this.subscriptions = new BankSubscriptionIndex(monitors);
+        this.selected      = new boolean[monitors.length];
+        this.actions       = new int[monitors.length];
+        this.scheduler     = new PrescaleScheduler(monitors);
+    }
+
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    public synchronized void setParallel(boolean flag) {
+        if(flag == this.parallel) return;
+        if(flag) {
+            this.startWorkers();
+        }
+        else {
+            this.stopWorkers();
+        }
+        System.out.println("Monitor dispatch mode set to " + (flag ? "parallel" : "sequential"));
+    }
+
+    public void setQueueCapacity(int capacity) {
+        this.queueCapacity = capacity;
+    }
+
+    public int getQueueDepth(int k) {
+        return this.pending[k].get();
+    }
+
+    public void setUseSubscriptions(boolean flag) {
+        this.useSubscriptions = flag;
+    }
+
+    public long getInvocationCount() {
+        return this.invocations.get();
+    }
+
+    public long getSkippedCount() {
+        return this.skipped.get();
+    }
+
+    public long getPrescaledCount() {
+        return this.prescaled.get();
+    }
+
+    public synchronized void setAdaptivePrescaling(boolean flag) {
+        this.scheduler.setEnabled(flag);
+    }
+
+    public boolean isAdaptivePrescaling() {
+        return this.scheduler.isEnabled();
+    }
+
+    /**
+     * Counts an incoming event for the input rate of the prescale scheduler;
+     * called by the event source before the event buffer, which may drop it.
+     */
+    public void eventOffered() {
+        this.scheduler.eventOffered();
+    }
+
+    public synchronized void dispatch(DataEvent event, EventContext context) {
+        this.selectMonitors(event);
+        this.scheduler.eventDispatched(this.parallel);
+        if(!this.parallel) {
+            for(int k=0; k<this.monitors.length; k++) {
+                run(this.monitors[k], this.actions[k], event, context);
+            }
+            return;
+        }
+        for(int k=0; k<this.monitors.length; k++) {
+            this.pending[k].incrementAndGet();
+            try {
+                this.queues[k].put(new MonitorTask(event, context, this.actions[k]));
+            } catch (InterruptedException e) {
+                this.pending[k].decrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void selectMonitors(DataEvent event) {
+        DataEventType type = event.getType();
+        if(this.useSubscriptions && (type == DataEventType.EVENT_ACCUMULATE || type == DataEventType.EVENT_START)) {
+            this.subscriptions.select(event, this.selected);
+        }
+        else {
+            for(int k=0; k<this.selected.length; k++) this.selected[k] = true;
+        }
+        boolean accumulate = type == DataEventType.EVENT_ACCUMULATE;
+        for(int k=0; k<this.selected.length; k++) {
+            this.invocations.incrementAndGet();
+            if(!this.selected[k]) {
+                this.actions[k] = SKIP;
+                this.skipped.incrementAndGet();
+            }
+            else if(accumulate && !this.scheduler.accept(k)) {
+                this.actions[k] = PRESCALE;
+                this.prescaled.incrementAndGet();
+            }
+            else {
+                this.actions[k] = PROCESS;
+            }
+        }
+    }
+
+    private static void run(DetectorMonitor monitor, int action, DataEvent event, EventContext context) {
+        if(action == PROCESS)   monitor.dataEventAction(event, context);
+        else if(action == SKIP) monitor.skipEvent(event, context);
+        else                    monitor.prescaleEvent(event);
+    }
+
+    /**
+     * Blocks until every event dispatched so far has been processed, e.g.
+     * before the histograms are reset or written to file. In sequential mode
+     * this waits for the event being dispatched, if any.
+     */
+    public void awaitIdle() {
+        if(!this.parallel) {
+            synchronized(this) {
+                // dispatch holds the lock while the monitors process the event
+            }
+            return;
+        }
+        for(int k=0; k<this.monitors.length; k++) {
+            synchronized(this.pending[k]) {
+                while(this.pending[k].get()>0) {
+                    try {
+                        this.pending[k].wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the task with no event being processed by any monitor: dispatch
+     * is held off and the queued events are processed first, so the task sees
+     * every monitor at the same event.
+     */
+    public synchronized void runIdle(Runnable task) {
+        this.awaitIdle();
+        task.run();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void startWorkers() {
+        this.queues  = new BlockingQueue[this.monitors.length];
+        this.workers = new Thread[this.monitors.length];
+        for(int k=0; k<this.monitors.length; k++) {
+            this.queues[k]  = new ArrayBlockingQueue<MonitorTask>(this.queueCapacity);
+            this.workers[k] = new Thread(new MonitorWorker(k), "monitor-" + this.monitors[k].getDetectorName());
+            this.workers[k].setDaemon(true);
+            this.workers[k].start();
+        }
+        this.parallel = true;
+    }
+
+    private void stopWorkers() {
+        this.awaitIdle();
+        this.parallel = false;
+        for(int k=0; k<this.workers.length; k++) {
+            this.workers[k].interrupt();
+        }
+        this.workers = null;
+        this.queues  = null;
+    }
+
+    private static class MonitorTask {
+        private final DataEvent    event;
+        private final EventContext context;
+        private final int          action;
+
+        MonitorTask(DataEvent event, EventContext context, int action) {
+            this.event   = event;
+            this.context = context;
+            this.action  = action;
+        }
+    }
+
+    private class MonitorWorker implements Runnable {
+        private final int index;
+
+        MonitorWorker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            BlockingQueue<MonitorTask> queue = queues[index];
+            DetectorMonitor monitor = monitors[index];
+            while(!Thread.currentThread().isInterrupted()) {
+                MonitorTask task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    run(monitor, task.action, task.event, task.context);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                synchronized(pending[index]) {
+                    if(pending[index].decrementAndGet()==0) pending[index].notifyAll();
+                }
+            }
+        }
+    }
+}
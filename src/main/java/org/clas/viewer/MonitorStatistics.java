@@ -0,0 +1,151 @@
+package org.clas.viewer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.jlab.io.base.DataEventType;
+
+/**
+ * Processing time and allocation statistics of one monitor, per event type.
+ * Latencies are kept in a log-linear histogram (8 sub-buckets per power of
+ * two, i.e. about 12% resolution) so recording costs a few nanoseconds and
+ * percentiles can be read at any time. Recording is switched on and off for
+ * all monitors at once and is off by default; when off, dataEventAction does
+ * not read the clock. The allocations are read from the ThreadMXBean for one
+ * event in ALLOCATION_SAMPLING only and scaled up, as reading them costs more
+ * than timing the event.
+ */
+public class MonitorStatistics {
+
+    private static final int SUB_BITS    = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS     = 64 * SUB_BUCKETS;
+
+    public static final int ALLOCATION_SAMPLING = 64;
+
+    private static volatile boolean enabled = false;
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean allocationSupported = isAllocationSupported();
+
+    private final DataEventType[] types   = DataEventType.values();
+    private final long[][]        buckets = new long[types.length][BUCKETS];
+    private final long[]          counts  = new long[types.length];
+    private final long[]          totalNs = new long[types.length];
+    private long                  allocatedBytes = 0;
+    private long                  calls          = 0;
+
+    public static void setEnabled(boolean flag) {
+        enabled = flag;
+        System.out.println("Monitor performance statistics " + (flag ? "enabled" : "disabled"));
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Bytes allocated so far by the calling thread, or -1 if the JVM cannot tell.
+     */
+    public static long getAllocatedBytes() {
+        if(!allocationSupported) return -1;
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Whether the allocations of the next event are to be measured; called
+     * once per event by the thread processing the monitor.
+     */
+    public boolean sampleAllocation() {
+        return allocationSupported && this.calls++ % ALLOCATION_SAMPLING == 0;
+    }
+
+    private static boolean isAllocationSupported() {
+        try {
+            if(!(threads instanceof com.sun.management.ThreadMXBean)) return false;
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if(!bean.isThreadAllocatedMemorySupported()) return false;
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    public synchronized void record(DataEventType type, long nanos, long bytes) {
+        int t = type.ordinal();
+        this.counts[t]++;
+        this.totalNs[t] += nanos;
+        this.buckets[t][bucket(nanos)]++;
+        if(bytes>0) this.allocatedBytes += bytes*ALLOCATION_SAMPLING;
+    }
+
+    public synchronized void reset() {
+        for(int t=0; t<this.types.length; t++) {
+            this.counts[t]  = 0;
+            this.totalNs[t] = 0;
+            for(int i=0; i<BUCKETS; i++) this.buckets[t][i] = 0;
+        }
+        this.allocatedBytes = 0;
+    }
+
+    public DataEventType[] getEventTypes() {
+        return this.types;
+    }
+
+    public synchronized long getCount(DataEventType type) {
+        return this.counts[type.ordinal()];
+    }
+
+    public synchronized long getCount() {
+        long sum = 0;
+        for(long count : this.counts) sum += count;
+        return sum;
+    }
+
+    public synchronized long getTotalNanos(DataEventType type) {
+        return this.totalNs[type.ordinal()];
+    }
+
+    public synchronized long getTotalNanos() {
+        long sum = 0;
+        for(long ns : this.totalNs) sum += ns;
+        return sum;
+    }
+
+    /**
+     * Bytes allocated processing the events, estimated from the sampled ones.
+     */
+    public synchronized long getAllocatedBytesTotal() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Latency in ns below which the given fraction of the events of this type
+     * was processed, e.g. 0.99 for p99.
+     */
+    public synchronized long getPercentile(DataEventType type, double fraction) {
+        int t = type.ordinal();
+        if(this.counts[t]==0) return 0;
+        long threshold = (long) Math.ceil(fraction*this.counts[t]);
+        long sum = 0;
+        for(int i=0; i<BUCKETS; i++) {
+            sum += this.buckets[t][i];
+            if(sum>=threshold) return upperBound(i);
+        }
+        return upperBound(BUCKETS-1);
+    }
+
+    private static int bucket(long nanos) {
+        if(nanos < SUB_BUCKETS) return (int) Math.max(nanos, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket + 1;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1)) << (exponent - SUB_BITS);
+    }
+}
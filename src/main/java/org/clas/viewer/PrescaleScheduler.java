@@ -0,0 +1,170 @@
+package org.clas.viewer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jlab.io.base.DataEventType;
+
+/**
+ * Assigns each monitor a prescale factor so that the monitors keep up with the
+ * input rate. Once per period the cost of each monitor (processing time per
+ * dispatched event it would take without prescaling, from its
+ * MonitorStatistics) is multiplied by the input rate, counted where events
+ * enter the event buffer and so including the ones the buffer drops, to get
+ * the load it would put on the processing thread without prescaling.
+ * The available time is then shared out water-filling style: monitors whose
+ * load is below the common level run on every event, the more expensive ones
+ * are prescaled down to it. Monitors marked as having to see every event are
+ * served first and never prescaled. In parallel mode every monitor has a
+ * thread of its own, so each one is simply capped at the budget.
+ */
+public class PrescaleScheduler {
+
+    private final DetectorMonitor[] monitors;
+    private final long[]            lastNanos;
+    private final long[]            offered;
+    private final AtomicLong        input       = new AtomicLong(0);
+    private volatile boolean        enabled     = false;
+    private double                  utilisation = 0.8;
+    private int                     maxPrescale = 1000;
+    private long                    periodNs    = 2000000000L;
+    private long                    lastUpdate  = 0;
+    private long                    lastInput   = 0;
+    private long                    dispatched  = 0;
+
+    public PrescaleScheduler(DetectorMonitor[] monitors) {
+        this.monitors    = monitors;
+        this.lastNanos   = new long[monitors.length];
+        this.offered     = new long[monitors.length];
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean flag) {
+        this.enabled = flag;
+        if(flag) {
+            // the costs are taken from the monitor statistics
+            if(!MonitorStatistics.isEnabled()) MonitorStatistics.setEnabled(true);
+            this.lastUpdate = 0;
+        }
+        else {
+            for(DetectorMonitor monitor : this.monitors) monitor.setPrescale(1);
+        }
+        System.out.println("Adaptive prescaling " + (flag ? "enabled" : "disabled"));
+    }
+
+    public void setUtilisation(double fraction) {
+        this.utilisation = fraction;
+    }
+
+    public void setMaxPrescale(int max) {
+        this.maxPrescale = max;
+    }
+
+    /**
+     * Decides whether monitor k takes part in the current accumulate event;
+     * only called for the monitors subscribed to it.
+     */
+    public boolean accept(int k) {
+        int prescale = this.monitors[k].getPrescale();
+        return (this.offered[k]++ % prescale) == 0;
+    }
+
+    /**
+     * Called by the event source for every incoming event, whether or not it
+     * is dispatched later.
+     */
+    public void eventOffered() {
+        this.input.incrementAndGet();
+    }
+
+    /**
+     * Called once per dispatched event; recomputes the prescales when the
+     * period has elapsed.
+     */
+    public void eventDispatched(boolean parallel) {
+        this.dispatched++;
+        if(!this.enabled) return;
+        long now = System.nanoTime();
+        if(this.lastUpdate == 0) {
+            this.snapshot(now);
+            return;
+        }
+        if(now - this.lastUpdate < this.periodNs) return;
+        this.update(now, parallel);
+    }
+
+    private void snapshot(long now) {
+        for(int k=0; k<this.monitors.length; k++) {
+            MonitorStatistics stats = this.monitors[k].getStatistics();
+            this.lastNanos[k] = stats.getTotalNanos(DataEventType.EVENT_ACCUMULATE);
+        }
+        this.lastInput  = this.input.get();
+        this.dispatched = 0;
+        this.lastUpdate = now;
+    }
+
+    private void update(long now, boolean parallel) {
+        double seconds = (now - this.lastUpdate)/1E9;
+        long   events  = this.input.get() - this.lastInput;
+        // without an event buffer in front, e.g. in batch mode, every event is dispatched
+        double rate    = (events>0 ? events : this.dispatched)/seconds;
+        double budget  = this.utilisation*1E9;
+        int      n     = this.monitors.length;
+        double[] load  = new double[n];
+        for(int k=0; k<n; k++) {
+            MonitorStatistics stats = this.monitors[k].getStatistics();
+            long nanos = stats.getTotalNanos(DataEventType.EVENT_ACCUMULATE) - this.lastNanos[k];
+            // processing time per dispatched event, whether processed, skipped or prescaled
+            double cost = this.dispatched>0 ? nanos*(double) this.monitors[k].getPrescale()/this.dispatched : 0;
+            load[k] = cost*rate;
+        }
+        if(parallel) {
+            for(int k=0; k<n; k++) this.assign(k, load[k], budget);
+        }
+        else {
+            double level = this.level(load, budget);
+            for(int k=0; k<n; k++) this.assign(k, load[k], level);
+        }
+        this.snapshot(now);
+    }
+
+    private void assign(int k, double load, double level) {
+        int prescale = 1;
+        if(level<=0 && load>0) prescale = this.maxPrescale;
+        else if(load>level)    prescale = (int) Math.ceil(load/level);
+        prescale = Math.min(prescale, this.maxPrescale);
+        // change by at most a factor of two per period to avoid oscillations
+        int old = this.monitors[k].getPrescale();
+        prescale = Math.max(Math.min(prescale, 2*old), (old+1)/2);
+        if(prescale != old) {
+            this.monitors[k].setPrescale(prescale);
+            System.out.println("Prescale of " + this.monitors[k].getDetectorName() + " set to " + this.monitors[k].getPrescale());
+        }
+    }
+
+    /**
+     * Water level such that the loads capped at it fit in the budget left
+     * after the monitors that must see every event.
+     */
+    double level(double[] load, double budget) {
+        double[] sorted = new double[load.length];
+        int m = 0;
+        for(int k=0; k<load.length; k++) {
+            if(this.monitors[k].isMustSeeEveryEvent()) budget -= load[k];
+            else sorted[m++] = load[k];
+        }
+        if(budget<=0) return 0;
+        sorted = Arrays.copyOf(sorted, m);
+        Arrays.sort(sorted);
+        double used = 0;
+        for(int i=0; i<m; i++) {
+            double level = (budget - used)/(m - i);
+            if(sorted[i] > level) return level;
+            used += sorted[i];
+        }
+        return Double.MAX_VALUE;
+    }
+}
@@ -0,0 +1,137 @@
+package org.clas.viewer;
+
+import java.util.Arrays;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Profile histogram: sum, sum of squares and number of entries per bin of a
+ * groot H1F, which shows the mean with the error on the mean as bin error.
+ * Unlike updating the H1F content as a running average, profiles can be added
+ * to each other and keep the spread. The groot view is refreshed when the
+ * monitor folds its histograms; the entries and sums are saved next to it by
+ * writeDataGroup so that readDataGroup can restore the profile.
+ *
+ * fill() takes no lock: it is called per hit from processEvent, which runs
+ * under the monitor lock, as do the fold, reset and save that read or
+ * replace the sums; profiles are merged once their monitors are done.
+ */
+public class ProfileH1 {
+
+    public static final String ENTRIES = " :entries";
+    public static final String SUMW2   = " :sum2";
+
+    private final String name;
+    private H1F          view = null;
+    private double[]     sum  = new double[0];
+    private double[]     sum2 = new double[0];
+    private long[]       n    = new long[0];
+
+    public ProfileH1(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void fill(int bin, double value) {
+        if(bin<0 || bin>=this.n.length) return;
+        this.sum[bin]  += value;
+        this.sum2[bin] += value*value;
+        this.n[bin]++;
+    }
+
+    public synchronized long getEntries(int bin) {
+        return this.n[bin];
+    }
+
+    public synchronized double getMean(int bin) {
+        return this.n[bin]>0 ? this.sum[bin]/this.n[bin] : 0;
+    }
+
+    public synchronized double getRMS(int bin) {
+        if(this.n[bin]==0) return 0;
+        double mean = this.sum[bin]/this.n[bin];
+        return Math.sqrt(Math.max(0, this.sum2[bin]/this.n[bin] - mean*mean));
+    }
+
+    public synchronized double getError(int bin) {
+        return this.n[bin]>0 ? this.getRMS(bin)/Math.sqrt(this.n[bin]) : 0;
+    }
+
+    public synchronized void add(ProfileH1 other) {
+        if(other==this) return;
+        synchronized(other) {
+            int nbins = Math.min(this.n.length, other.n.length);
+            for(int bin=0; bin<nbins; bin++) {
+                this.sum[bin]  += other.sum[bin];
+                this.sum2[bin] += other.sum2[bin];
+                this.n[bin]    += other.n[bin];
+            }
+        }
+    }
+
+    /**
+     * Writes the means and their errors into the groot histogram.
+     */
+    public synchronized void refresh() {
+        if(this.view==null) return;
+        for(int bin=0; bin<this.n.length; bin++) {
+            this.view.setBinContent(bin, this.getMean(bin));
+            this.view.setBinError(bin, this.getError(bin));
+        }
+    }
+
+    public synchronized H1F getHistogram() {
+        return this.view;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(this.sum, 0);
+        Arrays.fill(this.sum2, 0);
+        Arrays.fill(this.n, 0);
+    }
+
+    synchronized void bind(IDataSet target) {
+        this.view = target instanceof H1F ? (H1F) target : null;
+        int nbins = this.view==null ? 0 : this.view.getxAxis().getNBins();
+        this.sum  = new double[nbins];
+        this.sum2 = new double[nbins];
+        this.n    = new long[nbins];
+    }
+
+    /**
+     * Entries and sum of squares per bin, saved next to the view.
+     */
+    synchronized H1F[] createCompanions() {
+        H1F entries = new H1F(this.name + ENTRIES, this.name + ENTRIES, this.n.length, 0, this.n.length);
+        H1F squares = new H1F(this.name + SUMW2, this.name + SUMW2, this.n.length, 0, this.n.length);
+        for(int bin=0; bin<this.n.length; bin++) {
+            entries.setBinContent(bin, this.n[bin]);
+            squares.setBinContent(bin, this.sum2[bin]);
+        }
+        return new H1F[]{entries, squares};
+    }
+
+    /**
+     * Rebuilds the sums from a saved view and its companions. Files written
+     * before profiles existed only have the means, which are then counted as
+     * one entry per filled bin.
+     */
+    synchronized void restore(IDataSet entries, IDataSet squares) {
+        if(this.view==null) return;
+        H1F hn  = entries instanceof H1F ? (H1F) entries : null;
+        H1F hs2 = squares instanceof H1F ? (H1F) squares : null;
+        for(int bin=0; bin<this.n.length; bin++) {
+            double mean = this.view.getBinContent(bin);
+            long   count;
+            if(hn!=null) count = Math.round(hn.getBinContent(bin));
+            else         count = mean!=0 ? 1 : 0;
+            this.n[bin]    = count;
+            this.sum[bin]  = mean*count;
+            this.sum2[bin] = hs2!=null ? hs2.getBinContent(bin) : mean*mean*count;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package org.clas.viewer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Compares the live histograms with those of a reference file, matched by
+ * monitor and name with the same type, number of bins and axis ranges. Both
+ * are compared as shapes, normalised to their integral: chi2/ndf for
+ * unweighted histograms, the largest pull of a bin and, for H1F, the
+ * Kolmogorov-Smirnov distance and probability. Histograms without entries
+ * on either side are not scored. The reference contents and integral are
+ * read once, when the histograms are matched.
+ *
+ * The histograms compared are the snapshot copies the HistogramPublisher
+ * takes, so update() runs on the publisher thread without any monitor
+ * lock. Only the histograms whose copy changed since they were last scored
+ * are scored again, in turn until a number of bins has been read. A change
+ * of one bin changes the integral the shapes are normalised to, and so all
+ * terms of the chi2 and the cumulative KS distance: a changed histogram is
+ * rescored whole, and the unchanged ones, typically most of them between
+ * two ticks at low rates, are not read at all.
+ *
+ * The reference of each scored H1F, scaled to its integral, is drawn over
+ * it in the monitor canvases; showOverlays() updates them on the event
+ * dispatch thread.
+ */
+public class ReferenceComparator {
+
+    public static final int DEFAULT_BINS_PER_UPDATE = 200000;
+
+    public static final class Score {
+        private final DetectorMonitor monitor;
+        private final int             index;
+        private final IDataSet        live;
+        private final IDataSet        reference;
+        private final double[]        refValues;
+        private final double          refEntries;
+        private final H1F             overlay;
+        private double chi2     = Double.NaN;
+        private double ks       = Double.NaN;
+        private double ksProb   = Double.NaN;
+        private double pull     = Double.NaN;
+        private double entries  = 0;
+        private boolean dirty   = true;
+        private boolean rescaled = false;
+
+        private Score(DetectorMonitor monitor, int index, IDataSet live, IDataSet reference) {
+            this.monitor   = monitor;
+            this.index     = index;
+            this.live      = live;
+            this.reference = reference;
+            this.refValues = new double[bins(reference)];
+            values(reference, this.refValues);
+            double sum = 0;
+            for(double value : this.refValues) sum += value;
+            this.refEntries = sum;
+            if(reference instanceof H1F) {
+                this.overlay = (H1F) HistogramSaver.copy(reference);
+                this.overlay.reset();
+                this.overlay.setLineColor(2);
+            }
+            else {
+                this.overlay = null;
+            }
+        }
+
+        public String getDetector()     { return this.monitor.getDetectorName(); }
+        public String getName()         { return this.live.getName(); }
+
+        /**
+         * Snapshot copy of the live histogram, refreshed on the publisher
+         * thread.
+         */
+        public IDataSet getLive()       { return this.live; }
+
+        /**
+         * Copy of the live histogram, to be drawn on the event dispatch
+         * thread while the snapshot is refreshed.
+         */
+        public IDataSet copyLive() {
+            return HistogramSaver.copy(this.live);
+        }
+        public double getChi2()         { return this.chi2; }
+        public double getKS()           { return this.ks; }
+        public double getKSProbability(){ return this.ksProb; }
+        public double getPull()         { return this.pull; }
+        public double getEntries()      { return this.entries; }
+        public boolean isScored()       { return !Double.isNaN(this.chi2); }
+
+        /**
+         * Reference scaled to the live integral, to be drawn over it.
+         */
+        public IDataSet getScaledReference() {
+            IDataSet copy = HistogramSaver.copy(this.reference);
+            double scale = this.refEntries>0 ? this.entries/this.refEntries : 1;
+            if(copy instanceof H1F) {
+                H1F h = (H1F) copy;
+                for(int bin=0; bin<h.getxAxis().getNBins(); bin++) {
+                    h.setBinContent(bin, h.getBinContent(bin)*scale);
+                    h.setBinError(bin, h.getBinError(bin)*scale);
+                }
+                h.setLineColor(2);
+            }
+            else if(copy instanceof H2F) {
+                H2F h = (H2F) copy;
+                for(int bin=0; bin<h.getDataBufferSize(); bin++) h.setDataBufferBin(bin, (float) (h.getDataBufferBin(bin)*scale));
+            }
+            return copy;
+        }
+
+        private void rescale() {
+            double scale = this.refEntries>0 ? this.entries/this.refEntries : 1;
+            H1F reference = (H1F) this.reference;
+            for(int bin=0; bin<this.refValues.length; bin++) {
+                this.overlay.setBinContent(bin, this.refValues[bin]*scale);
+                this.overlay.setBinError(bin, reference.getBinError(bin)*scale);
+            }
+        }
+    }
+
+    private final Map<String,Map<String,IDataSet>> references;
+    private final String                           fileName;
+    private final List<Score>                      scores = new ArrayList<Score>();
+    private int                                    next   = 0;
+    private DetectorMonitor[]                      monitors  = new DetectorMonitor[0];
+    private HistogramSnapshot[]                    snapshots = new HistogramSnapshot[0];
+    private boolean[]                              rebound   = new boolean[0];
+
+    public ReferenceComparator(String fileName, Map<String,List<IDataSet>> detectors) {
+        this.fileName   = fileName;
+        this.references = new HashMap<String,Map<String,IDataSet>>();
+        for(Map.Entry<String,List<IDataSet>> detector : detectors.entrySet()) {
+            Map<String,IDataSet> byName = new HashMap<String,IDataSet>();
+            for(IDataSet ds : detector.getValue()) byName.put(ds.getName(), ds);
+            this.references.put(detector.getKey(), byName);
+        }
+    }
+
+    /**
+     * Reads the reference histograms from a TDirectory file or an archive.
+     */
+    public static ReferenceComparator load(String fileName) throws IOException {
+        if(!HistogramArchive.isArchive(fileName)) return new ReferenceComparator(fileName, HistogramArchive.readDirectory(fileName));
+        HistogramArchive archive = HistogramArchive.open(fileName);
+        try {
+            return new ReferenceComparator(fileName, archive.readAll());
+        } finally {
+            archive.close();
+        }
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    /**
+     * Compares the histograms of the monitors, indexed as the snapshots
+     * given to update(), which matches them with the references.
+     */
+    public synchronized void bind(DetectorMonitor[] monitors) {
+        this.monitors  = monitors;
+        this.snapshots = new HistogramSnapshot[monitors.length];
+        this.rebound   = new boolean[monitors.length];
+        this.scores.clear();
+        this.next = 0;
+    }
+
+    private void bind(int k, HistogramSnapshot snapshot) {
+        for(Iterator<Score> it=this.scores.iterator(); it.hasNext(); ) {
+            if(it.next().index==k) it.remove();
+        }
+        this.snapshots[k] = snapshot;
+        this.rebound[k]   = true;
+        this.next = 0;
+        Map<String,IDataSet> byName = this.references.get(this.monitors[k].getDetectorName());
+        if(byName==null) return;
+        for(IDataSet ds : snapshot.getDataSets()) {
+            IDataSet reference = byName.get(ds.getName());
+            if(reference!=null && matches(ds, reference)) {
+                this.scores.add(new Score(this.monitors[k], k, ds, reference));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return this.scores.size();
+    }
+
+    /**
+     * Matches the histograms of new snapshots and rescores the changed
+     * histograms, continuing from where the previous call stopped, until
+     * about the given number of bins has been read. Called on the publisher
+     * thread, with the snapshots it has just taken.
+     */
+    public synchronized void update(HistogramSnapshot[] snapshots, int bins) {
+        boolean first = false;
+        for(int k=0; k<this.monitors.length && k<snapshots.length; k++) {
+            if(snapshots[k]==null || snapshots[k]==this.snapshots[k]) continue;
+            first |= this.snapshots[k]==null;
+            this.bind(k, snapshots[k]);
+        }
+        if(first) System.out.println("Comparing " + this.scores.size() + " histograms with " + this.fileName);
+        for(Score score : this.scores) {
+            if(this.snapshots[score.index].hasChanged(score.live)) score.dirty = true;
+        }
+        int read = 0;
+        for(int n=0; n<this.scores.size() && read<bins; n++) {
+            Score score = this.scores.get(this.next);
+            this.next = (this.next+1) % this.scores.size();
+            if(!score.dirty) continue;
+            score.dirty    = false;
+            score.rescaled = score.overlay!=null;
+            read += score(score);
+        }
+    }
+
+    /**
+     * Updates the references drawn over the histograms of the monitors, on
+     * the event dispatch thread once the snapshots of the last update() are
+     * shown.
+     */
+    public synchronized void showOverlays() {
+        for(int k=0; k<this.rebound.length; k++) {
+            if(!this.rebound[k]) continue;
+            this.rebound[k] = false;
+            Map<String,IDataSet> overlays = new HashMap<String,IDataSet>();
+            for(Score score : this.scores) {
+                if(score.index==k && score.overlay!=null) overlays.put(score.getName(), score.overlay);
+            }
+            this.monitors[k].setReferenceOverlays(overlays);
+        }
+        for(Score score : this.scores) {
+            if(!score.rescaled) continue;
+            score.rescaled = false;
+            score.rescale();
+        }
+    }
+
+    /**
+     * Removes the references drawn over the histograms, on the event
+     * dispatch thread, when the comparison stops.
+     */
+    public synchronized void clearOverlays() {
+        for(DetectorMonitor monitor : this.monitors) {
+            monitor.setReferenceOverlays(new HashMap<String,IDataSet>());
+        }
+    }
+
+    /**
+     * Scored histograms from the worst, by chi2/ndf.
+     */
+    public synchronized List<Score> getWorst(int n) {
+        List<Score> scored = new ArrayList<Score>();
+        for(Score score : this.scores) if(score.isScored()) scored.add(score);
+        Collections.sort(scored, new Comparator<Score>() {
+            public int compare(Score a, Score b) {
+                return Double.compare(b.chi2, a.chi2);
+            }
+        });
+        return scored.subList(0, Math.min(n, scored.size()));
+    }
+
+    /**
+     * Worst scored histogram of each monitor.
+     */
+    public synchronized Map<String,Score> getWorstByDetector() {
+        Map<String,Score> worst = new LinkedHashMap<String,Score>();
+        for(Score score : this.scores) {
+            if(!score.isScored()) continue;
+            Score current = worst.get(score.getDetector());
+            if(current==null || score.chi2>current.chi2) worst.put(score.getDetector(), score);
+        }
+        return worst;
+    }
+
+    private static int score(Score score) {
+        int nbins = bins(score.live);
+        double[] n = new double[nbins];
+        double[] r = score.refValues;
+        values(score.live, n);
+        double sn = 0, sr = score.refEntries;
+        for(int bin=0; bin<nbins; bin++) sn += n[bin];
+        score.entries = sn;
+        if(sn<=0 || sr<=0) {
+            score.chi2 = score.ks = score.ksProb = score.pull = Double.NaN;
+            return nbins;
+        }
+        double chi2 = 0, pull = 0, cn = 0, cr = 0, ks = 0;
+        int ndf = -1;
+        for(int bin=0; bin<nbins; bin++) {
+            if(n[bin]+r[bin]>0) {
+                double d = sr*n[bin] - sn*r[bin];
+                chi2 += d*d/(n[bin]+r[bin]);
+                ndf++;
+                double sigma = Math.sqrt(n[bin]/(sn*sn) + r[bin]/(sr*sr));
+                pull = Math.max(pull, Math.abs(n[bin]/sn - r[bin]/sr)/sigma);
+            }
+            cn += n[bin]/sn;
+            cr += r[bin]/sr;
+            ks = Math.max(ks, Math.abs(cn-cr));
+        }
+        score.chi2 = ndf>0 ? chi2/(sn*sr)/ndf : 0;
+        score.pull = pull;
+        if(score.live instanceof H1F) {
+            score.ks     = ks;
+            score.ksProb = kolmogorov(ks*Math.sqrt(sn*sr/(sn+sr)));
+        }
+        return nbins;
+    }
+
+    /**
+     * Probability of a Kolmogorov distance at least lambda, asymptotically.
+     */
+    private static double kolmogorov(double lambda) {
+        if(lambda<0.2) return 1;
+        double sum = 0;
+        for(int k=1; k<=100; k++) {
+            double term = Math.exp(-2*k*k*lambda*lambda);
+            sum += (k%2==1 ? 1 : -1)*term;
+            if(term<1e-12) break;
+        }
+        return Math.max(0, Math.min(1, 2*sum));
+    }
+
+    /**
+     * Same type, number of bins and axis ranges.
+     */
+    private static boolean matches(IDataSet ds, IDataSet reference) {
+        if(ds.getClass()!=reference.getClass() || bins(ds)==0 || bins(ds)!=bins(reference)) return false;
+        if(ds instanceof H1F) {
+            H1F a = (H1F) ds, b = (H1F) reference;
+            return a.getxAxis().min()==b.getxAxis().min() && a.getxAxis().max()==b.getxAxis().max();
+        }
+        H2F a = (H2F) ds, b = (H2F) reference;
+        return a.getXAxis().getNBins()==b.getXAxis().getNBins()
+            && a.getXAxis().min()==b.getXAxis().min() && a.getXAxis().max()==b.getXAxis().max()
+            && a.getYAxis().min()==b.getYAxis().min() && a.getYAxis().max()==b.getYAxis().max();
+    }
+
+    private static int bins(IDataSet ds) {
+        if(ds instanceof H1F) return ((H1F) ds).getxAxis().getNBins();
+        if(ds instanceof H2F) return ((H2F) ds).getDataBufferSize();
+        return 0;
+    }
+
+    private static void values(IDataSet ds, double[] values) {
+        if(ds instanceof H1F) {
+            for(int bin=0; bin<values.length; bin++) values[bin] = ((H1F) ds).getBinContent(bin);
+        }
+        else {
+            for(int bin=0; bin<values.length; bin++) values[bin] = ((H2F) ds).getDataBufferBin(bin);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.clas.viewer;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.IDataSet;
+
+/**
+ * Rate histogram over the event count or the RUN::config unixtime. The groot
+ * H1F keeps a fixed number of bins; when a fill falls past the last one,
+ * neighbouring bins are added pairwise into the first half and the bin width
+ * doubles, so the whole run stays visible without reallocating or redrawing
+ * the histogram. The x axis is in bins, with the width in the axis title.
+ * fill() takes no lock, like ProfileH1: it runs from processEvent under the
+ * monitor lock, which also covers folding, resetting and saving.
+ */
+public class TimeSeriesH1 {
+
+    public static final String WIDTH = " :width";
+
+    public enum Axis {
+        EVENTS("Events", "events"), UNIXTIME("Time", "s");
+
+        private final String title;
+        private final String unit;
+
+        Axis(String title, String unit) {
+            this.title = title;
+            this.unit  = unit;
+        }
+    }
+
+    private final String name;
+    private final Axis   axis;
+    private final long   initialWidth;
+    private H1F          view   = null;
+    private long         origin = -1;
+    private long         width;
+
+    public TimeSeriesH1(String name, Axis axis, long width) {
+        this.name         = name;
+        this.axis         = axis;
+        this.initialWidth = Math.max(1, width);
+        this.width        = this.initialWidth;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Axis getAxis() {
+        return this.axis;
+    }
+
+    public synchronized long getBinWidth() {
+        return this.width;
+    }
+
+    /**
+     * Adds n at the current position on the axis: the event count, or the
+     * event unixtime for which events without RUN::config are ignored.
+     */
+    public void fill(EventContext context, long events, double n) {
+        if(this.axis==Axis.EVENTS) this.fill(events, n);
+        else if(context.hasConfig() && context.getUnixTime()>0) this.fill(context.getUnixTime(), n);
+    }
+
+    public void fill(long x, double n) {
+        if(this.view==null) return;
+        if(this.origin<0) this.origin = this.axis==Axis.EVENTS ? 0 : x;
+        if(x<this.origin) this.extendBefore(x);
+        int nbins = this.view.getxAxis().getNBins();
+        while((x-this.origin)/this.width >= nbins) this.rebin();
+        int bin = (int) ((x-this.origin)/this.width);
+        this.view.setBinContent(bin, this.view.getBinContent(bin) + n);
+    }
+
+    /**
+     * Adds another series of the same histogram, e.g. from another worker,
+     * bin by bin at its position on this axis.
+     */
+    public synchronized void add(TimeSeriesH1 other) {
+        if(other==this) return;
+        synchronized(other) {
+            if(other.view==null || other.origin<0) return;
+            int nbins = other.view.getxAxis().getNBins();
+            for(int bin=nbins-1; bin>=0; bin--) {
+                double n = other.view.getBinContent(bin);
+                if(n!=0) this.fill(other.origin + bin*other.width, n);
+            }
+        }
+    }
+
+    public synchronized H1F getHistogram() {
+        return this.view;
+    }
+
+    synchronized void bind(IDataSet target) {
+        this.view = target instanceof H1F ? (H1F) target : null;
+        this.clear();
+    }
+
+    /**
+     * Goes back to the initial bin width; the contents are cleared with the histogram.
+     */
+    synchronized void clear() {
+        this.origin = -1;
+        this.width  = this.initialWidth;
+        this.updateTitle();
+    }
+
+    /**
+     * Origin and bin width, saved next to the histogram.
+     */
+    synchronized H1F createCompanion() {
+        H1F companion = new H1F(this.name + WIDTH, this.name + WIDTH, 2, 0, 2);
+        companion.setBinContent(0, this.origin);
+        companion.setBinContent(1, this.width);
+        return companion;
+    }
+
+    /**
+     * Restores the axis of a histogram read from a file. Without a companion
+     * the saved bins are taken to have the initial width.
+     */
+    synchronized void restore(IDataSet companion) {
+        if(this.view==null) return;
+        if(companion instanceof H1F) {
+            H1F saved = (H1F) companion;
+            this.origin = Math.round(saved.getBinContent(0));
+            this.width  = Math.max(1, Math.round(saved.getBinContent(1)));
+        }
+        else if(this.view.getIntegral()>0) {
+            this.origin = 0;
+        }
+        this.updateTitle();
+    }
+
+    private void rebin() {
+        int nbins = this.view.getxAxis().getNBins();
+        for(int bin=0; bin<nbins; bin++) {
+            double n = 0;
+            if(2*bin < nbins)   n += this.view.getBinContent(2*bin);
+            if(2*bin+1 < nbins) n += this.view.getBinContent(2*bin+1);
+            this.view.setBinContent(bin, n);
+        }
+        this.width *= 2;
+        this.updateTitle();
+    }
+
+    /**
+     * Moves the origin back to x in whole bins, shifting the contents right
+     * and rebinning first when they would not fit.
+     */
+    private void extendBefore(long x) {
+        int nbins = this.view.getxAxis().getNBins();
+        int last = nbins-1;
+        while(last>=0 && this.view.getBinContent(last)==0) last--;
+        long shift = (this.origin - x + this.width - 1)/this.width;
+        while(last + shift >= nbins) {
+            this.rebin();
+            last  = last/2;
+            shift = (this.origin - x + this.width - 1)/this.width;
+        }
+        for(int bin=last; bin>=0; bin--) {
+            this.view.setBinContent((int) (bin+shift), this.view.getBinContent(bin));
+            this.view.setBinContent(bin, 0);
+        }
+        this.origin -= shift*this.width;
+    }
+
+    private void updateTitle() {
+        if(this.view!=null) this.view.setTitleX(this.axis.title + " (one bin is " + this.width + " " + this.axis.unit + ")");
+    }
+}
@@ -0,0 +1,207 @@
+package org.clas.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+import org.junit.Test;
+
+public class DataSetCodecTest {
+
+    @Test
+    public void denseIntegralH1F() throws IOException {
+        H1F h = new H1F("dense", "Dense", 100, -5, 5);
+        for(int i=0; i<10000; i++) h.fill(-5 + 10*((i*7919)%1000)/1000.);
+        H1F read = (H1F) roundTrip(h);
+        assertH1F(h, read);
+    }
+
+    @Test
+    public void sparseH1F() throws IOException {
+        H1F h = new H1F("sparse", "Sparse", 1000, 0, 1000);
+        h.setBinContent(3, 12);
+        h.setBinError(3, Math.sqrt(12));
+        h.setBinContent(500, 1);
+        h.setBinError(500, 1);
+        h.setBinContent(999, 7);
+        h.setBinError(999, Math.sqrt(7));
+        byte[] bytes = compact(h, new DataSetCodec.Dictionary());
+        assertTrue("sparse bins should take a few bytes each, got " + bytes.length, bytes.length < 100);
+        assertH1F(h, (H1F) roundTrip(h));
+    }
+
+    @Test
+    public void nonIntegralH1F() throws IOException {
+        H1F h = new H1F("averages", "Averages", 20, 0, 20);
+        for(int bin=0; bin<20; bin++) {
+            h.setBinContent(bin, 0.1*bin + 1./3);
+            h.setBinError(bin, 0.01*bin);
+        }
+        assertH1F(h, (H1F) roundTrip(h));
+    }
+
+    @Test
+    public void negativeH1F() throws IOException {
+        H1F h = new H1F("negative", "Negative", 10, 0, 10);
+        for(int bin=0; bin<10; bin++) {
+            h.setBinContent(bin, bin%2==0 ? -bin*1000 : bin);
+            h.setBinError(bin, Math.sqrt(Math.abs(h.getBinContent(bin))));
+        }
+        h.setBinContent(9, -0.25);
+        h.setBinError(9, 0.5);
+        assertH1F(h, (H1F) roundTrip(h));
+    }
+
+    @Test
+    public void nanH1F() throws IOException {
+        H1F h = new H1F("nan", "NaN", 10, 0, 10);
+        h.setBinContent(2, Double.NaN);
+        h.setBinError(2, Double.NaN);
+        h.setBinContent(5, 4);
+        h.setBinError(5, 2);
+        assertH1F(h, (H1F) roundTrip(h));
+        for(int bin=0; bin<10; bin++) h.setBinContent(bin, bin==7 ? Double.NaN : bin);
+        assertH1F(h, (H1F) roundTrip(h));
+    }
+
+    @Test
+    public void largeValuesH1F() throws IOException {
+        H1F h = new H1F("large", "Large", 4, 0, 4);
+        h.setBinContent(0, 1e18);
+        h.setBinContent(1, -1e18);
+        h.setBinContent(2, Long.MAX_VALUE/2);
+        assertH1F(h, (H1F) roundTrip(h));
+    }
+
+    @Test
+    public void h2f() throws IOException {
+        H2F dense = new H2F("dense2", "Dense 2D", 20, 0, 20, 10, -1, 1);
+        for(int bin=0; bin<dense.getDataBufferSize(); bin++) dense.setDataBufferBin(bin, bin%3==0 ? 0.5f*bin : -bin);
+        assertH2F(dense, (H2F) roundTrip(dense));
+
+        H2F sparse = new H2F("sparse2", "Sparse 2D", 100, 0, 100, 100, 0, 100);
+        sparse.setDataBufferBin(42, 3);
+        sparse.setDataBufferBin(9999, 1.5f);
+        sparse.setDataBufferBin(5000, Float.NaN);
+        assertH2F(sparse, (H2F) roundTrip(sparse));
+    }
+
+    @Test
+    public void occupancyH2F() throws IOException {
+        // strip occupancy-like map: 1000x100 bins with a band of small integer counts
+        H2F h = new H2F("occupancy", "Occupancy", 1000, 0, 1000, 100, 0, 100);
+        for(int i=0; i<5000; i++) h.fill((i*7919)%1000, 45 + (i*31)%10);
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        DataSetCodec.write(new DataOutputStream(full), h);
+        byte[] bytes = compact(h, new DataSetCodec.Dictionary());
+        assertTrue("compact " + bytes.length + " bytes, full " + full.size(), bytes.length*10 < full.size());
+        assertH2F(h, (H2F) roundTrip(h));
+    }
+
+    @Test
+    public void graphErrors() throws IOException {
+        GraphErrors g = new GraphErrors("graph");
+        g.setTitle("Graph");
+        g.setTitleX("x");
+        g.setTitleY("y");
+        g.addPoint(1, 2, 0.1, 0.2);
+        g.addPoint(-3, Double.NaN, 0, 1e-9);
+        GraphErrors read = (GraphErrors) roundTrip(g);
+        assertEquals(g.getName(), read.getName());
+        assertEquals(g.getTitleX(), read.getTitleX());
+        assertEquals(g.getDataSize(0), read.getDataSize(0));
+        for(int i=0; i<g.getDataSize(0); i++) {
+            assertEquals(g.getDataX(i), read.getDataX(i), 0);
+            assertEquals(g.getDataY(i), read.getDataY(i), 0);
+            assertEquals(g.getDataEX(i), read.getDataEX(i), 0);
+            assertEquals(g.getDataEY(i), read.getDataEY(i), 0);
+        }
+    }
+
+    @Test
+    public void dictionaryIsShared() throws IOException {
+        DataSetCodec.Dictionary dictionary = new DataSetCodec.Dictionary();
+        H1F a = new H1F("a", "Same title", 5, 0, 5);
+        H1F b = new H1F("b", "Same title", 5, 0, 5);
+        byte[] first  = compact(a, dictionary);
+        int    size   = dictionary.size();
+        byte[] second = compact(b, dictionary);
+        assertEquals("only the name of the second histogram is new", size+1, dictionary.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        dictionary.write(new DataOutputStream(bytes));
+        DataSetCodec.Dictionary read = DataSetCodec.Dictionary.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(dictionary.size(), read.size());
+        assertH1F(a, (H1F) DataSetCodec.readCompact(new DataInputStream(new ByteArrayInputStream(first)), read));
+        assertH1F(b, (H1F) DataSetCodec.readCompact(new DataInputStream(new ByteArrayInputStream(second)), read));
+    }
+
+    @Test
+    public void fullFormat() throws IOException {
+        H1F h = new H1F("full", "Full", 10, 0, 1);
+        h.setBinContent(1, 2.5);
+        h.setBinError(1, 0.3);
+        h.setBinContent(4, Double.NaN);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataSetCodec.write(new DataOutputStream(bytes), h);
+        assertH1F(h, (H1F) DataSetCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    @Test
+    public void varLong() throws IOException {
+        long[] values = {0, 1, 127, 128, 300, 1L<<35, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for(long value : values) DataSetCodec.writeVarLong(out, value);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for(long value : values) assertEquals(value, DataSetCodec.readVarLong(in));
+        assertEquals(0, in.available());
+    }
+
+    private static byte[] compact(IDataSet ds, DataSetCodec.Dictionary dictionary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataSetCodec.writeCompact(new DataOutputStream(bytes), ds, dictionary);
+        return bytes.toByteArray();
+    }
+
+    private static IDataSet roundTrip(IDataSet ds) throws IOException {
+        DataSetCodec.Dictionary dictionary = new DataSetCodec.Dictionary();
+        byte[] bytes = compact(ds, dictionary);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        IDataSet read = DataSetCodec.readCompact(in, dictionary);
+        assertEquals("trailing bytes", 0, in.available());
+        return read;
+    }
+
+    private static void assertH1F(H1F expected, H1F actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getxAxis().getNBins(), actual.getxAxis().getNBins());
+        assertEquals(expected.getxAxis().min(), actual.getxAxis().min(), 0);
+        assertEquals(expected.getxAxis().max(), actual.getxAxis().max(), 0);
+        for(int bin=0; bin<expected.getxAxis().getNBins(); bin++) {
+            assertEquals("content of bin " + bin, expected.getBinContent(bin), actual.getBinContent(bin), 0);
+            assertEquals("error of bin " + bin, expected.getBinError(bin), actual.getBinError(bin), 0);
+        }
+    }
+
+    private static void assertH2F(H2F expected, H2F actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getXAxis().getNBins(), actual.getXAxis().getNBins());
+        assertEquals(expected.getYAxis().getNBins(), actual.getYAxis().getNBins());
+        assertEquals(expected.getYAxis().min(), actual.getYAxis().min(), 0);
+        assertEquals(expected.getYAxis().max(), actual.getYAxis().max(), 0);
+        for(int bin=0; bin<expected.getDataBufferSize(); bin++) {
+            assertEquals("bin " + bin, expected.getDataBufferBin(bin), actual.getDataBufferBin(bin), 0);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.clas.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jlab.io.base.DataEvent;
+import org.junit.Test;
+
+public class EventRingBufferTest {
+
+    /**
+     * Consumer recording the events it sees, which waits on a latch before
+     * handling the first one.
+     */
+    private static final class Recorder implements EventRingBuffer.EventHandler {
+        final List<DataEvent> events  = Collections.synchronizedList(new ArrayList<DataEvent>());
+        final CountDownLatch  started = new CountDownLatch(1);
+        final CountDownLatch  release = new CountDownLatch(1);
+
+        @Override
+        public void onEvent(DataEvent event) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        }
+    }
+
+    @Test
+    public void blockWaitsForTheConsumer() throws Exception {
+        final EventRingBuffer buffer = new EventRingBuffer(2);
+        Recorder recorder = new Recorder();
+        buffer.addConsumer("test-consumer", recorder);
+        final DataEvent[] events = events(4);
+        buffer.publish(events[0]);
+        assertTrue(recorder.started.await(5, TimeUnit.SECONDS));
+        buffer.publish(events[1]);
+        buffer.publish(events[2]);
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                buffer.publish(events[3]);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue("the producer should wait while the buffer is full", producer.isAlive());
+
+        recorder.release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(buffer.awaitDrained(5, TimeUnit.SECONDS));
+        assertEquals(list(events), recorder.events);
+        assertEquals(0, buffer.getDropCount());
+    }
+
+    @Test
+    public void dropOldestKeepsTheEventInFlight() throws Exception {
+        EventRingBuffer buffer = new EventRingBuffer(2);
+        buffer.setPolicy(EventRingBuffer.Policy.DROP_OLDEST, 1);
+        Recorder recorder = new Recorder();
+        buffer.addConsumer("test-consumer", recorder);
+        DataEvent[] events = events(5);
+        buffer.publish(events[0]);
+        assertTrue(recorder.started.await(5, TimeUnit.SECONDS));
+        // events[0] is being processed, events[1] and [2] fill the buffer
+        for(int i=1; i<events.length; i++) buffer.publish(events[i]);
+        assertEquals(2, buffer.getDropCount());
+        // the event in flight is not counted in the fill level
+        assertEquals(2, buffer.getFillLevel());
+
+        recorder.release.countDown();
+        assertTrue(buffer.awaitDrained(5, TimeUnit.SECONDS));
+        List<DataEvent> expected = new ArrayList<DataEvent>();
+        expected.add(events[0]);
+        expected.add(events[3]);
+        expected.add(events[4]);
+        assertEquals(expected, recorder.events);
+    }
+
+    @Test
+    public void sampleKeepsOneOverflowInN() throws Exception {
+        EventRingBuffer buffer = new EventRingBuffer(2);
+        buffer.setPolicy(EventRingBuffer.Policy.SAMPLE, 3);
+        Recorder recorder = new Recorder();
+        buffer.addConsumer("test-consumer", recorder);
+        DataEvent[] events = events(9);
+        buffer.publish(events[0]);
+        assertTrue(recorder.started.await(5, TimeUnit.SECONDS));
+        buffer.publish(events[1]);
+        buffer.publish(events[2]);
+        // buffer full: of the next six, the 1st and 4th replace the oldest
+        for(int i=3; i<events.length; i++) buffer.publish(events[i]);
+        assertEquals(4 + 2, buffer.getDropCount());
+
+        recorder.release.countDown();
+        assertTrue(buffer.awaitDrained(5, TimeUnit.SECONDS));
+        List<DataEvent> expected = new ArrayList<DataEvent>();
+        expected.add(events[0]);
+        expected.add(events[3]);
+        expected.add(events[6]);
+        assertEquals(expected, recorder.events);
+    }
+
+    @Test
+    public void everyConsumerSeesEveryEvent() throws Exception {
+        EventRingBuffer buffer = new EventRingBuffer(4);
+        Recorder first  = new Recorder();
+        Recorder second = new Recorder();
+        first.release.countDown();
+        second.release.countDown();
+        buffer.addConsumer("test-first", first);
+        buffer.addConsumer("test-second", second);
+        DataEvent[] events = events(100);
+        for(DataEvent event : events) buffer.publish(event);
+        assertTrue(buffer.awaitDrained(5, TimeUnit.SECONDS));
+        assertEquals(0, buffer.getFillLevel());
+        assertEquals(list(events), first.events);
+        assertEquals(list(events), second.events);
+    }
+
+    private static List<DataEvent> list(DataEvent[] events) {
+        List<DataEvent> list = new ArrayList<DataEvent>();
+        Collections.addAll(list, events);
+        return list;
+    }
+
+    /**
+     * Placeholder events, only compared by identity.
+     */
+    private static DataEvent[] events(int n) {
+        DataEvent[] events = new DataEvent[n];
+        for(int i=0; i<n; i++) {
+            final String name = "event " + i;
+            events[i] = (DataEvent) Proxy.newProxyInstance(DataEvent.class.getClassLoader(), new Class<?>[]{DataEvent.class}, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if(method.getName().equals("equals"))   return proxy==args[0];
+                    if(method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+                    if(method.getName().equals("toString")) return name;
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+        return events;
+    }
+}
@@ -0,0 +1,100 @@
+package org.clas.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.jlab.groot.data.GraphErrors;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.group.DataGroup;
+import org.jlab.utils.groups.IndexedList;
+import org.junit.Test;
+
+public class HistogramSnapshotTest {
+
+    @Test
+    public void copiesKeepTheirObjects() {
+        H1F h1 = new H1F("h1", "h1", 4, 0, 4);
+        H2F h2 = new H2F("h2", "h2", 2, 0, 2, 2, 0, 2);
+        IndexedList<DataGroup> groups = groups(h1, h2);
+        h1.setBinContent(1, 3);
+        h1.getAttributes().setFillColor(44);
+        HistogramSnapshot snapshot = new HistogramSnapshot(7, groups, null);
+        H1F copy1 = snapshot.getDataGroup().getItem(0,0,0).getH1F("h1");
+        H2F copy2 = snapshot.getDataGroup().getItem(0,0,0).getH2F("h2");
+        assertNotSame(h1, copy1);
+        assertEquals(7, snapshot.getGeneration());
+        assertEquals(3, copy1.getBinContent(1), 0);
+        assertEquals(44, copy1.getAttributes().getFillColor());
+        assertTrue(snapshot.hasChanged(copy1));
+
+        h1.setBinContent(2, 5);
+        h1.setTitleX("x");
+        assertTrue(snapshot.refresh());
+        assertSame(copy1, snapshot.getDataGroup().getItem(0,0,0).getH1F("h1"));
+        assertEquals(5, copy1.getBinContent(2), 0);
+        assertEquals("x", copy1.getTitleX());
+        assertTrue(snapshot.hasChanged(copy1));
+        assertFalse(snapshot.hasChanged(copy2));
+
+        // filled after the snapshot, not seen until the next refresh
+        h2.setDataBufferBin(3, 2);
+        assertEquals(0, copy2.getDataBufferBin(3), 0);
+        assertTrue(snapshot.refresh());
+        assertEquals(2, copy2.getDataBufferBin(3), 0);
+        assertFalse(snapshot.hasChanged(copy1));
+        assertTrue(snapshot.hasChanged(copy2));
+    }
+
+    @Test
+    public void copyOfASnapshot() {
+        H1F h = new H1F("h", "h", 2, 0, 2);
+        GraphErrors g = new GraphErrors("g");
+        IndexedList<DataGroup> groups = groups(h, g);
+        HistogramSnapshot snapshot = new HistogramSnapshot(1, groups, null);
+        HistogramSnapshot shown    = snapshot.copy();
+        assertSame(snapshot, shown.getSource());
+        H1F hShown = shown.getDataGroup().getItem(0,0,0).getH1F("h");
+        GraphErrors gShown = shown.getDataGroup().getItem(0,0,0).getGraph("g");
+
+        h.setBinContent(0, 1);
+        g.addPoint(1, 2, 0, 0.5);
+        assertTrue(snapshot.refresh());
+        assertEquals(0, hShown.getBinContent(0), 0);
+        assertTrue(shown.refresh());
+        assertEquals(1, hShown.getBinContent(0), 0);
+        assertEquals(1, gShown.getDataSize(0));
+        assertEquals(0.5, gShown.getDataEY(0), 0);
+    }
+
+    @Test
+    public void sharedHistogramsAreCopiedOnce() {
+        H1F h = new H1F("h", "h", 2, 0, 2);
+        IndexedList<DataGroup> groups = groups(h);
+        DataGroup summary = new DataGroup(1, 1);
+        summary.addDataSet(h, 0);
+        HistogramSnapshot snapshot = new HistogramSnapshot(1, groups, summary);
+        assertEquals(1, snapshot.getDataSets().size());
+        assertSame(snapshot.getDetectorSummary().getH1F("h"), snapshot.getDataGroup().getItem(0,0,0).getH1F("h"));
+    }
+
+    @Test
+    public void rebinnedHistogramNeedsANewSnapshot() {
+        H1F h = new H1F("h", "h", 2, 0, 2);
+        HistogramSnapshot snapshot = new HistogramSnapshot(1, groups(h), null);
+        h.set(4, 0, 4);
+        assertFalse(snapshot.refresh());
+    }
+
+    private static IndexedList<DataGroup> groups(IDataSet... datasets) {
+        DataGroup group = new DataGroup(datasets.length, 1);
+        for(int i=0; i<datasets.length; i++) group.addDataSet(datasets[i], i);
+        IndexedList<DataGroup> groups = new IndexedList<DataGroup>(3);
+        groups.add(group, 0,0,0);
+        return groups;
+    }
+}
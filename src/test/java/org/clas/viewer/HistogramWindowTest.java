@@ -0,0 +1,83 @@
+package org.clas.viewer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.IDataSet;
+import org.junit.Test;
+
+public class HistogramWindowTest {
+
+    @Test
+    public void slicing() {
+        HistogramWindow window = new HistogramWindow(105, 10);
+        assertEquals(10, window.getSlices());
+        assertEquals(10, window.getSliceEvents());
+        assertEquals(100, window.getEvents());
+        assertEquals(2, new HistogramWindow(10, 1).getSlices());
+    }
+
+    @Test
+    public void rotateDropsTheOldestSlice() {
+        // 3 slices of 2 events, two of them kept in the ring
+        HistogramWindow window = new HistogramWindow(6, 3);
+        H1F h1 = new H1F("h1", "h1", 4, 0, 4);
+        H2F h2 = new H2F("h2", "h2", 2, 0, 2, 2, 0, 2);
+        window.bind(datasets(h1, h2));
+
+        int processed = 0;
+        int[] dropped = new int[5];
+        for(int slice=0; slice<5; slice++) {
+            // slice k puts k+1 counts in bin k%4 for each of its 2 events
+            for(int event=0; event<2; event++) {
+                h1.setBinContent(slice%4, h1.getBinContent(slice%4) + slice+1);
+                h2.setBinContent(slice%2, 0, h2.getBinContent(slice%2, 0) + slice+1);
+                processed++;
+            }
+            dropped[slice] = window.rotate(processed);
+            processed -= dropped[slice];
+        }
+        // the ring holds slices 3 and 4, slices 0 to 2 were dropped one by one
+        assertEquals(0, dropped[0]);
+        assertEquals(0, dropped[1]);
+        assertEquals(2, dropped[2]);
+        assertEquals(2, dropped[3]);
+        assertEquals(2, dropped[4]);
+        assertEquals(4, processed);
+        assertEquals(2*5, h1.getBinContent(0), 0);
+        assertEquals(0, h1.getBinContent(1), 0);
+        assertEquals(0, h1.getBinContent(2), 0);
+        assertEquals(2*4, h1.getBinContent(3), 0);
+        assertEquals(Math.sqrt(2*5), h1.getBinError(0), 1e-12);
+        assertEquals(2*5, h2.getBinContent(0, 0), 0);
+        assertEquals(2*4, h2.getBinContent(1, 0), 0);
+    }
+
+    @Test
+    public void clearEmptiesTheRing() {
+        HistogramWindow window = new HistogramWindow(4, 2);
+        H1F h = new H1F("h", "h", 2, 0, 2);
+        window.bind(datasets(h));
+        h.setBinContent(0, 5);
+        assertEquals(0, window.rotate(5));
+
+        h.reset();
+        window.clear();
+        h.setBinContent(1, 3);
+        assertEquals(0, window.rotate(3));
+        h.setBinContent(1, 4);
+        assertEquals(3, window.rotate(4));
+        assertEquals(0, h.getBinContent(0), 0);
+        assertEquals(1, h.getBinContent(1), 0);
+    }
+
+    private static List<IDataSet> datasets(IDataSet... datasets) {
+        List<IDataSet> list = new ArrayList<IDataSet>();
+        for(IDataSet ds : datasets) list.add(ds);
+        return list;
+    }
+}
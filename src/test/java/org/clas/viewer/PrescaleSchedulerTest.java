@@ -0,0 +1,84 @@
+package org.clas.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PrescaleSchedulerTest {
+
+    private static boolean statistics;
+
+    @BeforeClass
+    public static void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        DetectorMonitor.setHeadless(true);
+        statistics = MonitorStatistics.isEnabled();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        MonitorStatistics.setEnabled(statistics);
+    }
+
+    @Test
+    public void acceptFollowsThePrescale() {
+        DetectorMonitor[] monitors = monitors(2);
+        PrescaleScheduler scheduler = new PrescaleScheduler(monitors);
+        monitors[1].setPrescale(3);
+        int accepted = 0;
+        for(int i=0; i<9; i++) {
+            assertTrue(scheduler.accept(0));
+            boolean accept = scheduler.accept(1);
+            assertEquals(i%3==0, accept);
+            if(accept) accepted++;
+        }
+        assertEquals(3, accepted);
+    }
+
+    @Test
+    public void disablingResetsThePrescales() {
+        DetectorMonitor[] monitors = monitors(2);
+        PrescaleScheduler scheduler = new PrescaleScheduler(monitors);
+        scheduler.setEnabled(true);
+        assertTrue("the costs come from the monitor statistics", MonitorStatistics.isEnabled());
+        monitors[0].setPrescale(4);
+        monitors[1].setPrescale(16);
+        scheduler.setEnabled(false);
+        assertFalse(scheduler.isEnabled());
+        assertEquals(1, monitors[0].getPrescale());
+        assertEquals(1, monitors[1].getPrescale());
+    }
+
+    @Test
+    public void waterLevel() {
+        DetectorMonitor[] monitors = monitors(3);
+        PrescaleScheduler scheduler = new PrescaleScheduler(monitors);
+        // the cheap monitors run on every event, the expensive one gets what is left
+        assertEquals(6, scheduler.level(new double[]{1, 2, 10}, 9), 1e-12);
+        // everything fits
+        assertEquals(Double.MAX_VALUE, scheduler.level(new double[]{1, 2, 3}, 9), 0);
+        // shared equally when all are too expensive
+        assertEquals(3, scheduler.level(new double[]{10, 20, 30}, 9), 1e-12);
+    }
+
+    @Test
+    public void mustSeeEveryEventIsServedFirst() {
+        DetectorMonitor[] monitors = monitors(3);
+        monitors[1].setMustSeeEveryEvent(true);
+        monitors[1].setPrescale(10);
+        assertEquals(1, monitors[1].getPrescale());
+        PrescaleScheduler scheduler = new PrescaleScheduler(monitors);
+        assertEquals(3, scheduler.level(new double[]{1, 5, 10}, 9), 1e-12);
+        assertEquals(0, scheduler.level(new double[]{1, 12, 10}, 9), 0);
+    }
+
+    private static DetectorMonitor[] monitors(int n) {
+        DetectorMonitor[] monitors = new DetectorMonitor[n];
+        for(int k=0; k<n; k++) monitors[k] = new DetectorMonitor("TEST" + k);
+        return monitors;
+    }
+}
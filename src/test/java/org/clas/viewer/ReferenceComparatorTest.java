@@ -0,0 +1,108 @@
+package org.clas.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.IDataSet;
+import org.jlab.groot.group.DataGroup;
+import org.jlab.utils.groups.IndexedList;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ReferenceComparatorTest {
+
+    @BeforeClass
+    public static void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        DetectorMonitor.setHeadless(true);
+    }
+
+    @Test
+    public void onlyChangedHistogramsAreRescored() {
+        H1F a = new H1F("a", "a", 4, 0, 4);
+        H1F b = new H1F("b", "b", 4, 0, 4);
+        H1F c = new H1F("c", "c", 8, 0, 4);
+        ReferenceComparator comparator = new ReferenceComparator("test", references(
+            "TEST", filled("a", 4, 1, 1, 1, 1), filled("b", 4, 1, 1, 1, 1), filled("c", 4, 1, 1, 1, 1)));
+        comparator.bind(new DetectorMonitor[]{new DetectorMonitor("TEST")});
+        fill(a, 1, 1, 1, 1);
+        fill(b, 1, 1, 1, 1);
+        HistogramSnapshot snapshot = new HistogramSnapshot(1, groups(a, b, c), null);
+        comparator.update(new HistogramSnapshot[]{snapshot}, Integer.MAX_VALUE);
+        // c has another binning than its reference
+        assertEquals(2, comparator.size());
+        assertEquals(0, score(comparator, "a").getChi2(), 1e-12);
+        assertEquals(0, score(comparator, "b").getChi2(), 1e-12);
+
+        fill(a, 5, 0, 0, 0);
+        assertTrue(snapshot.refresh());
+        // changed behind the snapshot's back: b is not read again
+        H1F bCopy = (H1F) score(comparator, "b").getLive();
+        bCopy.setBinContent(0, 100);
+        comparator.update(new HistogramSnapshot[]{snapshot}, Integer.MAX_VALUE);
+        assertTrue(score(comparator, "a").getChi2()>0);
+        assertEquals(0, score(comparator, "b").getChi2(), 1e-12);
+        assertEquals(9, score(comparator, "a").getEntries(), 0);
+    }
+
+    @Test
+    public void newSnapshotIsMatchedAgain() {
+        ReferenceComparator comparator = new ReferenceComparator("test", references("TEST", filled("a", 4, 1, 2, 3, 4)));
+        comparator.bind(new DetectorMonitor[]{new DetectorMonitor("TEST")});
+        H1F a = filled("a", 4, 1, 2, 3, 4);
+        comparator.update(new HistogramSnapshot[]{new HistogramSnapshot(1, groups(a), null)}, Integer.MAX_VALUE);
+        IDataSet first = score(comparator, "a").getLive();
+
+        H1F replaced = filled("a", 4, 2, 4, 6, 8);
+        comparator.update(new HistogramSnapshot[]{new HistogramSnapshot(2, groups(replaced), null)}, Integer.MAX_VALUE);
+        assertEquals(1, comparator.size());
+        assertTrue(first!=score(comparator, "a").getLive());
+        assertEquals(20, score(comparator, "a").getEntries(), 0);
+
+        H1F scaled = (H1F) score(comparator, "a").getScaledReference();
+        assertEquals(4, scaled.getBinContent(1), 1e-12);
+        assertEquals(8, scaled.getBinContent(3), 1e-12);
+    }
+
+    private static ReferenceComparator.Score score(ReferenceComparator comparator, String name) {
+        for(ReferenceComparator.Score score : comparator.getWorst(comparator.size())) {
+            if(score.getName().equals(name)) return score;
+        }
+        throw new AssertionError("no score for " + name);
+    }
+
+    private static Map<String,List<IDataSet>> references(String detector, IDataSet... datasets) {
+        List<IDataSet> list = new ArrayList<IDataSet>();
+        for(IDataSet ds : datasets) list.add(ds);
+        Map<String,List<IDataSet>> references = new HashMap<String,List<IDataSet>>();
+        references.put(detector, list);
+        return references;
+    }
+
+    private static H1F filled(String name, int nbins, double... contents) {
+        H1F h = new H1F(name, name, nbins, 0, nbins);
+        fill(h, contents);
+        return h;
+    }
+
+    private static void fill(H1F h, double... contents) {
+        for(int bin=0; bin<contents.length; bin++) {
+            h.setBinContent(bin, h.getBinContent(bin) + contents[bin]);
+            h.setBinError(bin, Math.sqrt(h.getBinContent(bin)));
+        }
+    }
+
+    private static IndexedList<DataGroup> groups(IDataSet... datasets) {
+        DataGroup group = new DataGroup(datasets.length, 1);
+        for(int i=0; i<datasets.length; i++) group.addDataSet(datasets[i], i);
+        IndexedList<DataGroup> groups = new IndexedList<DataGroup>(3);
+        groups.add(group, 0,0,0);
+        return groups;
+    }
+}
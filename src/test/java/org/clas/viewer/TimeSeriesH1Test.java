@@ -0,0 +1,104 @@
+package org.clas.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jlab.groot.data.H1F;
+import org.junit.Test;
+
+public class TimeSeriesH1Test {
+
+    @Test
+    public void rebinsPastTheLastBin() {
+        H1F h = new H1F("rate", "rate", 4, 0, 4);
+        TimeSeriesH1 series = new TimeSeriesH1("rate", TimeSeriesH1.Axis.EVENTS, 1);
+        series.bind(h);
+        series.fill(0, 1);
+        series.fill(1, 2);
+        series.fill(3, 4);
+        assertContents(h, 1, 2, 0, 4);
+
+        series.fill(4, 8);
+        assertEquals(2, series.getBinWidth());
+        assertContents(h, 3, 4, 8, 0);
+
+        // two doublings at once
+        series.fill(30, 16);
+        assertEquals(8, series.getBinWidth());
+        assertContents(h, 15, 0, 0, 16);
+        assertTrue(h.getTitleX().contains("one bin is 8 events"));
+    }
+
+    @Test
+    public void extendsBeforeTheOrigin() {
+        H1F h = new H1F("time", "time", 4, 0, 4);
+        TimeSeriesH1 series = new TimeSeriesH1("time", TimeSeriesH1.Axis.UNIXTIME, 1);
+        series.bind(h);
+        series.fill(1000, 1);
+        series.fill(1001, 2);
+        series.fill(998, 4);
+        assertEquals(1, series.getBinWidth());
+        assertContents(h, 4, 0, 1, 2);
+
+        // does not fit in 4 bins of 1 s any more
+        series.fill(996, 8);
+        assertEquals(2, series.getBinWidth());
+        assertContents(h, 8, 4, 3, 0);
+    }
+
+    @Test
+    public void clearGoesBackToTheInitialWidth() {
+        H1F h = new H1F("rate", "rate", 2, 0, 2);
+        TimeSeriesH1 series = new TimeSeriesH1("rate", TimeSeriesH1.Axis.EVENTS, 5);
+        series.bind(h);
+        series.fill(25, 1);
+        assertEquals(20, series.getBinWidth());
+        h.reset();
+        series.clear();
+        assertEquals(5, series.getBinWidth());
+        series.fill(7, 1);
+        assertContents(h, 0, 1);
+    }
+
+    @Test
+    public void addMergesSeriesOfDifferentWidths() {
+        H1F ha = new H1F("rate", "rate", 4, 0, 4);
+        H1F hb = new H1F("rate", "rate", 4, 0, 4);
+        TimeSeriesH1 a = new TimeSeriesH1("rate", TimeSeriesH1.Axis.EVENTS, 1);
+        TimeSeriesH1 b = new TimeSeriesH1("rate", TimeSeriesH1.Axis.EVENTS, 1);
+        a.bind(ha);
+        b.bind(hb);
+        a.fill(1, 1);
+        b.fill(2, 2);
+        b.fill(7, 4);
+        a.add(b);
+        assertEquals(2, a.getBinWidth());
+        assertContents(ha, 1, 2, 0, 4);
+    }
+
+    @Test
+    public void restoreFromCompanion() {
+        H1F h = new H1F("time", "time", 4, 0, 4);
+        TimeSeriesH1 series = new TimeSeriesH1("time", TimeSeriesH1.Axis.UNIXTIME, 1);
+        series.bind(h);
+        series.fill(500, 1);
+        series.fill(507, 1);
+        H1F companion = series.createCompanion();
+
+        H1F saved = new H1F("time", "time", 4, 0, 4);
+        for(int bin=0; bin<4; bin++) saved.setBinContent(bin, h.getBinContent(bin));
+        TimeSeriesH1 restored = new TimeSeriesH1("time", TimeSeriesH1.Axis.UNIXTIME, 1);
+        restored.bind(saved);
+        restored.restore(companion);
+        assertEquals(series.getBinWidth(), restored.getBinWidth());
+        restored.fill(501, 1);
+        assertContents(saved, 2, 0, 0, 1);
+    }
+
+    private static void assertContents(H1F h, double... contents) {
+        assertEquals(contents.length, h.getxAxis().getNBins());
+        for(int bin=0; bin<contents.length; bin++) {
+            assertEquals("bin " + bin, contents[bin], h.getBinContent(bin), 0);
+        }
+    }
+}